@@ -12,7 +12,7 @@ import java.util.Objects;
  */
 public final class ByteString {
     private final byte[] bytes; // tableau de bytes
-    private final HexFormat hf = HexFormat.of().withUpperCase();
+    private final static HexFormat HEX_FORMAT = HexFormat.of().withUpperCase(); // Partagé, il est immuable
 
     /**
      * Constructeur public de la classe ByteString avec le tableau de bytes donné.
@@ -32,8 +32,7 @@ public final class ByteString {
      *                                  contient un caractère qui n'est pas un chiffre hexadécimal
      */
     public static ByteString ofHexadecimalString(String hexString) {
-        HexFormat hf = HexFormat.of().withUpperCase();
-        byte[] bytes = hf.parseHex(hexString);
+        byte[] bytes = HEX_FORMAT.parseHex(hexString);
         return new ByteString(bytes);
     }
 
@@ -149,6 +148,6 @@ public final class ByteString {
      */
     @Override
     public String toString() {
-        return hf.formatHex(bytes);
+        return HEX_FORMAT.formatHex(bytes);
     }
 }
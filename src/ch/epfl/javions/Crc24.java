@@ -1,5 +1,7 @@
 package ch.epfl.javions;
 
+import java.util.Objects;
+
 /**
  * Calculateur de CRC de 24 bits.
  *
@@ -11,7 +13,17 @@ public final class Crc24 {
     private static final int ENTRIES = 256; // Les entrees correspondant a un generateur
     private static final int GENERATOR_SIZE = 24;
     private static final int MASK = 0xFFFFFF;
-    private final int[] table;
+    private static final int SLICES = 8; // Le nombre d'octets traités d'un coup (« slicing-by-8 »)
+
+    /**
+     * Le calculateur de CRC24 des messages ADS-B (de générateur GENERATOR). Il est immuable, et peut donc
+     * être partagé par tous les fils d'exécution.
+     */
+    public static final Crc24 ADSB = new Crc24(GENERATOR);
+
+    /* Les tables de 256 entrées : tables[0] est la table classique, et tables[k][i] est le CRC de l'octet i
+    suivi de k octets nuls, c.-à-d. la contribution de l'octet i lorsqu'il est suivi de k autres octets */
+    private final int[][] tables;
 
     /**
      * Retourne un calculateur de CRC24.
@@ -19,7 +31,7 @@ public final class Crc24 {
      * @param generator générateur dont on va utiliser les 24 bits de poids faible.
      */
     public Crc24(int generator) {
-        table = buildTable(generator);
+        tables = buildTables(generator);
     }
 
     /**
@@ -73,19 +85,28 @@ public final class Crc24 {
     }
 
     /**
-     * Construit la table de 256 entrées correspondant au générateur 'generator'
+     * Construit la table de 256 entrées correspondant au générateur 'generator', puis les tables qui en
+     * découlent pour le calcul 8 octets à la fois.
      *
      * @param generator le générateur
-     * @return la table de 256 entrées correspondant au générateur 'generator'
+     * @return les SLICES tables de 256 entrées correspondant au générateur 'generator'
      */
-    private static int[] buildTable(int generator) {
-        int[] table = new int[ENTRIES];
+    private static int[][] buildTables(int generator) {
+        int[][] tables = new int[SLICES][ENTRIES];
         for (int i = 0; i < ENTRIES; i++) {
             byte[] temp = {(byte) i};
             // On transtype l'entier en un byte et on le place dans un tableau pour l'utiliser dans crc_bitwise
-            table[i] = crc_bitwise(generator, temp);
+            tables[0][i] = crc_bitwise(generator, temp);
+        }
+
+        // Ajouter un octet nul à la suite revient à faire avancer le CRC d'un octet
+        for (int k = 1; k < SLICES; k++) {
+            for (int i = 0; i < ENTRIES; i++) {
+                int previous = tables[k - 1][i];
+                tables[k][i] = ((previous << Byte.SIZE) ^ tables[0][previous >>> 16]) & MASK;
+            }
         }
-        return table;
+        return tables;
     }
 
     /**
@@ -96,32 +117,94 @@ public final class Crc24 {
      */
     public int crc(byte[] bytes) {
         int crc = 0;
-        int MASK = 0xFFFFFF;
+        int i = 0;
 
     /*
     --------------------------------------------------------------------------------------------------------------------
-      -- Algorithme optimisé du calculateur de CRC (qui utlise un message augmenté)
+      -- Algorithme optimisé du calculateur de CRC, 8 octets à la fois : le CRC courant est combiné aux 3 premiers
+         octets, puis chaque octet est remplacé par sa contribution, qui dépend du nombre d'octets qui le suivent.
+         Ce calcul direct donne le même résultat que l'algorithme qui utilise un message augmenté de 3 octets nuls.
     --------------------------------------------------------------------------------------------------------------------
     */
+        for (; i + SLICES <= bytes.length; i += SLICES) {
+            long word = 0;
+            for (int j = 0; j < SLICES; j++) {
+                word = (word << Byte.SIZE) | (bytes[i + j] & 0xFF);
+            }
+            crc = crc8Bytes(crc, word);
+        }
 
-        // Boucle qui parcourt les bytes du message
-        for (byte aByte : bytes) {
-            int shiftedCrc = crc << Byte.SIZE;
-            int byteAugmentedMessage = Bits.extractUInt(aByte, 0, Byte.SIZE);
-            int crcMsbByte = Bits.extractUInt(crc, 16, Byte.SIZE);
-
-            crc = (shiftedCrc | byteAugmentedMessage)
-                    ^ table[crcMsbByte];
+        // Les derniers octets, un à la fois
+        int[] table = tables[0];
+        for (; i < bytes.length; i++) {
+            crc = ((crc << Byte.SIZE) ^ table[((crc >>> 16) ^ bytes[i]) & 0xFF]) & MASK;
         }
+        return crc; // Les 24 bits de poids faible du CRC, sous forme d'entier non signé
+    }
 
-        // Boucle simplifiée de la première boucle (pour parcourir les 3 bytes nuls)
-        for (int k = 0; k < 3; k++) {
-            int shiftedCrc = crc << Byte.SIZE;
-            int crcMsbByte = Bits.extractUInt(crc, Short.SIZE, Byte.SIZE);
-            crc = (shiftedCrc) ^ table[crcMsbByte];
+    /**
+     * Retourne le CRC24 du message de 112 bits donné sous forme de deux entiers de type long, sans passer
+     * par un tableau d'octets.
+     *
+     * @param high les 48 premiers bits du message (octets 0 à 5), dans les bits de poids faible.
+     * @param low  les 64 derniers bits du message (octets 6 à 13).
+     * @return le CRC24 du message.
+     */
+    public int crc(long high, long low) {
+        int[] t0 = tables[0], t1 = tables[1], t2 = tables[2], t3 = tables[3], t4 = tables[4], t5 = tables[5];
+
+        // Les 6 octets de high (le CRC initial étant nul, il n'y a rien à combiner)
+        int crc = t5[(int) (high >>> 40) & 0xFF]
+                ^ t4[(int) (high >>> 32) & 0xFF]
+                ^ t3[(int) (high >>> 24) & 0xFF]
+                ^ t2[(int) (high >>> 16) & 0xFF]
+                ^ t1[(int) (high >>> 8) & 0xFF]
+                ^ t0[(int) high & 0xFF];
+
+        // Les 8 octets de low
+        return crc8Bytes(crc, low);
+    }
+
+    /**
+     * Calcule le CRC24 de chacun des messages de 112 bits donnés sous forme de deux entiers de type long.
+     *
+     * @param highs les 48 premiers bits de chaque message (octets 0 à 5), dans les bits de poids faible.
+     * @param lows  les 64 derniers bits de chaque message (octets 6 à 13).
+     * @param count le nombre de messages.
+     * @param crcs  le tableau dans lequel on place le CRC24 de chaque message.
+     * @return le nombre de messages dont le CRC24 est nul, c.-à-d. qui sont valides.
+     * @throws IndexOutOfBoundsException si l'un des tableaux contient moins de count éléments.
+     */
+    public int crc(long[] highs, long[] lows, int count, int[] crcs) {
+        Objects.checkFromIndexSize(0, count, highs.length);
+        Objects.checkFromIndexSize(0, count, lows.length);
+        Objects.checkFromIndexSize(0, count, crcs.length);
+
+        int validCount = 0;
+        for (int i = 0; i < count; i++) {
+            int crc = crc(highs[i], lows[i]);
+            crcs[i] = crc;
+            validCount += (crc == 0) ? 1 : 0;
         }
+        return validCount;
+    }
 
-        int lsbBitsCrc = Bits.extractUInt(crc, 0, GENERATOR_SIZE);
-        return lsbBitsCrc & MASK; // On retourne les 24 bits de poids faible du CRC sous forme d'entier non signé
+    /**
+     * Fait avancer le CRC donné des 8 octets du mot donné (du poids le plus fort au poids le plus faible).
+     *
+     * @param crc  le CRC24 courant.
+     * @param word les 8 octets suivants du message.
+     * @return le CRC24 après ces 8 octets.
+     */
+    private int crc8Bytes(int crc, long word) {
+        long x = word ^ ((long) crc << 40); // Le CRC courant est combiné aux 3 premiers octets
+        return tables[7][(int) (x >>> 56) & 0xFF]
+                ^ tables[6][(int) (x >>> 48) & 0xFF]
+                ^ tables[5][(int) (x >>> 40) & 0xFF]
+                ^ tables[4][(int) (x >>> 32) & 0xFF]
+                ^ tables[3][(int) (x >>> 24) & 0xFF]
+                ^ tables[2][(int) (x >>> 16) & 0xFF]
+                ^ tables[1][(int) (x >>> 8) & 0xFF]
+                ^ tables[0][(int) x & 0xFF];
     }
 }
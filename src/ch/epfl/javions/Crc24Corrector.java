@@ -0,0 +1,151 @@
+package ch.epfl.javions;
+
+/**
+ * Correcteur d'erreurs de messages ADS-B de 112 bits, utilisant leur CRC24.
+ * <p>
+ * Le CRC24 étant linéaire, le CRC d'un message valide dont certains bits ont été inversés (son « syndrome »)
+ * ne dépend que des positions de ces bits. Le correcteur calcule donc une fois pour toutes le syndrome
+ * de chaque erreur corrigeable, et les place dans une table de hachage qui associe à un syndrome les positions
+ * des bits à inverser, en temps constant. Les 5 bits de l'attribut DF ne sont jamais corrigés, et un syndrome
+ * qui correspond à plusieurs erreurs différentes est considéré comme non corrigeable.
+ *
+ * @author Brian Jean Claud El Banna (356437)
+ * @author Nicolas Khamis (355598)
+ */
+public final class Crc24Corrector {
+    public static final int MAX_CORRECTED_BITS = 2; // Le nombre maximal de bits corrigeables
+    private static final int MESSAGE_BITS = 112; // La taille d'un message, en bits
+    private static final int HIGH_BITS = 48; // Le nombre de bits du message placés dans high (octets 0 à 5)
+    private static final int FIRST_CORRECTABLE_BIT = 5; // Le premier bit qui suit l'attribut DF
+    private static final int AMBIGUOUS = -1; // La valeur d'un syndrome qui correspond à plusieurs erreurs
+    private static final int NO_BIT = 0xFF; // La position (invalide) qui marque l'absence d'un second bit
+    private final int[] syndromes; // Les clefs de la table de hachage (0 pour une case vide)
+    private final int[] corrections; // Les bits à inverser, sous la forme (nombre << 16) | (b << 8) | a
+    private final int mask;
+
+    /**
+     * Constructeur de Crc24Corrector qui retourne un correcteur des erreurs d'au plus le nombre de bits donné,
+     * pour des messages dont le CRC24 est calculé avec le générateur donné.
+     *
+     * @param generator         générateur dont on va utiliser les 24 bits de poids faible.
+     * @param maxCorrectedBits  le nombre maximal de bits corrigés dans un message (1 ou 2).
+     * @throws IllegalArgumentException si le nombre maximal de bits n'est pas 1 ou 2.
+     */
+    public Crc24Corrector(int generator, int maxCorrectedBits) {
+        boolean maxCorrectedBitsIsValid = maxCorrectedBits >= 1 && maxCorrectedBits <= MAX_CORRECTED_BITS;
+        Preconditions.checkArgument(maxCorrectedBitsIsValid);
+
+    /*
+    --------------------------------------------------------------------------------------------------------------------
+      -- Calcul du syndrome de chaque erreur d'un bit
+    --------------------------------------------------------------------------------------------------------------------
+    */
+        Crc24 crc24 = new Crc24(generator);
+        int[] bitSyndromes = new int[MESSAGE_BITS];
+        for (int bit = FIRST_CORRECTABLE_BIT; bit < MESSAGE_BITS; bit++) {
+            bitSyndromes[bit] = crc24.crc(highMask(bit), lowMask(bit));
+        }
+
+        int correctableBits = MESSAGE_BITS - FIRST_CORRECTABLE_BIT;
+        int entryCount = (maxCorrectedBits == 1)
+                ? correctableBits
+                : correctableBits + correctableBits * (correctableBits - 1) / 2;
+        int tableSize = Integer.highestOneBit(entryCount) << 2; // Un taux de remplissage d'au plus 1/2
+        syndromes = new int[tableSize];
+        corrections = new int[tableSize];
+        mask = tableSize - 1;
+
+    /*
+    --------------------------------------------------------------------------------------------------------------------
+      -- Remplissage de la table : le syndrome d'une erreur de deux bits est le ou exclusif de leurs syndromes
+    --------------------------------------------------------------------------------------------------------------------
+    */
+        for (int a = FIRST_CORRECTABLE_BIT; a < MESSAGE_BITS; a++) {
+            add(bitSyndromes[a], (1 << 16) | (NO_BIT << 8) | a);
+            if (maxCorrectedBits == 2) {
+                for (int b = a + 1; b < MESSAGE_BITS; b++) {
+                    add(bitSyndromes[a] ^ bitSyndromes[b], (2 << 16) | (b << 8) | a);
+                }
+            }
+        }
+    }
+
+    /**
+     * Méthode qui corrige, si possible, le message donné dont le CRC24 vaut le syndrome donné.
+     *
+     * @param frame    tableau de deux éléments contenant les 48 premiers bits du message (octets 0 à 5, dans les
+     *                 bits de poids faible), puis ses 64 derniers bits (octets 6 à 13). Il est modifié en place.
+     * @param syndrome le CRC24 du message.
+     * @return le nombre de bits corrigés (0 si le syndrome est nul), ou -1 si le message n'est pas corrigeable,
+     * auquel cas il n'est pas modifié.
+     */
+    public int correct(long[] frame, int syndrome) {
+        if (syndrome == 0) {
+            return 0;
+        }
+
+        int correction = lookup(syndrome);
+        if (correction == 0 || correction == AMBIGUOUS) {
+            return -1;
+        }
+
+        int a = correction & 0xFF;
+        int b = (correction >>> 8) & 0xFF;
+        frame[0] ^= highMask(a);
+        frame[1] ^= lowMask(a);
+        if (b != NO_BIT) {
+            frame[0] ^= highMask(b);
+            frame[1] ^= lowMask(b);
+        }
+        return correction >>> 16;
+    }
+
+    /**
+     * Ajoute à la table l'erreur de syndrome donné, ou marque ce syndrome comme ambigu s'il y est déjà.
+     */
+    private void add(int syndrome, int correction) {
+        if (syndrome == 0) {
+            return; // Erreur indétectable (impossible pour le générateur de l'ADS-B), donc incorrigeable
+        }
+        int index = indexOf(syndrome);
+        if (syndromes[index] == syndrome) {
+            corrections[index] = AMBIGUOUS;
+        } else {
+            syndromes[index] = syndrome;
+            corrections[index] = correction;
+        }
+    }
+
+    /**
+     * Retourne la correction associée au syndrome donné, ou 0 s'il n'est pas dans la table.
+     */
+    private int lookup(int syndrome) {
+        return corrections[indexOf(syndrome)];
+    }
+
+    /**
+     * Retourne l'index de la case qui contient le syndrome donné, ou de la case vide où il doit être placé
+     * (sondage linéaire). Un syndrome n'est jamais nul, 0 marque donc les cases vides.
+     */
+    private int indexOf(int syndrome) {
+        int index = (syndrome * 0x9E3779B1) >>> 8 & mask;
+        while (syndromes[index] != 0 && syndromes[index] != syndrome) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    /**
+     * Retourne le masque de la partie high du bit d'index donné (0 étant le bit de poids fort du message).
+     */
+    private static long highMask(int bit) {
+        return bit < HIGH_BITS ? 1L << (HIGH_BITS - 1 - bit) : 0;
+    }
+
+    /**
+     * Retourne le masque de la partie low du bit d'index donné (0 étant le bit de poids fort du message).
+     */
+    private static long lowMask(int bit) {
+        return bit < HIGH_BITS ? 0 : 1L << (MESSAGE_BITS - 1 - bit);
+    }
+}
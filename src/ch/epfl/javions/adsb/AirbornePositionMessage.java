@@ -30,6 +30,9 @@ public record AirbornePositionMessage(long timeStampNs,
     private final static int COORD_LENGTH = 17;
     private final static int FORMAT_START = 34;
     private final static int ALT_START = 36;
+
+    // L'altitude en mètres (ou NaN si elle est invalide) de chacune des 4096 valeurs de l'attribut ALT
+    private final static double[] ALTITUDES = buildAltitudes();
     /**
      * Constructeur compact de AirbornePositionMessage
      *
@@ -56,17 +59,87 @@ public record AirbornePositionMessage(long timeStampNs,
      * ou null si l'altitude qu'il contient est invalide.
      */
     public static AirbornePositionMessage of(RawMessage rawMessage) {
-        double altitudeInFeet; // Valeur de l'altitude en pieds
-        double altitudeInMeters;  // Valeur de l'altitude en mètres
         long payload = rawMessage.payload();
-        int parity = Bits.extractUInt(payload, FORMAT_START, 1);
+        double altitude = altitude(payload);
+        if (Double.isNaN(altitude)) {
+            return null;
+        }
+
+    /*
+    --------------------------------------------------------------------------------------------------------------------
+      -- Création du message de position en vol
+    --------------------------------------------------------------------------------------------------------------------
+    */
+        return new AirbornePositionMessage(rawMessage.timeStampNs(),
+                rawMessage.icaoAddress(),
+                altitude,
+                parity(payload),
+                x(payload),
+                y(payload));
+    }
+
+    /**
+     * Retourne la parité de l'attribut ME donné, c.-à-d. son bit de format.
+     *
+     * @param payload l'attribut ME d'un message de positionnement en vol.
+     * @return la parité du message (0 s'il est pair, 1 s'il est impair).
+     */
+    static int parity(long payload) {
+        return Bits.extractUInt(payload, FORMAT_START, 1);
+    }
+
+    /**
+     * Retourne la longitude locale et normalisée contenue dans l'attribut ME donné.
+     *
+     * @param payload l'attribut ME d'un message de positionnement en vol.
+     * @return la longitude locale et normalisée, comprise entre 0 (inclus) et 1 (exclu).
+     */
+    static double x(long payload) {
+        return Math.scalb((double) Bits.extractUInt(payload, 0, COORD_LENGTH), -COORD_LENGTH);
+    }
+
+    /**
+     * Retourne la latitude locale et normalisée contenue dans l'attribut ME donné.
+     *
+     * @param payload l'attribut ME d'un message de positionnement en vol.
+     * @return la latitude locale et normalisée, comprise entre 0 (inclus) et 1 (exclu).
+     */
+    static double y(long payload) {
+        return Math.scalb((double) Bits.extractUInt(payload, COORD_LENGTH, COORD_LENGTH), -COORD_LENGTH);
+    }
 
-        double longitude = Bits.extractUInt(payload, 0, COORD_LENGTH);
-        double latitude = Bits.extractUInt(payload, 17, COORD_LENGTH);
+    /**
+     * Retourne l'altitude contenue dans l'attribut ME donné, lue dans la table des altitudes.
+     *
+     * @param payload l'attribut ME d'un message de positionnement en vol.
+     * @return l'altitude en mètres, ou NaN si elle est invalide.
+     */
+    static double altitude(long payload) {
+        return ALTITUDES[Bits.extractUInt(payload, ALT_START, PAYLOAD_SIZE)];
+    }
 
-        double longitudeNormalized = Math.scalb(longitude, -COORD_LENGTH);
-        double latitudeNormalized = Math.scalb(latitude, -COORD_LENGTH);
-        long altitude = Bits.extractUInt(payload, ALT_START, PAYLOAD_SIZE); // Attribut ALT du message
+    /**
+     * Construit la table des altitudes, qui associe à chacune des 4096 valeurs de l'attribut ALT l'altitude qu'elle
+     * représente, en mètres, ou NaN si elle est invalide.
+     *
+     * @return la table des altitudes.
+     */
+    private static double[] buildAltitudes() {
+        double[] altitudes = new double[1 << PAYLOAD_SIZE];
+        for (int altitude = 0; altitude < altitudes.length; altitude++) {
+            altitudes[altitude] = computeAltitude(altitude);
+        }
+        return altitudes;
+    }
+
+    /**
+     * Calcule l'altitude représentée par la valeur donnée de l'attribut ALT.
+     *
+     * @param altitude l'attribut ALT d'un message de positionnement en vol (12 bits).
+     * @return l'altitude en mètres, ou NaN si elle est invalide.
+     */
+    private static double computeAltitude(long altitude) {
+        double altitudeInFeet; // Valeur de l'altitude en pieds
 
     /*
     --------------------------------------------------------------------------------------------------------------------
@@ -82,7 +155,6 @@ public record AirbornePositionMessage(long timeStampNs,
             int result = ((sevenMsbBitsAltitude << 4) | fourLsbBitsAltitude);
 
             altitudeInFeet = result * 25 - 1000; // valeur de l'altitude en pieds
-            altitudeInMeters = Units.convertFrom(altitudeInFeet, Units.Length.FOOT); // valeur de l'altitude en mètre
         } else {
             int shuffle = 0;
             int groupeA = 0, groupeB = 0, groupeC = 0, groupeD = 0;
@@ -133,7 +205,7 @@ public record AirbornePositionMessage(long timeStampNs,
                     || leastSignificantBitsDecoded == 6;
 
             if (altitudeIsInvalid) {
-                return null;
+                return Double.NaN;
             }
 
             // Si la valeur représentée par le groupe des bits de poids faible vaut 7, elle est remplacée par 5
@@ -159,21 +231,8 @@ public record AirbornePositionMessage(long timeStampNs,
             final int multipleOf100 = leastSignificantBitsDecoded * 100;
             final int multipleOf500 = mostSignificantBitsDecoded * 500;
             altitudeInFeet = baseAltitude + multipleOf100 + multipleOf500;
-            altitudeInMeters = Units.convertFrom(altitudeInFeet, Units.Length.FOOT);
         }
-
-
-    /*
-    --------------------------------------------------------------------------------------------------------------------
-      -- Création du message de position en vol
-    --------------------------------------------------------------------------------------------------------------------
-    */
-        return new AirbornePositionMessage(rawMessage.timeStampNs(),
-                rawMessage.icaoAddress(),
-                altitudeInMeters,
-                parity,
-                longitudeNormalized,
-                latitudeNormalized);
+        return Units.convertFrom(altitudeInFeet, Units.Length.FOOT); // valeur de l'altitude en mètres
     }
 
     /**
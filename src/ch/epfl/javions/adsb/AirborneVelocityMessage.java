@@ -6,6 +6,7 @@ import ch.epfl.javions.Units;
 import ch.epfl.javions.aircraft.IcaoAddress;
 
 import java.util.Objects;
+import java.util.function.IntToDoubleFunction;
 
 /**
  * Enregistrement qui représente un message de vitesse en vol.
@@ -21,6 +22,20 @@ public record AirborneVelocityMessage(long timeStampNs,
                                       IcaoAddress icaoAddress,
                                       double speed,
                                       double trackOrHeading) implements Message {
+    private final static int FIELD_SIZE = 10; // La taille des champs de vitesse et de cap des sous-types 3 et 4
+
+    // La vitesse, en m/s, correspondant à chaque valeur du champ de vitesse des sous-types 3 et 4 (0 est inconnue)
+    private final static double[] AIR_SPEEDS = buildTable(airSpeed ->
+            Units.convertFrom(minusOne(airSpeed), Units.Speed.KNOT));
+    private final static double[] SUPERSONIC_AIR_SPEEDS = buildTable(airSpeed ->
+            Units.convertFrom(minusOne(airSpeed), Units.Speed.KNOT * 4));
+
+    // Le cap, en radians, correspondant à chaque valeur du champ de cap des sous-types 3 et 4
+    private final static double[] HEADINGS = buildTable(heading -> {
+        double twoToThePowerMinusTen = (double) 1 / (1 << 10);
+        return Units.convertFrom(heading * twoToThePowerMinusTen, Units.Angle.TURN);
+    });
+
     public AirborneVelocityMessage {
         Preconditions.checkArgument(timeStampNs >= 0);
         Preconditions.checkArgument(speed >= 0);
@@ -37,53 +52,58 @@ public record AirborneVelocityMessage(long timeStampNs,
      */
     public static AirborneVelocityMessage of(RawMessage rawMessage) {
         long payload = rawMessage.payload(); //attribut ME
+        double speed = speed(payload); // Norme du vecteur vitesse
+        double trackOrHeading = trackOrHeading(payload);
+        if (Double.isNaN(speed) || Double.isNaN(trackOrHeading)) {
+            return null;
+        }
+
+    /*
+    --------------------------------------------------------------------------------------------------------------------
+      -- Création du message de vitesse en vol
+    --------------------------------------------------------------------------------------------------------------------
+    */
+        return new AirborneVelocityMessage(rawMessage.timeStampNs(),
+                rawMessage.icaoAddress(),
+                speed,
+                trackOrHeading);
+    }
+
+    /**
+     * Retourne la vitesse contenue dans l'attribut ME donné, sans rien allouer.
+     *
+     * @param payload l'attribut ME d'un message de vitesse en vol.
+     * @return la vitesse de l'aéronef en m/s, ou NaN si le sous-type est invalide ou si la vitesse est inconnue.
+     */
+    static double speed(long payload) {
         long subType = Bits.extractUInt(payload, 48, 3);
         long dependingBits = Bits.extractUInt(payload, 21, 22); // Les 22 bits dependant du sous-type
-        double speed; // Norme du vecteur vitesse
-        double trackOrHeading;
     /*
     --------------------------------------------------------------------------------------------------------------------
       -- Sous-Type 1 ou 2
     --------------------------------------------------------------------------------------------------------------------
     */
         if (subType == 1 || subType == 2) {
-            double eastWestDirection = Bits.extractUInt(dependingBits, 21, 1);
             double eastWestSpeed = Bits.extractUInt(dependingBits, 11, 10);
-            double northSouthDirection = Bits.extractUInt(dependingBits, 10, 1);
             double northSouthSpeed = Bits.extractUInt(dependingBits, 0, 10);
 
-
-            /*
-            ------------------------------------------------------------------------------------------------------------
-              -- Calcul de la vitesse
-            ------------------------------------------------------------------------------------------------------------
-            */
             // Cas ou la vitesse est inconnue
             boolean unknownSpeed = (northSouthSpeed == 0 || eastWestSpeed == 0);
             if (unknownSpeed) {
-                return null;
+                return Double.NaN;
             }
 
-            // Calcul de la norme de la vitesse en noeuds
-            speed = Math.hypot(minusOne(eastWestSpeed),
-                    minusOne(northSouthSpeed));
+            /* Calcul de la norme de la vitesse en noeuds : les composantes étant entières, la somme de leurs carrés
+            est exacte, et sa racine (arrondie correctement) est identique au résultat de Math.hypot, plus lent */
+            double eastWest = minusOne(eastWestSpeed);
+            double northSouth = minusOne(northSouthSpeed);
+            double speed = Math.sqrt(eastWest * eastWest + northSouth * northSouth);
             if (subType == 1) {
-                speed = Units.convertFrom(speed, Units.Speed.KNOT);  // Conversion de noeuds en m.s
+                return Units.convertFrom(speed, Units.Speed.KNOT);  // Conversion de noeuds en m.s
             } else {
                 double fourKnots = Units.Speed.KNOT * 4;
-                speed = Units.convertFrom(speed, fourKnots); // Conversion de 4 noeuds en m.s
+                return Units.convertFrom(speed, fourKnots); // Conversion de 4 noeuds en m.s
             }
-
-
-            /*
-            ------------------------------------------------------------------------------------------------------------
-              -- Calcul de la direction : Si la direction est negative (temporaryDir) on lui ajoute 2 * PI (Un tour)
-            ------------------------------------------------------------------------------------------------------------
-            */
-            double xValue = (eastWestDirection == 0) ? minusOne(eastWestSpeed) : -minusOne(eastWestSpeed);
-            double yValue = (northSouthDirection == 0) ? minusOne(northSouthSpeed) : -minusOne(northSouthSpeed);
-            double temporaryDir = Math.atan2(xValue, yValue);
-            trackOrHeading = (temporaryDir < 0) ? temporaryDir + 2 * Math.PI : temporaryDir;
         }
 
 
@@ -93,56 +113,61 @@ public record AirborneVelocityMessage(long timeStampNs,
     --------------------------------------------------------------------------------------------------------------------
     */
         else if (subType == 3 || subType == 4) {
-            int heading = Bits.extractUInt(dependingBits, 11, 10);
             int airSpeed = Bits.extractUInt(dependingBits, 0, 10);
             if (airSpeed == 0) {
-                return null;
-            }
-
-
-            /*
-            ------------------------------------------------------------------------------------------------------------
-              -- Calcul de la norme du vecteur vitesse
-            ------------------------------------------------------------------------------------------------------------
-            */
-            speed = (subType == 3) ? Units.convertFrom(minusOne(airSpeed), Units.Speed.KNOT) :
-                    Units.convertFrom(minusOne(airSpeed), Units.Speed.KNOT * 4);
-
-
-            /*
-            ------------------------------------------------------------------------------------------------------------
-              -- Calcul de la direction
-            ------------------------------------------------------------------------------------------------------------
-            */
-            if (Bits.testBit(dependingBits, 21)) {
-                double twoToThePowerMinusTen = (double) 1 / (1 << 10);
-                trackOrHeading = Units.convertFrom(heading * twoToThePowerMinusTen, Units.Angle.TURN);
-            } else {
-                return null;
+                return Double.NaN;
             }
-
+            return (subType == 3) ? AIR_SPEEDS[airSpeed] : SUPERSONIC_AIR_SPEEDS[airSpeed];
         }
 
+        // Sous-Type ni 1 ni 2 ni 3 ni 4
+        return Double.NaN;
+    }
 
+    /**
+     * Retourne la direction de déplacement contenue dans l'attribut ME donné, sans rien allouer.
+     *
+     * @param payload l'attribut ME d'un message de vitesse en vol.
+     * @return la direction de déplacement de l'aéronef en radians, ou NaN si le sous-type est invalide ou si la
+     * direction ne peut pas être déterminée.
+     */
+    static double trackOrHeading(long payload) {
+        long subType = Bits.extractUInt(payload, 48, 3);
+        long dependingBits = Bits.extractUInt(payload, 21, 22); // Les 22 bits dependant du sous-type
     /*
     --------------------------------------------------------------------------------------------------------------------
-      -- Sous-Type ni 1 ni 2 ni 3 ni 4
+      -- Sous-Type 1 ou 2 : Si la direction est negative (temporaryDir) on lui ajoute 2 * PI (Un tour)
     --------------------------------------------------------------------------------------------------------------------
     */
-        else {
-            return null;
+        if (subType == 1 || subType == 2) {
+            double eastWestDirection = Bits.extractUInt(dependingBits, 21, 1);
+            double eastWestSpeed = Bits.extractUInt(dependingBits, 11, 10);
+            double northSouthDirection = Bits.extractUInt(dependingBits, 10, 1);
+            double northSouthSpeed = Bits.extractUInt(dependingBits, 0, 10);
+
+            double xValue = (eastWestDirection == 0) ? minusOne(eastWestSpeed) : -minusOne(eastWestSpeed);
+            double yValue = (northSouthDirection == 0) ? minusOne(northSouthSpeed) : -minusOne(northSouthSpeed);
+            double temporaryDir = Math.atan2(xValue, yValue);
+            return (temporaryDir < 0) ? temporaryDir + 2 * Math.PI : temporaryDir;
         }
 
 
     /*
     --------------------------------------------------------------------------------------------------------------------
-      -- Création du message de vitesse en vol
+      -- Sous-Type 3 ou 4
     --------------------------------------------------------------------------------------------------------------------
     */
-        return new AirborneVelocityMessage(rawMessage.timeStampNs(),
-                rawMessage.icaoAddress(),
-                speed,
-                trackOrHeading);
+        else if (subType == 3 || subType == 4) {
+            int heading = Bits.extractUInt(dependingBits, 11, 10);
+            if (Bits.testBit(dependingBits, 21)) {
+                return HEADINGS[heading];
+            } else {
+                return Double.NaN;
+            }
+        }
+
+        // Sous-Type ni 1 ni 2 ni 3 ni 4
+        return Double.NaN;
     }
 
     /**
@@ -154,4 +179,18 @@ public record AirborneVelocityMessage(long timeStampNs,
     private static double minusOne(double initialValue) {
         return initialValue - 1;
     }
-}
\ No newline at end of file
+
+    /**
+     * Construit la table qui associe à chacune des 1024 valeurs d'un champ de 10 bits la valeur donnée par la fonction.
+     *
+     * @param function la fonction qui calcule la valeur associée à un champ.
+     * @return la table des valeurs.
+     */
+    private static double[] buildTable(IntToDoubleFunction function) {
+        double[] table = new double[1 << FIELD_SIZE];
+        for (int field = 0; field < table.length; field++) {
+            table[field] = function.applyAsDouble(field);
+        }
+        return table;
+    }
+}
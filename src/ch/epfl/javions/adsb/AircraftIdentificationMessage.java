@@ -21,11 +21,9 @@ public record AircraftIdentificationMessage(long timeStampNs,
                                             int category,
                                             CallSign callSign) implements Message {
     private final static int CA_SIZE = 4;
-    private final static int CALLSIGN_SIZE = 8;
+    private final static int CALLSIGN_BITS = 48; // Les 8 caractères de 6 bits de l'indicatif
     private final static int ADSB_LENGTH = 14;
-    private final static int ALPHABET_LENGTH = 26;
     private final static int DEBUT_OF_PARTIAL_CATEG = 48;
-    private final static int ASCII_NUM = 64;
 
     /**
      * Constructeur compact de AircraftIdentificationMessage
@@ -47,23 +45,40 @@ public record AircraftIdentificationMessage(long timeStampNs,
      */
     public static AircraftIdentificationMessage of(RawMessage rawMessage) {
         long payload = rawMessage.payload();
-        char[] characters = new char[CALLSIGN_SIZE];
-        StringBuilder str = new StringBuilder();
+        CallSign callSign = callSign(payload);
+
     /*
     --------------------------------------------------------------------------------------------------------------------
-      -- Création de la chaine de caractere de callSign (Pour les nombres entre 1 et 26 qui correspondent aux lettre,
-         on fait l'addition adéquate (+64) pour obtenir le code ascii  de la lettre correspondante.
+      -- Vérification de la validité des caractères et création du message d'identification
     --------------------------------------------------------------------------------------------------------------------
     */
-        for (int j = 0; j < CALLSIGN_SIZE; j++) {
-            int character = Bits.extractUInt(payload, 6 * j, 6);
-            boolean charIsALetter = character >= 1 && character <= ALPHABET_LENGTH;
-            characters[j] = (charIsALetter) ? (char) (character + ASCII_NUM) : (char) character;
-            str.append(characters[j]);
+        if (callSign == null) {
+            return null; // Au moins un des caractères de l'indicatif est invalide
         }
-        str.reverse();
+        return new AircraftIdentificationMessage(rawMessage.timeStampNs(),
+                rawMessage.icaoAddress(),
+                category(payload),
+                callSign);
+    }
 
+    /**
+     * Retourne l'indicatif contenu dans l'attribut ME donné, dont l'instance est unique.
+     *
+     * @param payload l'attribut ME d'un message d'identification.
+     * @return l'indicatif, ou null si au moins un de ses caractères est invalide.
+     */
+    static CallSign callSign(long payload) {
+        // Les 8 caractères de l'indicatif occupent les 48 bits de poids faible de l'attribut ME
+        return CallSign.ofEncoded(payload & ((1L << CALLSIGN_BITS) - 1));
+    }
 
+    /**
+     * Retourne la catégorie contenue dans l'attribut ME donné.
+     *
+     * @param payload l'attribut ME d'un message d'identification.
+     * @return la catégorie d'aéronef de l'expéditeur.
+     */
+    static int category(long payload) {
     /*
     --------------------------------------------------------------------------------------------------------------------
       -- Création de la catégorie :  les 4 bits de poids fort valent 14 moins le code de type et les 4 bits de poids
@@ -72,25 +87,8 @@ public record AircraftIdentificationMessage(long timeStampNs,
     */
 
         long partialCategory = Bits.extractUInt(payload, DEBUT_OF_PARTIAL_CATEG, 3); //Correspond aux 4 bits de poids faible
-        long typeCode = rawMessage.typeCode();
+        long typeCode = RawMessage.typeCode(payload);
         byte mostSignificantBits = (byte) (ADSB_LENGTH - typeCode);  // les 4 bits de poids fort
-        int category = (int) ((mostSignificantBits << CA_SIZE) | partialCategory);
-
-
-    /*
-    --------------------------------------------------------------------------------------------------------------------
-      -- Vérification de la validité des caractères à l'aide d'un bloc try-catch et création du message d'identification
-    --------------------------------------------------------------------------------------------------------------------
-    */
-        try {
-            CallSign callSign = new CallSign(str.toString().stripTrailing());
-            return new AircraftIdentificationMessage(rawMessage.timeStampNs(),
-                    rawMessage.icaoAddress(),
-                    category,
-                    callSign);
-        } catch (IllegalArgumentException e) {
-            // La classe CallSign s'occupe de lancer cette exception si les caractères ne sont pas valides
-            return null;
-        }
+        return (int) ((mostSignificantBits << CA_SIZE) | partialCategory);
     }
-}
\ No newline at end of file
+}
@@ -1,19 +1,61 @@
 package ch.epfl.javions.adsb;
 
 import ch.epfl.javions.GeoPos;
+import ch.epfl.javions.Preconditions;
+import ch.epfl.javions.Units;
+import ch.epfl.javions.aircraft.IcaoAddress;
 
 import java.util.Objects;
 
 /**
  * Accumulateur d'état d'aéronef.
+ * <p>
+ * Il reçoit soit des messages analysés (update), soit directement leurs attributs (en tant que visiteur de
+ * MessageParser). Il ne garde des derniers messages de position pair et impair que les attributs nécessaires au
+ * décodage de la position, et n'alloue donc rien lui-même.
+ * <p>
+ * La position est décodée globalement dès qu'une paire de messages de parités différentes est disponible. Sinon,
+ * chaque message de position est décodé localement, relativement à la dernière position connue de l'aéronef si
+ * elle est récente, ou à défaut relativement à la position du récepteur, si elle est connue.
+ * <p>
+ * Le décodage local donne toujours une position située à moins d'une demi-zone (environ 180 milles nautiques) de la
+ * référence : pour un aéronef plus éloigné du récepteur, c'est une position erronée, décalée d'une zone. Seules les
+ * positions à moins de la portée du récepteur sont donc acceptées, et cette portée est nettement inférieure à une
+ * demi-zone : un aéronef n'est alors pris pour un autre plus proche que s'il est à plus d'une zone moins la portée
+ * du récepteur, bien au-delà de l'horizon radio pour la portée par défaut. De plus, une position décodée relativement
+ * au récepteur n'est affichée qu'à titre provisoire : elle ne devient la dernière position connue, qui sert de
+ * référence aux décodages suivants, qu'une fois confirmée par un décodage global, ou par un second décodage relatif
+ * au récepteur qui lui est cohérent.
  *
  * @param <T> état modifiable d'aéronef.
  */
-public class AircraftStateAccumulator<T extends AircraftStateSetter> {
+public class AircraftStateAccumulator<T extends AircraftStateSetter> implements MessageVisitor {
     private final static double TEN_POW_10 = Math.pow(10, 10);
+    // La moitié de la largeur minimale d'une zone, au-delà de laquelle le décodage local est ambigu (exclue)
+    public final static double MAX_RECEIVER_RANGE = 180 * Units.Length.NAUTICAL_MILE;
+    // La portée par défaut du récepteur : un aéronef n'est pris pour un autre plus proche qu'au-delà de 260 milles
+    public final static double DEFAULT_RECEIVER_RANGE = 100 * Units.Length.NAUTICAL_MILE;
+    // La distance maximale parcourue par un aéronef depuis sa dernière position connue (au plus 10 s plus tôt)
+    private final static double AIRCRAFT_RANGE = 10 * Units.Length.KILOMETER;
     private final T stateSetter;
-    AirbornePositionMessage oddMessage; // Dernier Message Impair
-    AirbornePositionMessage evenMessage; // Dernier Message Pair
+    private final GeoPos receiverPosition; // La position du récepteur, ou null si elle est inconnue
+    private final double receiverRange; // La distance maximale, en mètres, entre un aéronef et le récepteur
+
+    // La dernière position connue de l'aéronef (ou null), et l'horodatage du message dont elle a été décodée
+    private GeoPos lastPosition;
+    private long lastPositionTimeStampNs;
+
+    // La dernière position décodée relativement au récepteur et pas encore confirmée (ou null), et son horodatage
+    private GeoPos provisionalPosition;
+    private long provisionalPositionTimeStampNs;
+
+    // Le dernier message de position pair : son horodatage (ou -1 s'il n'y en a pas), puis sa position locale
+    private long evenTimeStampNs = -1;
+    private double evenX, evenY;
+
+    // Le dernier message de position impair : son horodatage (ou -1 s'il n'y en a pas), puis sa position locale
+    private long oddTimeStampNs = -1;
+    private double oddX, oddY;
 
     /**
      * Constructeur public de AircraftStateAccumulator.
@@ -22,8 +64,40 @@ public class AircraftStateAccumulator<T extends AircraftStateSetter> {
      * @throws NullPointerException si stateSetter est nul.
      */
     public AircraftStateAccumulator(T stateSetter) {
+        this(stateSetter, null);
+    }
+
+    /**
+     * Constructeur public de AircraftStateAccumulator, qui décode localement les positions relativement à la
+     * position du récepteur donnée tant que l'aéronef n'a pas de position connue.
+     *
+     * @param stateSetter      l'état modifiable de l'aéronef.
+     * @param receiverPosition la position du récepteur, ou null si elle est inconnue.
+     * @throws NullPointerException si stateSetter est nul.
+     */
+    public AircraftStateAccumulator(T stateSetter, GeoPos receiverPosition) {
+        this(stateSetter, receiverPosition, DEFAULT_RECEIVER_RANGE);
+    }
+
+    /**
+     * Constructeur public de AircraftStateAccumulator, qui décode localement les positions relativement à la
+     * position du récepteur donnée tant que l'aéronef n'a pas de position connue, en n'acceptant que les positions
+     * situées à moins de la portée donnée du récepteur.
+     *
+     * @param stateSetter      l'état modifiable de l'aéronef.
+     * @param receiverPosition la position du récepteur, ou null si elle est inconnue.
+     * @param receiverRange    la portée du récepteur, en mètres.
+     * @throws NullPointerException     si stateSetter est nul.
+     * @throws IllegalArgumentException si la portée n'est pas strictement positive, ou si elle n'est pas strictement
+     *                                  inférieure à une demi-zone (180 milles nautiques).
+     */
+    public AircraftStateAccumulator(T stateSetter, GeoPos receiverPosition, double receiverRange) {
         Objects.requireNonNull(stateSetter);
+        boolean receiverRangeIsValid = receiverRange > 0 && receiverRange < MAX_RECEIVER_RANGE;
+        Preconditions.checkArgument(receiverRangeIsValid);
         this.stateSetter = stateSetter;
+        this.receiverPosition = receiverPosition;
+        this.receiverRange = receiverRange;
     }
 
     /**
@@ -41,96 +115,158 @@ public class AircraftStateAccumulator<T extends AircraftStateSetter> {
      * @param message le message donné.
      */
     public void update(Message message) {
-        stateSetter.setLastMessageTimeStampNs(message.timeStampNs());
         switch (message) {
-            /*
-            ------------------------------------------------------------------------------------------------------------
-              -- Messages d'identification
-            ------------------------------------------------------------------------------------------------------------
-            */
-            case AircraftIdentificationMessage msg1 -> {
-                stateSetter.setCategory(msg1.category());
-                stateSetter.setCallSign(msg1.callSign());
-            }
-            /*
+            case AircraftIdentificationMessage msg1 -> visitIdentification(msg1.timeStampNs(),
+                    msg1.icaoAddress(),
+                    msg1.category(),
+                    msg1.callSign());
+            case AirbornePositionMessage msg2 -> visitAirbornePosition(msg2.timeStampNs(),
+                    msg2.icaoAddress(),
+                    msg2.altitude(),
+                    msg2.parity(),
+                    msg2.x(),
+                    msg2.y());
+            case AirborneVelocityMessage msg3 -> visitAirborneVelocity(msg3.timeStampNs(),
+                    msg3.icaoAddress(),
+                    msg3.speed(),
+                    msg3.trackOrHeading());
+
+             /*
             ------------------------------------------------------------------------------------------------------------
-              -- Messages de position en vol
+                -- Aucun des 3 types de messages
             ------------------------------------------------------------------------------------------------------------
             */
-            case AirbornePositionMessage msg2 -> {
-                stateSetter.setAltitude(msg2.altitude());
-                boolean msg2IsEven = msg2.parity() == 0;
-
-                /* différence entre l'horodatage du message passé à update et celui du dernier
-                message de parité opposée reçu de l'aéronef */
-                double timeDifference;
-
-
-                /*
-                --------------------------------------------------------------------------------------------------------
-                  -- Messages pair
-                --------------------------------------------------------------------------------------------------------
-                */
-                if (msg2IsEven) {
-                    evenMessage = msg2;
-                    if (oddMessage != null) {
-                        timeDifference = Math.abs(msg2.timeStampNs() - oddMessage.timeStampNs());
-                        if (timeDifference <= TEN_POW_10) {
-                            GeoPos decodedPosition = CprDecoder.decodePosition(msg2.x(),
-                                    msg2.y(),
-                                    oddMessage.x(),
-                                    oddMessage.y(),
-                                    0);
-                            if (!Objects.isNull(decodedPosition)) {
-                                stateSetter.setPosition(decodedPosition);
-                            }
-                        }
-                    }
-                }
-                /*
-                --------------------------------------------------------------------------------------------------------
-                  -- Messages impairs
-                --------------------------------------------------------------------------------------------------------
-                */
-                else {
-                    oddMessage = msg2;
-                    if (evenMessage != null) {
-                        timeDifference = Math.abs(msg2.timeStampNs() - evenMessage.timeStampNs());
-                        if (timeDifference <= TEN_POW_10) {
-                            GeoPos decodedPosition = CprDecoder.decodePosition(evenMessage.x(),
-                                    evenMessage.y(),
-                                    msg2.x(),
-                                    msg2.y(),
-                                    1);
-                            if (!Objects.isNull(decodedPosition)) {
-                                stateSetter.setPosition(decodedPosition);
-                            }
-                        }
-                    }
-                }
-            }
+            default -> throw new Error();
+        }
+    }
 
+    /*
+    --------------------------------------------------------------------------------------------------------------------
+      -- Messages d'identification
+    --------------------------------------------------------------------------------------------------------------------
+    */
+    @Override
+    public void visitIdentification(long timeStampNs, IcaoAddress icaoAddress, int category, CallSign callSign) {
+        stateSetter.setLastMessageTimeStampNs(timeStampNs);
+        stateSetter.setCategory(category);
+        stateSetter.setCallSign(callSign);
+    }
 
-            /*
-            ------------------------------------------------------------------------------------------------------------
-                -- Messages de vitesse en vol
-            ------------------------------------------------------------------------------------------------------------
-            */
-            case AirborneVelocityMessage msg3 -> {
-                stateSetter.setVelocity(msg3.speed());
-                stateSetter.setTrackOrHeading(msg3.trackOrHeading());
+    /*
+    --------------------------------------------------------------------------------------------------------------------
+      -- Messages de position en vol
+    --------------------------------------------------------------------------------------------------------------------
+    */
+    @Override
+    public void visitAirbornePosition(long timeStampNs, IcaoAddress icaoAddress, double altitude, int parity,
+                                      double x, double y) {
+        stateSetter.setLastMessageTimeStampNs(timeStampNs);
+        stateSetter.setAltitude(altitude);
+        boolean messageIsEven = parity == 0;
 
+        /* différence entre l'horodatage du message et celui du dernier message de parité opposée reçu de l'aéronef */
+        double timeDifference;
+        GeoPos decodedPosition = null;
+
+        /*
+        ----------------------------------------------------------------------------------------------------------------
+          -- Messages pair
+        ----------------------------------------------------------------------------------------------------------------
+        */
+        if (messageIsEven) {
+            evenTimeStampNs = timeStampNs;
+            evenX = x;
+            evenY = y;
+            if (oddTimeStampNs >= 0) {
+                timeDifference = Math.abs(timeStampNs - oddTimeStampNs);
+                if (timeDifference <= TEN_POW_10) {
+                    decodedPosition = CprDecoder.decodePosition(x, y, oddX, oddY, 0);
+                }
+            }
+        }
+        /*
+        ----------------------------------------------------------------------------------------------------------------
+          -- Messages impairs
+        ----------------------------------------------------------------------------------------------------------------
+        */
+        else {
+            oddTimeStampNs = timeStampNs;
+            oddX = x;
+            oddY = y;
+            if (evenTimeStampNs >= 0) {
+                timeDifference = Math.abs(timeStampNs - evenTimeStampNs);
+                if (timeDifference <= TEN_POW_10) {
+                    decodedPosition = CprDecoder.decodePosition(evenX, evenY, x, y, 1);
+                }
             }
+        }
 
+        /*
+        ----------------------------------------------------------------------------------------------------------------
+          -- Décodage local, à défaut de paire : relativement à la dernière position connue si elle est récente, sinon
+             relativement au récepteur
+        ----------------------------------------------------------------------------------------------------------------
+        */
+        if (Objects.isNull(decodedPosition)) {
+            boolean lastPositionIsRecent = !Objects.isNull(lastPosition)
+                    && Math.abs(timeStampNs - lastPositionTimeStampNs) <= TEN_POW_10;
+            if (lastPositionIsRecent) {
+                decodedPosition = CprDecoder.decodeLocalPosition(x, y, parity, lastPosition, AIRCRAFT_RANGE);
+            } else if (!Objects.isNull(receiverPosition)) {
+                decodedPosition = decodeRelativeToReceiver(timeStampNs, parity, x, y);
+            }
+        }
 
-             /*
-            ------------------------------------------------------------------------------------------------------------
-                -- Aucun des 3 types de messages
-            ------------------------------------------------------------------------------------------------------------
-            */
-            default -> throw new Error();
+        if (!Objects.isNull(decodedPosition)) {
+            lastPosition = decodedPosition;
+            lastPositionTimeStampNs = timeStampNs;
+            provisionalPosition = null;
+            stateSetter.setPosition(decodedPosition);
+        }
+    }
 
+    /**
+     * Décode localement la position d'un message relativement au récepteur. La position est confirmée si elle est
+     * cohérente avec la précédente position provisoire, récente, c.-à-d. si elle s'en trouve à moins de la distance
+     * qu'un aéronef peut parcourir entre les deux messages. Sinon, elle est affichée, mais devient la position
+     * provisoire.
+     *
+     * @param timeStampNs l'horodatage du message.
+     * @param parity      la parité du message.
+     * @param x           longitude locale normalisée du message.
+     * @param y           latitude locale normalisée du message.
+     * @return la position décodée si elle est confirmée, ou null sinon.
+     */
+    private GeoPos decodeRelativeToReceiver(long timeStampNs, int parity, double x, double y) {
+        GeoPos position = CprDecoder.decodeLocalPosition(x, y, parity, receiverPosition, receiverRange);
+        if (Objects.isNull(position)) {
+            return null;
+        }
 
+        boolean provisionalPositionIsRecent = !Objects.isNull(provisionalPosition)
+                && Math.abs(timeStampNs - provisionalPositionTimeStampNs) <= TEN_POW_10;
+        boolean positionIsConfirmed = provisionalPositionIsRecent
+                && !Objects.isNull(CprDecoder.decodeLocalPosition(x, y, parity, provisionalPosition, AIRCRAFT_RANGE));
+        if (positionIsConfirmed) {
+            return position;
         }
+
+        provisionalPosition = position;
+        provisionalPositionTimeStampNs = timeStampNs;
+        stateSetter.setPosition(position);
+        return null;
+    }
+
+    /*
+    --------------------------------------------------------------------------------------------------------------------
+      -- Messages de vitesse en vol
+    --------------------------------------------------------------------------------------------------------------------
+    */
+    @Override
+    public void visitAirborneVelocity(long timeStampNs, IcaoAddress icaoAddress, double speed,
+                                      double trackOrHeading) {
+        stateSetter.setLastMessageTimeStampNs(timeStampNs);
+        stateSetter.setVelocity(speed);
+        stateSetter.setTrackOrHeading(trackOrHeading);
     }
-}
\ No newline at end of file
+}
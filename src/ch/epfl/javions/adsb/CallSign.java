@@ -6,6 +6,10 @@ import java.util.regex.Pattern;
 
 /**
  * Enregistrement qui représente l'indicatif (call sign) d'un aéronef.
+ * <p>
+ * Les indicatifs décodés des messages d'identification sont uniques : un aéronef qui répète son indicatif
+ * obtient toujours la même instance, sans qu'aucune chaîne ne soit construite à nouveau (tant que la table
+ * des indicatifs, bornée, n'a pas dû la remplacer).
  *
  * @param string chaîne contenant la représentation textuelle de l'indicatif de l'aeronef.
  * @author Brian Jean Claud El Banna (356437)
@@ -15,6 +19,24 @@ public record CallSign(String string) {
 
     // "[A-Z0-9 ]{0,8}" Expression régulière correspondant à un indicatif
     private static final Pattern num = Pattern.compile("[A-Z0-9 ]{0,8}");
+    private static final int LENGTH = 8; // Le nombre de caractères d'un indicatif encodé
+    private static final int CHAR_SIZE = 6; // La taille d'un caractère encodé, en bits
+    private static final int ALPHABET_LENGTH = 26;
+    private static final int ASCII_NUM = 64; // Ajouté aux nombres de 1 à 26 pour obtenir le code ASCII des lettres
+    private static final int TABLE_BITS = 14; // La table des indicatifs a 2 puissance 14 cases
+    private static final int MAX_PROBES = 8; // Le nombre maximal de cases examinées pour un indicatif
+
+    // Le caractère correspondant à chacun des 64 caractères encodés, puis sa nature (VALID, BLANK, ...)
+    private static final char[] CHARACTERS = buildCharacters();
+    private static final byte VALID = 0, BLANK = 1, BLANK_INVALID = 2, INVALID = 3;
+    private static final byte[] CHARACTER_KINDS = buildCharacterKinds();
+
+    /* Les indicatifs uniques, dans une table de hachage à adressage ouvert indexée par leurs 48 bits encodés
+    (sondage linéaire d'au plus MAX_PROBES cases, une case vide ayant un indicatif nul). Lorsque toutes les cases
+    examinées sont occupées, par exemple par des indicatifs de messages erronés, la première est remplacée : la
+    table reste ainsi bornée. Elle n'est accédée que sous le verrou de la classe */
+    private static final long[] ENCODED_CHARS = new long[1 << TABLE_BITS];
+    private static final CallSign[] CALL_SIGNS = new CallSign[1 << TABLE_BITS];
 
     /**
      * Constructeur compact de l'enregistrement AircraftDescription qui valide la chaîne qui lui est passée
@@ -28,4 +50,97 @@ public record CallSign(String string) {
         boolean callSignIsValid = num.matcher(string).matches();
         Preconditions.checkArgument(callSignIsValid);
     }
-}
\ No newline at end of file
+
+    /**
+     * Retourne l'instance de l'indicatif dont les 8 caractères de 6 bits sont donnés (le premier caractère
+     * occupant les bits de poids fort), tels qu'ils sont encodés dans un message d'identification. Tant qu'il
+     * reste dans la table des indicatifs, c'est toujours la même instance qui est retournée.
+     *
+     * @param encodedChars les 48 bits des 8 caractères encodés, dans les bits de poids faible.
+     * @return l'indicatif correspondant, ou null si l'un de ses caractères est invalide.
+     */
+    static synchronized CallSign ofEncoded(long encodedChars) {
+        int mask = CALL_SIGNS.length - 1;
+        int firstIndex = (int) ((encodedChars * 0x9E3779B97F4A7C15L) >>> (Long.SIZE - TABLE_BITS));
+        // Si toutes les cases examinées sont occupées, l'indicatif remplacera celui de la première
+        int freeIndex = firstIndex;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int index = (firstIndex + probe) & mask;
+            CallSign callSign = CALL_SIGNS[index];
+            if (callSign == null) {
+                freeIndex = index; // L'indicatif n'est pas dans la table, et sera placé dans cette case vide
+                break;
+            }
+            if (ENCODED_CHARS[index] == encodedChars) {
+                return callSign;
+            }
+        }
+
+        CallSign callSign = decode(encodedChars);
+        if (callSign != null) {
+            ENCODED_CHARS[freeIndex] = encodedChars;
+            CALL_SIGNS[freeIndex] = callSign;
+        }
+        return callSign;
+    }
+
+    /**
+     * Décode l'indicatif dont les caractères encodés sont donnés. Les caractères blancs de fin sont retirés (comme
+     * le fait String.stripTrailing), et tous les autres doivent être des lettres, des chiffres ou des espaces.
+     */
+    private static CallSign decode(long encodedChars) {
+        char[] characters = new char[LENGTH];
+        int end = 0; // L'index qui suit le dernier caractère qui n'est pas blanc
+        int firstInvalid = LENGTH; // L'index du premier caractère invalide
+        for (int i = LENGTH - 1; i >= 0; i--) {
+            int character = (int) (encodedChars >>> (CHAR_SIZE * (LENGTH - 1 - i))) & ((1 << CHAR_SIZE) - 1);
+            characters[i] = CHARACTERS[character];
+            int kind = CHARACTER_KINDS[character];
+            boolean charIsBlank = kind == BLANK || kind == BLANK_INVALID;
+            if (end == 0 && !charIsBlank) {
+                end = i + 1;
+            }
+            if (kind == BLANK_INVALID || kind == INVALID) {
+                firstInvalid = i;
+            }
+        }
+
+        // Un caractère invalide n'est toléré que s'il est blanc et placé après le dernier caractère qui ne l'est pas
+        if (firstInvalid < end) {
+            return null;
+        }
+        return new CallSign(new String(characters, 0, end));
+    }
+
+    /**
+     * Construit la table qui associe à chacun des 64 caractères encodés le caractère correspondant : les nombres
+     * de 1 à 26 sont des lettres, les autres sont interprétés comme des codes ASCII.
+     */
+    private static char[] buildCharacters() {
+        char[] characters = new char[1 << CHAR_SIZE];
+        for (int character = 0; character < characters.length; character++) {
+            boolean charIsALetter = character >= 1 && character <= ALPHABET_LENGTH;
+            characters[character] = (charIsALetter) ? (char) (character + ASCII_NUM) : (char) character;
+        }
+        return characters;
+    }
+
+    /**
+     * Construit la table qui associe à chacun des 64 caractères encodés sa nature : valide (lettre, chiffre ou
+     * espace), blanc invalide (qui n'est toléré qu'en fin d'indicatif), ou invalide. L'espace, qui est à la fois
+     * valide et blanc, est marqué comme blanc.
+     */
+    private static byte[] buildCharacterKinds() {
+        byte[] kinds = new byte[1 << CHAR_SIZE];
+        for (int character = 0; character < kinds.length; character++) {
+            char c = CHARACTERS[character];
+            boolean charIsValid = (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == ' ';
+            if (Character.isWhitespace(c)) {
+                kinds[character] = (c == ' ') ? BLANK : BLANK_INVALID;
+            } else {
+                kinds[character] = charIsValid ? VALID : INVALID;
+            }
+        }
+        return kinds;
+    }
+}
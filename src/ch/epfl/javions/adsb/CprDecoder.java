@@ -4,8 +4,19 @@ import ch.epfl.javions.GeoPos;
 import ch.epfl.javions.Preconditions;
 import ch.epfl.javions.Units;
 
+import java.util.Objects;
+
 /**
  * Décodeur de position CPR.
+ * <p>
+ * Le décodage global utilise une paire de messages de parités différentes. Le décodage local n'utilise qu'un
+ * seul message, et une position de référence (celle du récepteur, ou la dernière position connue de l'aéronef)
+ * qui doit se trouver à moins d'une demi-zone de latitude (environ 330 km) de l'aéronef : c'est pourquoi la
+ * distance entre la position décodée et la référence est bornée.
+ * <p>
+ * Le nombre de zones de longitude d'une latitude est lu dans une table des 58 latitudes auxquelles il change
+ * (la table standard de l'ADS-B), et le décodage n'alloue rien d'autre que la position retournée. Le décodage
+ * par lots (decodePositions) travaille sur des tableaux de coordonnées, pour le retraitement d'enregistrements.
  *
  * @author Brian Jean Claud El Banna (356437)
  * @author Nicolas Khamis (355598)
@@ -23,6 +34,27 @@ public final class CprDecoder {
     // Largeur des zones de latitude pour le découpage impair
     private static final double ZONES_WIDTH_LAT_ODD_DECOMP = (double) 1 / NB_ZONES_LAT_ODD_DECOMP;
 
+    // Rayon moyen de la Terre, en mètres
+    private static final double EARTH_RADIUS = 6_371 * Units.Length.KILOMETER;
+
+    // Facteur de conversion d'un angle en tours vers un angle en T32 (exactement 2^32)
+    private static final double TURN_TO_T32 = Units.convert(1, Units.Angle.TURN, Units.Angle.T32);
+
+    // Le nombre maximal de zones de longitude (à l'équateur)
+    private static final int MAX_LONGITUDE_ZONES = 59;
+
+    /* Les latitudes (en tours, croissantes) jusqu'auxquelles il y a au moins 59, 58, ..., 2 zones de longitude :
+    au-delà de ZONE_LIMITS[i], il y en a au plus 58 - i */
+    private static final double[] ZONE_LIMITS = buildZoneLimits();
+
+    // La position (empaquetée) qui signale un échec du décodage : sa latitude, Integer.MIN_VALUE, n'est pas valide
+    private static final long NO_POSITION = Integer.toUnsignedLong(Integer.MIN_VALUE);
+
+    /**
+     * La latitude, invalide, placée par decodePositions dans les positions qui n'ont pas pu être décodées.
+     */
+    public static final int UNDECODED_LATITUDE_T32 = Integer.MIN_VALUE;
+
     // On crée un constructeur privé car la classe est non instanciable
     private CprDecoder() {
     }
@@ -41,6 +73,57 @@ public final class CprDecoder {
      * @throws IllegalArgumentException si mostRecent ne vaut pas 0 ou 1.
      */
     public static GeoPos decodePosition(double x0, double y0, double x1, double y1, int mostRecent) {
+        long position = decode(x0, y0, x1, y1, mostRecent);
+        return (position == NO_POSITION)
+                ? null
+                : new GeoPos((int) (position >> Integer.SIZE), (int) position);
+    }
+
+    /**
+     * Décode les positions de plusieurs paires de messages, données sous forme de tableaux (un tableau par
+     * attribut), sans allouer de GeoPos. Les positions sont celles que retournerait decodePosition.
+     *
+     * @param x0s           longitudes locales normalisées des messages pairs.
+     * @param y0s           latitudes locales normalisées des messages pairs.
+     * @param x1s           longitudes locales normalisées des messages impairs.
+     * @param y1s           latitudes locales normalisées des messages impairs.
+     * @param mostRecents   la parité du message le plus récent de chaque paire.
+     * @param count         le nombre de paires.
+     * @param longitudesT32 le tableau dans lequel on place la longitude, en T32, de chaque position décodée.
+     * @param latitudesT32  le tableau dans lequel on place la latitude, en T32, de chaque position décodée, ou
+     *                      UNDECODED_LATITUDE_T32 si la position de la paire n'a pas pu être décodée.
+     * @return le nombre de positions décodées.
+     * @throws IllegalArgumentException  si l'un des éléments de mostRecents ne vaut pas 0 ou 1.
+     * @throws IndexOutOfBoundsException si l'un des tableaux contient moins de count éléments.
+     */
+    public static int decodePositions(double[] x0s, double[] y0s, double[] x1s, double[] y1s, int[] mostRecents,
+                                      int count, int[] longitudesT32, int[] latitudesT32) {
+        Objects.checkFromIndexSize(0, count, x0s.length);
+        Objects.checkFromIndexSize(0, count, y0s.length);
+        Objects.checkFromIndexSize(0, count, x1s.length);
+        Objects.checkFromIndexSize(0, count, y1s.length);
+        Objects.checkFromIndexSize(0, count, mostRecents.length);
+        Objects.checkFromIndexSize(0, count, longitudesT32.length);
+        Objects.checkFromIndexSize(0, count, latitudesT32.length);
+
+        int decodedCount = 0;
+        for (int i = 0; i < count; i++) {
+            long position = decode(x0s[i], y0s[i], x1s[i], y1s[i], mostRecents[i]);
+            longitudesT32[i] = (int) (position >> Integer.SIZE);
+            latitudesT32[i] = (int) position;
+            decodedCount += (position == NO_POSITION) ? 0 : 1;
+        }
+        return decodedCount;
+    }
+
+    /**
+     * Décode la position d'une paire de messages, comme decodePosition.
+     *
+     * @return la position décodée, empaquetée (la longitude en T32 dans les 32 bits de poids fort, la latitude en T32
+     * dans les 32 bits de poids faible), ou NO_POSITION si elle n'a pas pu être décodée.
+     * @throws IllegalArgumentException si mostRecent ne vaut pas 0 ou 1.
+     */
+    private static long decode(double x0, double y0, double x1, double y1, int mostRecent) {
     /*
     --------------------------------------------------------------------------------------------------------------------
       -- Teste la validité de l'attribut "mostRecent"
@@ -52,153 +135,173 @@ public final class CprDecoder {
 
     /*
     --------------------------------------------------------------------------------------------------------------------
-      -- Calcul du numéro des zones de latitude dans les découpages
+      -- Calcul de la latitude (en tours) et conversion des angles en leur équivalent négatif
     --------------------------------------------------------------------------------------------------------------------
     */
-        // On crée un tableau qui contient les numéros de zones de latitude pair et impair respectivement
-        double[] numZonesLatitude = numberOfZonesCalculator(y0, y1,
-                NB_ZONES_LAT_EVEN_DECOMP, NB_ZONES_LAT_ODD_DECOMP);
-        double numZoneEvenLat = numZonesLatitude[0];
-        double numZoneOddLat = numZonesLatitude[1];
+        double latitudeZone = zoneNumber(y0, y1, NB_ZONES_LAT_EVEN_DECOMP, NB_ZONES_LAT_ODD_DECOMP);
+        double evenLatitude = measurmentCalculator(ZONES_WIDTH_LAT_EVEN_DECOMP,
+                positiveZoneNumber(latitudeZone, NB_ZONES_LAT_EVEN_DECOMP), y0);
+        double oddLatitude = measurmentCalculator(ZONES_WIDTH_LAT_ODD_DECOMP,
+                positiveZoneNumber(latitudeZone, NB_ZONES_LAT_ODD_DECOMP), y1);
 
 
     /*
     --------------------------------------------------------------------------------------------------------------------
-      -- Calcul de la latitude (en tours) et conversion des angles en leur équivalent négatif
+      -- Test du changement des bandes de latitude : le nombre de zones de longitude calculé avec la latitude paire
+         et impaire doit être le même
     --------------------------------------------------------------------------------------------------------------------
     */
-        double evenLatitude = measurmentCalculator(ZONES_WIDTH_LAT_EVEN_DECOMP, numZoneEvenLat, y0);
-        double oddLatitude = measurmentCalculator(ZONES_WIDTH_LAT_ODD_DECOMP, numZoneOddLat, y1);
+        int numberLongZones = numberOfLongitudeZones(evenLatitude);
+        boolean changeOfBand = (numberLongZones != numberOfLongitudeZones(oddLatitude));
+        if (changeOfBand) {
+            return NO_POSITION;
+        }
 
 
     /*
     --------------------------------------------------------------------------------------------------------------------
-      -- Calcul du numéro des zones de longitude dans les découpages grâce à la formule de l'énoncé
+      -- Calcul de la longitude (en tours) du message le plus récent et conversion des angles en leur équivalent
+         négatif
     --------------------------------------------------------------------------------------------------------------------
     */
-        // Nombre de zones de longitude pour le découpage pair
-        double numberLongZonesEvenDecomp = numberOfLongitudeZones(evenLatitude);
-
-        // Nombre de zones de longitude pour le découpage impair
-        double numberLongZonesOddDecomp = numberLongZonesEvenDecomp - 1;
+        double latitude = (mostRecent == 0) ? evenLatitude : oddLatitude;
+        double longitude = (mostRecent == 0) ? x0 : x1;
+
+        if (numberLongZones > 1) {
+            // Nombre de zones de longitude pour le découpage pair, puis pour le découpage impair
+            double numberLongZonesEvenDecomp = numberLongZones;
+            double numberLongZonesOddDecomp = numberLongZones - 1;
+
+            double longitudeZone = zoneNumber(x0, x1, numberLongZonesEvenDecomp, numberLongZonesOddDecomp);
+            longitude = (mostRecent == 0)
+                    ? measurmentCalculator((double) 1 / numberLongZonesEvenDecomp,
+                    positiveZoneNumber(longitudeZone, numberLongZonesEvenDecomp), x0)
+                    : measurmentCalculator((double) 1 / numberLongZonesOddDecomp,
+                    positiveZoneNumber(longitudeZone, numberLongZonesOddDecomp), x1);
+        }
 
 
     /*
     --------------------------------------------------------------------------------------------------------------------
-      -- Test du changement des bandes de latitude
+      -- Conversion en T32, et test de la validité de la latitude (c.-à-d. comprise entre ±90°)
     --------------------------------------------------------------------------------------------------------------------
     */
-        // Nombre de zones de longitude pour le découpage de test (pour vérifier s'il y'a un changement de bande)
-        double numberLongZonesTest = numberOfLongitudeZones(oddLatitude);
-
-        // Le nombre de zones de longitudes calculés avec la latitude paire et impaire doit être la même
-        boolean changeOfBand = (numberLongZonesEvenDecomp != numberLongZonesTest);
-        if (changeOfBand) {
-            return null;
+        int latitudeT32 = (int) Math.rint(latitude * TURN_TO_T32);
+        if (!GeoPos.isValidLatitudeT32(latitudeT32)) {
+            return NO_POSITION;
         }
+        int longitudeT32 = (int) Math.rint(longitude * TURN_TO_T32);
+        return ((long) longitudeT32 << Integer.SIZE) | Integer.toUnsignedLong(latitudeT32);
+    }
 
+    /**
+     * Retourne la position géographique correspondant à la position locale normalisée d'un seul message, décodée
+     * relativement à la position de référence donnée.
+     *
+     * @param x           longitude locale normalisée du message.
+     * @param y           latitude locale normalisée du message.
+     * @param parity      la parité du message (0 s'il est pair, 1 s'il est impair).
+     * @param reference   la position de référence, proche de l'aéronef.
+     * @param maxDistance la distance maximale, en mètres, entre la position décodée et la référence.
+     * @return les coordonnées géographiques correspondant à la position locale normalisée fournie, ou null si la
+     * latitude de la position décodée n'est pas valide, ou si la position est trop éloignée de la référence (ce qui
+     * signale une référence trop éloignée de l'aéronef, ou un message erroné).
+     * @throws IllegalArgumentException si parity ne vaut pas 0 ou 1, ou si la distance maximale n'est pas
+     *                                  strictement positive.
+     * @throws NullPointerException     si la référence est nulle.
+     */
+    public static GeoPos decodeLocalPosition(double x, double y, int parity, GeoPos reference, double maxDistance) {
+        boolean parityIsValid = (parity == 0 || parity == 1);
+        boolean maxDistanceIsValid = maxDistance > 0;
+        Preconditions.checkArgument(parityIsValid);
+        Preconditions.checkArgument(maxDistanceIsValid);
+        Objects.requireNonNull(reference);
+
+        double referenceLatitude = Units.convert(reference.latitudeT32(), Units.Angle.T32, Units.Angle.TURN);
+        double referenceLongitude = Units.convert(reference.longitudeT32(), Units.Angle.T32, Units.Angle.TURN);
 
     /*
     --------------------------------------------------------------------------------------------------------------------
-      -- Calcul de la longitude (en tours) et conversion des angles en leur équivalent négatif
+      -- Calcul de la latitude (en tours) : la zone de latitude est celle qui place la latitude décodée le plus près
+         possible de celle de la référence
     --------------------------------------------------------------------------------------------------------------------
     */
-        double evenLongitude = 0;
-        double oddLongitude = 0;
-
-        if (numberLongZonesEvenDecomp == 1) {
-            evenLongitude = x0;
-            oddLongitude = x1;
-        } else if (numberLongZonesEvenDecomp > 1) {
-            // Largeur des zones de longitude pour le découpage pair
-            double zonesWidthLongEvenDecomp = (double) 1 / numberLongZonesEvenDecomp;
-
-            // Largeur des zones de longitude pour le découpage impair
-            double zonesWidthLongOddDecomp = (double) 1 / numberLongZonesOddDecomp;
+        double zonesWidthLatitude = (parity == 0) ? ZONES_WIDTH_LAT_EVEN_DECOMP : ZONES_WIDTH_LAT_ODD_DECOMP;
+        double numZoneLatitude = Math.floor(referenceLatitude / zonesWidthLatitude + 0.5 - y);
+        double latitude = zonesWidthLatitude * (numZoneLatitude + y);
+        int latitudeT32 = (int) Math.rint(latitude * TURN_TO_T32);
+        if (!GeoPos.isValidLatitudeT32(latitudeT32)) {
+            return null;
+        }
 
     /*
     --------------------------------------------------------------------------------------------------------------------
-      -- Calcul du numéro des zones de longitude dans les découpages
+      -- Calcul de la longitude (en tours), de la même manière, dans le découpage qui correspond à la latitude
     --------------------------------------------------------------------------------------------------------------------
     */
-            // On crée un tableau qui contient les numéros de zones de longitude pair et impair respectivement
-            double[] numZonesLongitude = numberOfZonesCalculator(x0, x1,
-                    numberLongZonesEvenDecomp, numberLongZonesOddDecomp);
-            double numZoneEvenLong = numZonesLongitude[0];
-            double numZoneOddLong = numZonesLongitude[1];
-
-
-            // Calcul des longitudes pairs et impairs (en tours) et conversion des angles en leur équivalent négatif
-            evenLongitude = measurmentCalculator(zonesWidthLongEvenDecomp, numZoneEvenLong, x0);
-            oddLongitude = measurmentCalculator(zonesWidthLongOddDecomp, numZoneOddLong, x1);
-        }
-
+        double numberLongZones = Math.max(numberOfLongitudeZones(latitude) - parity, 1);
+        double zonesWidthLongitude = (double) 1 / numberLongZones;
+        double numZoneLongitude = Math.floor(referenceLongitude / zonesWidthLongitude + 0.5 - x);
+        double longitude = recenter(zonesWidthLongitude * (numZoneLongitude + x));
 
     /*
     --------------------------------------------------------------------------------------------------------------------
-      -- Affichage final
+      -- Vérification de la distance à la référence (approximation équirectangulaire, suffisante à ces distances)
     --------------------------------------------------------------------------------------------------------------------
     */
-        try {
-            // Si le message le plus récent est pair, on affiche la longitude et la latitude en T32 d'un message pair
-            if (mostRecent == 0) {
-                double evenLongitudeT32 = Units.convert(evenLongitude,
-                        Units.Angle.TURN,
-                        Units.Angle.T32);
-                double evenLatitudeT32 = Units.convert(evenLatitude,
-                        Units.Angle.TURN,
-                        Units.Angle.T32);
-                return new GeoPos((int) Math.rint(evenLongitudeT32),
-                        (int) Math.rint(evenLatitudeT32));
-            }
-            // Si le message le plus récent est impair, on affiche la longitude et la latitude en T32 d'un message impair
-            else {
-                double oddLongitudeT32 = Units.convert(oddLongitude,
-                        Units.Angle.TURN,
-                        Units.Angle.T32);
-                double oddLatitudeT32 = Units.convert(oddLatitude,
-                        Units.Angle.TURN,
-                        Units.Angle.T32);
-                return new GeoPos((int) Math.rint(oddLongitudeT32),
-                        (int) Math.rint(oddLatitudeT32));
-            }
-        } catch (IllegalArgumentException e) {
-            /* Si la latitude de la position décodée n'est pas valide (c.-à-d.
-        comprise entre ±90°). Ceci est déterminé directement grace au constructeur
-        de GeoPos (qui lance IllegalArgumentException si la latitude n'est pas valide) */
+        double latitudeDifference = Units.convertFrom(latitude - referenceLatitude, Units.Angle.TURN);
+        double longitudeDifference = Units.convertFrom(recenter(longitude - referenceLongitude), Units.Angle.TURN)
+                * Math.cos(Units.convertFrom((latitude + referenceLatitude) / 2, Units.Angle.TURN));
+        double distance = EARTH_RADIUS * Math.hypot(latitudeDifference, longitudeDifference);
+        if (distance > maxDistance) {
             return null;
         }
+
+        int longitudeT32 = (int) Math.rint(longitude * TURN_TO_T32);
+        return new GeoPos(longitudeT32, latitudeT32);
     }
 
     /**
-     * Méthode qui calcule le numero d'une zone pair et impair pour une mesure (longitude ou latitude)
+     * Méthode qui ramène un angle (en tours) dans l'intervalle [-½, ½[.
+     *
+     * @param angle l'angle, en tours, compris entre -1 et 1.
+     * @return l'angle équivalent, compris entre -½ (inclus) et ½ (exclu).
+     */
+    private static double recenter(double angle) {
+        if (angle >= 0.5) {
+            return angle - 1;
+        } else if (angle < -0.5) {
+            return angle + 1;
+        }
+        return angle;
+    }
+
+    /**
+     * Méthode qui calcule le numéro de zone (éventuellement négatif) d'une mesure (longitude ou latitude), commun
+     * aux découpages pair et impair.
      *
      * @param valueNormalized0  la valeur paire normalisée de la latitude locale ou de la longitude locale
      * @param valueNormalized1  la valeur impaire normalisée de la latitude locale ou de la longitude locale
      * @param nbZonesEvenDecomp le nombre de zones d'une mesure paire (longitude ou latitude)
      * @param nbZonesOddDecomp  le nombre de zones d'une mesure impaire (longitude ou latitude)
-     * @return un tableau qui contient les numéros de zones pair et impair respectivement de la mesure donnée
+     * @return le numéro de zone de la mesure, à ramener dans chaque découpage avec positiveZoneNumber
      */
-    private static double[] numberOfZonesCalculator(double valueNormalized0,
-                                                    double valueNormalized1,
-                                                    double nbZonesEvenDecomp,
-                                                    double nbZonesOddDecomp) {
-        double calculatedEvenZoneNumber; // le numero d'une zone paire pour la mesure
-        double calculatedOddZoneNumber; // le numero d'une zone impaire pour la mesure
-        // argument de Math.rint
-        double argument = valueNormalized0 * nbZonesOddDecomp - valueNormalized1 * nbZonesEvenDecomp;
-        double zoneNumber = Math.rint(argument);
-
-        if (zoneNumber < 0) {
-            calculatedEvenZoneNumber = zoneNumber + nbZonesEvenDecomp;
-            calculatedOddZoneNumber = zoneNumber + nbZonesOddDecomp;
-        } else {
-            calculatedEvenZoneNumber = zoneNumber;
-            calculatedOddZoneNumber = zoneNumber;
-        }
+    private static double zoneNumber(double valueNormalized0,
+                                     double valueNormalized1,
+                                     double nbZonesEvenDecomp,
+                                     double nbZonesOddDecomp) {
+        return Math.rint(valueNormalized0 * nbZonesOddDecomp - valueNormalized1 * nbZonesEvenDecomp);
+    }
 
-        // tableau qui contient les numéros de zones pair et impair respectivement de la mesure
-        return new double[]{calculatedEvenZoneNumber, calculatedOddZoneNumber};
+    /**
+     * Méthode qui ramène un numéro de zone négatif dans un découpage donné.
+     *
+     * @param zoneNumber le numéro de zone calculé par zoneNumber
+     * @param nbZones    le nombre de zones du découpage
+     * @return le numéro de la zone dans le découpage, compris entre 0 et nbZones
+     */
+    private static double positiveZoneNumber(double zoneNumber, double nbZones) {
+        return (zoneNumber < 0) ? zoneNumber + nbZones : zoneNumber;
     }
 
     /**
@@ -221,32 +324,82 @@ public final class CprDecoder {
     }
 
     /**
-     * Méthode qui calcule le numero de zones de longitude.
+     * Méthode qui calcule le nombre de zones de longitude, par une recherche dichotomique dans la table des latitudes
+     * auxquelles il change.
      *
-     * @param latitude la latitude de l'aeronef.
-     * @return le numero de zones de longitude.
+     * @param latitude la latitude de l'aeronef, en tours, comprise entre -½ et ½.
+     * @return le nombre de zones de longitude.
      */
-    private static double numberOfLongitudeZones(double latitude) {
-        double nbZonesLongitude;
+    private static int numberOfLongitudeZones(double latitude) {
+        /* Le nombre de zones ne dépend que du carré du cosinus de la latitude : il est donc symétrique par rapport
+        aux pôles, ce qui importe pour les latitudes invalides (au-delà d'un pôle) comparées lors du test
+        du changement de bande */
+        double absoluteLatitude = Math.abs(latitude);
+        if (absoluteLatitude > 0.25) {
+            absoluteLatitude = 0.5 - absoluteLatitude;
+        }
+
+        // Nombre de limites strictement inférieures à la latitude
+        int low = 0;
+        int high = ZONE_LIMITS.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (ZONE_LIMITS[middle] < absoluteLatitude) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return MAX_LONGITUDE_ZONES - low;
+    }
+
+    /**
+     * Méthode qui calcule la table des latitudes auxquelles change le nombre de zones de longitude. Chaque limite
+     * est d'abord obtenue en inversant la formule de l'énoncé (il y a au moins n zones de longitude jusqu'à la
+     * latitude arccos(√((1 - cos(2π / 60)) / (1 - cos(2π / n))))), puis ajustée au double près pour que la table
+     * donne exactement le même résultat que la formule, y compris aux limites (p. ex. 87°, où il y a 1 zone).
+     *
+     * @return les latitudes, en tours, jusqu'auxquelles il y a au moins 59, 58, ..., 2 zones de longitude.
+     */
+    private static double[] buildZoneLimits() {
+        double numerator = 1 - Math.cos(2 * Math.PI * ZONES_WIDTH_LAT_EVEN_DECOMP);
+        double[] limits = new double[MAX_LONGITUDE_ZONES - 1];
+        for (int i = 0; i < limits.length; i++) {
+            int nbZones = MAX_LONGITUDE_ZONES - i;
+            double cosine = Math.sqrt(numerator / (1 - Math.cos(Units.Angle.TURN / nbZones)));
+            double limit = Units.convertTo(Math.acos(cosine), Units.Angle.TURN);
+
+            // La limite est la plus grande latitude à laquelle la formule donne au moins nbZones zones
+            while (longitudeZonesFormula(limit) < nbZones) {
+                limit = Math.nextDown(limit);
+            }
+            while (longitudeZonesFormula(Math.nextUp(limit)) >= nbZones) {
+                limit = Math.nextUp(limit);
+            }
+            limits[i] = limit;
+        }
+        return limits;
+    }
+
+    /**
+     * Méthode qui calcule le nombre de zones de longitude avec la formule de l'énoncé (elle ne sert plus qu'à
+     * construire la table des limites).
+     *
+     * @param latitude la latitude de l'aeronef, en tours.
+     * @return le nombre de zones de longitude.
+     */
+    private static double longitudeZonesFormula(double latitude) {
         double aNumerator = 1 - Math.cos(2
                 * Math.PI
                 * ZONES_WIDTH_LAT_EVEN_DECOMP);
 
         // On convertit l'angle de l'unité tour à l'unité de base, donc le radian
         double radianAngle = Units.convertFrom(latitude, Units.Angle.TURN);
-        double aDenominatorArgument = Math.cos(radianAngle);
-        double aDenominator = Math.pow(aDenominatorArgument, 2);
-        double aCosArgument = 1 - (aNumerator / aDenominator);
-        double a = Math.acos(aCosArgument);
+        double aDenominator = Math.pow(Math.cos(radianAngle), 2);
+        double a = Math.acos(1 - (aNumerator / aDenominator));
 
         /* Si la valeur passée à aCos est supérieur à 1 en valeur absolue, la latitude est 1
         sinon, on applique la formule de l'énoncé */
-        if (Double.isNaN(a)) {
-            nbZonesLongitude = 1;
-        } else {
-            nbZonesLongitude = Math.floor(Units.Angle.TURN / a);
-        }
-
-        return nbZonesLongitude;
+        return Double.isNaN(a) ? 1 : Math.floor(Units.Angle.TURN / a);
     }
 }
@@ -0,0 +1,21 @@
+package ch.epfl.javions.adsb;
+
+/**
+ * Interface fonctionnelle qui a pour but d'être implémentée par toutes les classes qui reçoivent des messages bruts
+ * sous la forme de leurs attributs (leur horodatage, puis leurs bits high et low), sans qu'aucun message brut ne
+ * soit alloué (p. ex. les consommateurs de RawMessageRing).
+ *
+ * @author Brian Jean Claud El Banna (356437)
+ * @author Nicolas Khamis (355598)
+ */
+@FunctionalInterface
+public interface FrameSink {
+    /**
+     * Méthode appelée pour chaque message brut reçu.
+     *
+     * @param timeStampNs horodatage du message, exprimé en nanosecondes.
+     * @param high        les 48 premiers bits du message (octets 0 à 5), dans les bits de poids faible.
+     * @param low         les 64 derniers bits du message (octets 6 à 13).
+     */
+    void accept(long timeStampNs, long high, long low);
+}
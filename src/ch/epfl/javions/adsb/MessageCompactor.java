@@ -0,0 +1,170 @@
+package ch.epfl.javions.adsb;
+
+import ch.epfl.javions.Preconditions;
+
+import java.util.Objects;
+
+/**
+ * Classe qui représente un étage de compactage des messages bruts, placé avant leur traitement : parmi les messages
+ * reçus entre deux vidages (p. ex. ceux d'un même lot retiré de la file des messages), seuls le dernier message
+ * d'identification et le dernier message de vitesse de chaque aéronef sont gardés, les précédents n'ayant aucun
+ * effet visible. Seul un message valide (que l'analyseur accepterait) en remplace un autre. Tous les messages de
+ * position sont gardés, car le décodage des positions a besoin des messages pairs et impairs, et les autres messages
+ * (inconnus ou invalides) le sont aussi.
+ * <p>
+ * Lorsque le traitement prend du retard, les lots retirés de la file s'allongent et contiennent davantage de
+ * messages remplacés : le travail économisé augmente donc avec le retard. Les messages gardés sont transmis dans
+ * l'ordre de leur réception, et le compactage n'alloue rien : les messages sont reçus et transmis sous la forme de
+ * leurs attributs (voir FrameSink), et les messages en attente et la table des derniers messages de chaque aéronef
+ * sont préalloués. L'étage ne doit être utilisé que depuis un seul fil.
+ *
+ * @author Brian Jean Claud El Banna (356437)
+ * @author Nicolas Khamis (355598)
+ */
+public final class MessageCompactor implements FrameSink {
+    private static final int IDENTIFICATION = 0; // Le genre d'un message d'identification
+    private static final int VELOCITY = 1; // Le genre d'un message de vitesse
+
+    private final FrameSink sink;
+    // Les attributs des messages en attente, et ceux qui ont été remplacés
+    private final long[] timeStampsNs;
+    private final long[] highs;
+    private final long[] lows;
+    private final boolean[] isReplaced;
+    private int messageCount;
+
+    /* La table de hachage (sondage linéaire) qui associe à chaque clef (l'adresse OACI et le genre du message, plus
+    un pour que 0 marque les cases vides) l'index du dernier message de ce genre de l'aéronef */
+    private final int[] keys;
+    private final int[] indexes;
+    private final int[] usedSlots; // Les cases utilisées de la table, qu'il suffit de vider
+    private int usedSlotCount;
+    private final int mask;
+
+    private long keptCount;
+    private long coalescedCount;
+
+    /**
+     * Constructeur de MessageCompactor qui retourne un étage de compactage transmettant les messages gardés
+     * au consommateur donné.
+     *
+     * @param capacity le nombre maximal de messages en attente : l'étage se vide lorsqu'il est atteint.
+     * @param sink     le consommateur des messages gardés.
+     * @throws IllegalArgumentException si la capacité n'est pas strictement positive.
+     * @throws NullPointerException     si le consommateur est null.
+     */
+    public MessageCompactor(int capacity, FrameSink sink) {
+        boolean capacityIsValid = capacity > 0;
+        Preconditions.checkArgument(capacityIsValid);
+        this.sink = Objects.requireNonNull(sink);
+        this.timeStampsNs = new long[capacity];
+        this.highs = new long[capacity];
+        this.lows = new long[capacity];
+        this.isReplaced = new boolean[capacity];
+        int tableSize = Integer.highestOneBit(capacity) << 2; // Un taux de remplissage d'au plus 1/2
+        this.keys = new int[tableSize];
+        this.indexes = new int[tableSize];
+        this.usedSlots = new int[capacity];
+        this.mask = tableSize - 1;
+    }
+
+    /**
+     * Ajoute le message d'attributs donnés aux messages en attente, en remplaçant le précédent message de même genre
+     * du même aéronef s'il s'agit d'un message d'identification ou de vitesse valide. Vide l'étage si sa capacité
+     * est atteinte.
+     *
+     * @param timeStampNs horodatage du message, exprimé en nanosecondes.
+     * @param high        les 48 premiers bits du message.
+     * @param low         les 64 derniers bits du message.
+     */
+    @Override
+    public void accept(long timeStampNs, long high, long low) {
+        if (messageCount == timeStampsNs.length) {
+            flush();
+        }
+
+        long payload = RawMessage.payload(high, low);
+        int typeCode = RawMessage.typeCode(payload);
+        int kind = (MessageParser.isIdentification(typeCode) && MessageParser.isValidIdentification(payload))
+                ? IDENTIFICATION
+                : (MessageParser.isAirborneVelocity(typeCode) && MessageParser.isValidAirborneVelocity(payload))
+                ? VELOCITY
+                : -1;
+        if (kind >= 0) {
+            int key = ((RawMessage.icaoAddress(high) << 1) | kind) + 1;
+            int slot = slotOf(key);
+            if (keys[slot] == key) {
+                isReplaced[indexes[slot]] = true; // Le message précédent est remplacé
+                coalescedCount += 1;
+            } else {
+                keys[slot] = key;
+                usedSlots[usedSlotCount++] = slot;
+            }
+            indexes[slot] = messageCount;
+        }
+        timeStampsNs[messageCount] = timeStampNs;
+        highs[messageCount] = high;
+        lows[messageCount] = low;
+        messageCount += 1;
+    }
+
+    /**
+     * Transmet au consommateur, dans l'ordre de leur réception, les messages en attente qui n'ont pas été remplacés,
+     * puis vide l'étage.
+     */
+    public void flush() {
+        for (int i = 0; i < messageCount; i++) {
+            if (isReplaced[i]) {
+                isReplaced[i] = false;
+            } else {
+                keptCount += 1;
+                sink.accept(timeStampsNs[i], highs[i], lows[i]);
+            }
+        }
+        messageCount = 0;
+
+        for (int i = 0; i < usedSlotCount; i++) {
+            keys[usedSlots[i]] = 0;
+        }
+        usedSlotCount = 0;
+    }
+
+    /**
+     * Retourne le nombre de messages transmis au consommateur.
+     *
+     * @return le nombre de messages gardés.
+     */
+    public long keptCount() {
+        return keptCount;
+    }
+
+    /**
+     * Retourne le nombre de messages remplacés par un message plus récent, et donc jamais traités.
+     *
+     * @return le nombre de messages remplacés.
+     */
+    public long coalescedCount() {
+        return coalescedCount;
+    }
+
+    /**
+     * Retourne la proportion des messages (transmis ou remplacés) qui ont été remplacés.
+     *
+     * @return la proportion des messages remplacés, entre 0 et 1 (0 si aucun message n'a été transmis).
+     */
+    public double coalescedRatio() {
+        long total = keptCount + coalescedCount;
+        return total == 0 ? 0 : (double) coalescedCount / total;
+    }
+
+    /**
+     * Retourne l'index de la case qui contient la clef donnée, ou de la case vide où elle doit être placée.
+     */
+    private int slotOf(int key) {
+        int slot = (key * 0x9E3779B1) >>> 8 & mask;
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+}
@@ -1,7 +1,12 @@
 package ch.epfl.javions.adsb;
 
+import ch.epfl.javions.aircraft.IcaoAddress;
+
 /**
  * Classe qui transforme les messages ADS-B bruts en messages d'identification, de position en vol, ou de vitesse en vol.
+ * <p>
+ * Elle offre deux interfaces : l'une retourne un nouvel enregistrement par message, l'autre transmet les attributs
+ * du message analysé à un visiteur, sans rien allouer (les adresses OACI et les indicatifs étant uniques).
  *
  * @author Brian Jean Claud El Banna (356437)
  * @author Nicolas Khamis (355598)
@@ -23,21 +28,103 @@ public final class MessageParser {
      */
     public static Message parse(RawMessage rawMessage) {
         int typeCode = rawMessage.typeCode();
-        // Codes de type pour un message d'identification
-        boolean typeCodeIndentification = typeCode >= 1 && typeCode <= 4;
-        // Codes de type pour un message de position
-        boolean typeCodePosition = (typeCode >= 9 && typeCode <= 18) || (typeCode >= 20 && typeCode <= 22);
-        // Codes de type pour un message de vitesse
-        boolean typeCodeVelocity = typeCode == 19;
-
-        if (typeCodeIndentification) {
+
+        if (isIdentification(typeCode)) {
             return AircraftIdentificationMessage.of(rawMessage);
-        } else if (typeCodePosition) {
+        } else if (isAirbornePosition(typeCode)) {
             return AirbornePositionMessage.of(rawMessage);
-        } else if (typeCodeVelocity) {
+        } else if (isAirborneVelocity(typeCode)) {
             return AirborneVelocityMessage.of(rawMessage);
         } else {
             return null;
         }
     }
+
+    /**
+     * Analyse le message ADS-B brut donné et transmet ses attributs à la méthode du visiteur qui correspond à son type.
+     *
+     * @param rawMessage le message brut donné.
+     * @param visitor    le visiteur auquel sont transmis les attributs du message.
+     * @return vrai si et seulement si le message a été transmis au visiteur, c.-à-d. si son code de type correspond
+     * à l'un des trois types de messages et s'il est valide.
+     */
+    public static boolean parse(RawMessage rawMessage, MessageVisitor visitor) {
+        return parse(rawMessage.timeStampNs(), rawMessage.high(), rawMessage.low(), visitor);
+    }
+
+    /**
+     * Analyse le message ADS-B brut dont l'horodatage et les bits sont donnés, et transmet ses attributs à la méthode
+     * du visiteur qui correspond à son type. Aucun objet n'est alloué, ni message brut, ni message analysé.
+     *
+     * @param timeStampNs horodatage du message, exprimé en nanosecondes.
+     * @param high        les 48 premiers bits du message (octets 0 à 5), dans les bits de poids faible.
+     * @param low         les 64 derniers bits du message (octets 6 à 13).
+     * @param visitor     le visiteur auquel sont transmis les attributs du message.
+     * @return vrai si et seulement si le message a été transmis au visiteur, c.-à-d. si son code de type correspond
+     * à l'un des trois types de messages et s'il est valide.
+     */
+    public static boolean parse(long timeStampNs, long high, long low, MessageVisitor visitor) {
+        long payload = RawMessage.payload(high, low);
+        int typeCode = RawMessage.typeCode(payload);
+
+        if (isIdentification(typeCode)) {
+            CallSign callSign = AircraftIdentificationMessage.callSign(payload);
+            if (callSign == null) {
+                return false;
+            }
+            visitor.visitIdentification(timeStampNs, icaoAddress(high),
+                    AircraftIdentificationMessage.category(payload), callSign);
+        } else if (isAirbornePosition(typeCode)) {
+            double altitude = AirbornePositionMessage.altitude(payload);
+            if (Double.isNaN(altitude)) {
+                return false;
+            }
+            visitor.visitAirbornePosition(timeStampNs, icaoAddress(high), altitude,
+                    AirbornePositionMessage.parity(payload),
+                    AirbornePositionMessage.x(payload),
+                    AirbornePositionMessage.y(payload));
+        } else if (isAirborneVelocity(typeCode)) {
+            double speed = AirborneVelocityMessage.speed(payload);
+            double trackOrHeading = AirborneVelocityMessage.trackOrHeading(payload);
+            if (Double.isNaN(speed) || Double.isNaN(trackOrHeading)) {
+                return false;
+            }
+            visitor.visitAirborneVelocity(timeStampNs, icaoAddress(high), speed, trackOrHeading);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private static IcaoAddress icaoAddress(long high) {
+        return IcaoAddress.of(RawMessage.icaoAddress(high));
+    }
+
+    // Codes de type pour un message d'identification (aussi utilisés par MessageCompactor)
+    static boolean isIdentification(int typeCode) {
+        return typeCode >= 1 && typeCode <= 4;
+    }
+
+    // Codes de type pour un message de position (aussi utilisés par RawMessageMerger)
+    static boolean isAirbornePosition(int typeCode) {
+        return (typeCode >= 9 && typeCode <= 18) || (typeCode >= 20 && typeCode <= 22);
+    }
+
+    // Codes de type pour un message de vitesse (aussi utilisés par MessageCompactor)
+    static boolean isAirborneVelocity(int typeCode) {
+        return typeCode == 19;
+    }
+
+    /* Vrai si et seulement si le message d'identification de charge utile donnée est valide, c.-à-d. s'il serait
+    transmis au visiteur (aussi utilisé par MessageCompactor) */
+    static boolean isValidIdentification(long payload) {
+        return AircraftIdentificationMessage.callSign(payload) != null;
+    }
+
+    /* Vrai si et seulement si le message de vitesse de charge utile donnée est valide, c.-à-d. s'il serait
+    transmis au visiteur (aussi utilisé par MessageCompactor) */
+    static boolean isValidAirborneVelocity(long payload) {
+        return !Double.isNaN(AirborneVelocityMessage.speed(payload))
+                && !Double.isNaN(AirborneVelocityMessage.trackOrHeading(payload));
+    }
 }
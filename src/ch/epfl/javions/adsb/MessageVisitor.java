@@ -0,0 +1,45 @@
+package ch.epfl.javions.adsb;
+
+import ch.epfl.javions.aircraft.IcaoAddress;
+
+/**
+ * Interface qui a pour but d'être implémentée par toutes les classes qui reçoivent les attributs des messages
+ * analysés par MessageParser.parse(long, long, long, MessageVisitor), sans qu'aucun message ne soit alloué.
+ *
+ * @author Brian Jean Claud El Banna (356437)
+ * @author Nicolas Khamis (355598)
+ */
+public interface MessageVisitor {
+    /**
+     * Méthode appelée pour chaque message d'identification et de catégorie.
+     *
+     * @param timeStampNs horodatage du message, exprimé en nanosecondes.
+     * @param icaoAddress l'adresse OACI de l'expéditeur du message.
+     * @param category    la catégorie d'aéronef de l'expéditeur.
+     * @param callSign    l'indicatif de l'expéditeur.
+     */
+    void visitIdentification(long timeStampNs, IcaoAddress icaoAddress, int category, CallSign callSign);
+
+    /**
+     * Méthode appelée pour chaque message de positionnement en vol.
+     *
+     * @param timeStampNs horodatage du message, exprimé en nanosecondes.
+     * @param icaoAddress l'adresse OACI de l'expéditeur du message.
+     * @param altitude    l'altitude de l'aéronef, en mètres.
+     * @param parity      la parité du message (0 s'il est pair, 1 s'il est impair).
+     * @param x           la longitude locale et normalisée de l'aéronef.
+     * @param y           la latitude locale et normalisée de l'aéronef.
+     */
+    void visitAirbornePosition(long timeStampNs, IcaoAddress icaoAddress, double altitude, int parity,
+                               double x, double y);
+
+    /**
+     * Méthode appelée pour chaque message de vitesse en vol.
+     *
+     * @param timeStampNs    horodatage du message, exprimé en nanosecondes.
+     * @param icaoAddress    l'adresse OACI de l'expéditeur du message.
+     * @param speed          vitesse de l'aéronef, en m/s.
+     * @param trackOrHeading direction de déplacement de l'aéronef, en radians.
+     */
+    void visitAirborneVelocity(long timeStampNs, IcaoAddress icaoAddress, double speed, double trackOrHeading);
+}
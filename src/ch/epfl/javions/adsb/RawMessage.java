@@ -6,31 +6,41 @@ import ch.epfl.javions.Crc24;
 import ch.epfl.javions.Preconditions;
 import ch.epfl.javions.aircraft.IcaoAddress;
 
-import java.util.HexFormat;
-
 /**
  * Classe qui représente un message ADS-B «brut», c.-à-d. dont l'attribut ME n'a pas encore été analysé.
+ * <p>
+ * Les 112 bits du message sont stockés dans deux entiers de type long, ce qui évite d'allouer un tableau d'octets
+ * par message : les attributs du message en sont extraits par de simples décalages et masques.
  *
  * @param timeStampNs horodatage du message, exprimé en nanosecondes depuis une origine donnée généralement l'instant
  *                    correspondant au tout premier échantillon de puissance calculé.
- * @param bytes       les octets du message.
+ * @param high        les 48 premiers bits du message (octets 0 à 5), dans les bits de poids faible.
+ * @param low         les 64 derniers bits du message (octets 6 à 13).
  * @author Brian Jean Claud El Banna (356437)
  * @author Nicolas Khamis (355598)
  */
 
-public record RawMessage(long timeStampNs, ByteString bytes) {
+public record RawMessage(long timeStampNs, long high, long low) {
     public final static int LENGTH = 14; // Longueur en octets des messages ADS-B
     private final static int CA_SIZE = 3;
     private final static int DF_SIZE = 5;
     private final static int DF = 17;
+    private final static int HIGH_BYTES = 6; // Le nombre d'octets du message placés dans high (octets 0 à 5)
+    private final static int HIGH_BITS = HIGH_BYTES * Byte.SIZE;
+    private final static int ICAO_START = 16; // Index du premier bit de l'adresse OACI dans high
+    private final static int ICAO_SIZE = 24;
+    private final static int PAYLOAD_BITS_IN_HIGH = 16; // L'attribut ME commence par les 2 derniers octets de high
+    private final static int PAYLOAD_BITS_IN_LOW = 40; // puis continue avec les 5 premiers octets de low
+    private final static int TYPE_CODE_START = 51;
 
     /**
      * Constructeur compact de RawMessage.
      *
      * @param timeStampNs horodatage du message, exprimé en nanosecondes depuis une origine donnée.
-     * @param bytes       les octets du message.
+     * @param high        les 48 premiers bits du message (octets 0 à 5), dans les bits de poids faible.
+     * @param low         les 64 derniers bits du message (octets 6 à 13).
      * @throws IllegalArgumentException si l'horodatage est (strictement) négatif.
-     * @throws IllegalArgumentException si la chaîne d'octets ne contient pas LENGTH octets.
+     * @throws IllegalArgumentException si high contient plus de 48 bits.
      */
     public RawMessage {
     /*
@@ -39,11 +49,35 @@ public record RawMessage(long timeStampNs, ByteString bytes) {
     --------------------------------------------------------------------------------------------------------------------
     */
         boolean timeStampsIsPositive = timeStampNs >= 0;
-        boolean byteSizeIs14 = bytes.size() == LENGTH;
+        boolean highFitsIn48Bits = (high >>> HIGH_BITS) == 0;
         Preconditions.checkArgument(timeStampsIsPositive);
-        Preconditions.checkArgument(byteSizeIs14);
+        Preconditions.checkArgument(highFitsIn48Bits);
     }
 
+    /**
+     * Constructeur de RawMessage à partir des octets du message.
+     *
+     * @param timeStampNs horodatage du message, exprimé en nanosecondes depuis une origine donnée.
+     * @param bytes       les octets du message.
+     * @throws IllegalArgumentException si l'horodatage est (strictement) négatif.
+     * @throws IllegalArgumentException si la chaîne d'octets ne contient pas LENGTH octets.
+     */
+    public RawMessage(long timeStampNs, ByteString bytes) {
+        this(timeStampNs, high(bytes), low(bytes));
+    }
+
+    /**
+     * Constructeur de RawMessage à partir des octets du message, qui sont lus directement dans le tableau donné,
+     * sans le copier. Le CRC24 n'est pas vérifié.
+     *
+     * @param timeStampNs horodatage du message, exprimé en nanosecondes depuis une origine donnée.
+     * @param bytes       les octets du message, que l'appelant peut réutiliser ensuite.
+     * @throws IllegalArgumentException si l'horodatage est (strictement) négatif.
+     * @throws IllegalArgumentException si le tableau ne contient pas LENGTH octets.
+     */
+    public RawMessage(long timeStampNs, byte[] bytes) {
+        this(timeStampNs, high(bytes), low(bytes));
+    }
 
     /**
      * @param timeStampNs horodatage du message, exprimé en nanosecondes depuis une origine donnée.
@@ -51,16 +85,29 @@ public record RawMessage(long timeStampNs, ByteString bytes) {
      * @return le message ADS-B brut avec l'horodatage et les octets donnés ou null si le CRC24 des octets ne vaut pas 0
      */
     public static RawMessage of(long timeStampNs, byte[] bytes) {
-        Crc24 crc24 = new Crc24(Crc24.GENERATOR);
-        int crc = crc24.crc(bytes); // crc des octets
+        int crc = Crc24.ADSB.crc(bytes); // crc des octets
         boolean crcIsZero = (crc == 0);
         if (crcIsZero) {
-            return new RawMessage(timeStampNs, new ByteString(bytes));
+            return new RawMessage(timeStampNs, bytes);
         } else {
             return null;
         }
     }
 
+    /**
+     * Retourne le message ADS-B brut formé des bits donnés, qui sont repris tels quels : aucun tableau n'est alloué
+     * ni copié, ce qui en fait la fabrique à utiliser par le démodulateur.
+     *
+     * @param timeStampNs horodatage du message, exprimé en nanosecondes depuis une origine donnée.
+     * @param high        les 48 premiers bits du message (octets 0 à 5), dans les bits de poids faible.
+     * @param low         les 64 derniers bits du message (octets 6 à 13).
+     * @return le message ADS-B brut avec l'horodatage et les bits donnés ou null si le CRC24 des bits ne vaut pas 0
+     */
+    public static RawMessage of(long timeStampNs, long high, long low) {
+        boolean crcIsZero = Crc24.ADSB.crc(high, low) == 0;
+        return crcIsZero ? new RawMessage(timeStampNs, high, low) : null;
+    }
+
     /**
      * Methode qui retourne la taille d'un message dont le premier octet est celui donné,
      * et qui vaut LENGTH si l'attribut DF contenu dans ce premier octet vaut 17, et 0 sinon—
@@ -92,8 +139,7 @@ public record RawMessage(long timeStampNs, ByteString bytes) {
      * @return l'attribut DF stocké dans son premier octet.
      */
     public int downLinkFormat() {
-        byte byte0 = (byte) bytes.byteAt(0);
-        return Bits.extractUInt(byte0, CA_SIZE, DF_SIZE); // downlinkFormat
+        return (int) (high >>> (HIGH_BITS - DF_SIZE)); // downlinkFormat
     }
 
     /**
@@ -102,16 +148,8 @@ public record RawMessage(long timeStampNs, ByteString bytes) {
      * @return l'adresse OACI de l'expéditeur du message.
      */
     public IcaoAddress icaoAddress() {
-    /* Cette méthode extrait les  octets d'indice 1 à 3 de bytes ,les convertit en une chaîne hexadécimale
-    (Long.toHexString()) et les stocke dans un objet StringBuilder. Ensuite, la méthode ajoute des zéros à  gauche
-    jusqu'à ce que la chaîne hexadécimale atteigne une longueur de 6 caractères (la longueur  de l'adresse ICAO) en
-    utilisant une boucle while et la méthode insert() de StringBuilder. */
-        StringBuilder icao = new StringBuilder(Long.toHexString(bytes.bytesInRange(1, 4)));
-        while (icao.length() < 6) {
-            icao.insert(0, "0");
-        }
-        // Conversion de la chaine en majuscule
-        return new IcaoAddress(icao.toString().toUpperCase());
+        // L'adresse unique de l'aéronef : aucune chaîne n'est construite
+        return IcaoAddress.of(icaoAddress(high));
     }
 
     /**
@@ -120,7 +158,7 @@ public record RawMessage(long timeStampNs, ByteString bytes) {
      * @return l'attribut ME du message.
      */
     public long payload() {
-        return bytes.bytesInRange(4, 11);
+        return payload(high, low);
     }
 
     /**
@@ -129,11 +167,101 @@ public record RawMessage(long timeStampNs, ByteString bytes) {
      * @return les cinq bits de poids le plus fort de l'attribut ME du message.
      */
     public int typeCode() {
-        long payload = bytes.bytesInRange(4, 11);
-        return Bits.extractUInt(payload, 51, DF_SIZE);
+        return typeCode(payload());
     }
-}
 
+    /**
+     * Retourne les octets du message. La chaîne est construite à chaque appel : les autres accesseurs sont
+     * donc à préférer dans le traitement des messages.
+     *
+     * @return les octets du message.
+     */
+    public ByteString bytes() {
+        byte[] bytes = new byte[LENGTH];
+        for (int i = 0; i < HIGH_BYTES; i++) {
+            bytes[i] = (byte) (high >>> ((HIGH_BYTES - 1 - i) * Byte.SIZE));
+        }
+        for (int i = 0; i < Long.BYTES; i++) {
+            bytes[HIGH_BYTES + i] = (byte) (low >>> ((Long.BYTES - 1 - i) * Byte.SIZE));
+        }
+        return new ByteString(bytes);
+    }
 
+    /**
+     * Redéfinition de toString qui retourne une représentation du message avec ses octets en hexadécimal.
+     *
+     * @return une représentation du message avec son horodatage et ses octets en hexadécimal.
+     */
+    @Override
+    public String toString() {
+        return "RawMessage[timeStampNs=" + timeStampNs + ", bytes=" + bytes() + "]";
+    }
+
+    /**
+     * Retourne les 24 bits de l'adresse OACI de l'expéditeur du message dont les 48 premiers bits sont donnés.
+     *
+     * @param high les 48 premiers bits du message (octets 0 à 5), dans les bits de poids faible.
+     * @return les 24 bits de l'adresse OACI de l'expéditeur du message.
+     */
+    static int icaoAddress(long high) {
+        return Bits.extractUInt(high, ICAO_START, ICAO_SIZE);
+    }
+
+    /**
+     * Retourne l'attribut ME du message dont les bits sont donnés.
+     *
+     * @param high les 48 premiers bits du message (octets 0 à 5), dans les bits de poids faible.
+     * @param low  les 64 derniers bits du message (octets 6 à 13).
+     * @return l'attribut ME du message.
+     */
+    static long payload(long high, long low) {
+        long payloadHigh = high & ((1L << PAYLOAD_BITS_IN_HIGH) - 1);
+        return (payloadHigh << PAYLOAD_BITS_IN_LOW) | (low >>> (Long.SIZE - PAYLOAD_BITS_IN_LOW));
+    }
+
+    /**
+     * Retourne les 48 premiers bits (octets 0 à 5) du tableau d'octets donné.
+     *
+     * @throws IllegalArgumentException si le tableau ne contient pas LENGTH octets.
+     */
+    private static long high(byte[] bytes) {
+        boolean byteSizeIs14 = bytes.length == LENGTH;
+        Preconditions.checkArgument(byteSizeIs14);
+        long high = 0;
+        for (int i = 0; i < HIGH_BYTES; i++) {
+            high = (high << Byte.SIZE) | Byte.toUnsignedLong(bytes[i]);
+        }
+        return high;
+    }
 
+    /**
+     * Retourne les 64 derniers bits (octets 6 à 13) du tableau d'octets donné.
+     */
+    private static long low(byte[] bytes) {
+        long low = 0;
+        for (int i = HIGH_BYTES; i < LENGTH; i++) {
+            low = (low << Byte.SIZE) | Byte.toUnsignedLong(bytes[i]);
+        }
+        return low;
+    }
+
+    /**
+     * Retourne les 48 premiers bits (octets 0 à 5) de la chaîne d'octets donnée.
+     *
+     * @throws IllegalArgumentException si la chaîne d'octets ne contient pas LENGTH octets.
+     */
+    private static long high(ByteString bytes) {
+        boolean byteSizeIs14 = bytes.size() == LENGTH;
+        Preconditions.checkArgument(byteSizeIs14);
+        return bytes.bytesInRange(0, HIGH_BYTES);
+    }
 
+    /**
+     * Retourne les 64 derniers bits (octets 6 à 13) de la chaîne d'octets donnée, en deux moitiés de 4 octets
+     * (bytesInRange ne pouvant extraire plus de 7 octets).
+     */
+    private static long low(ByteString bytes) {
+        int middle = HIGH_BYTES + Integer.BYTES;
+        return (bytes.bytesInRange(HIGH_BYTES, middle) << Integer.SIZE) | bytes.bytesInRange(middle, LENGTH);
+    }
+}
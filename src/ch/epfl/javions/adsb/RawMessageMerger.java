@@ -0,0 +1,464 @@
+package ch.epfl.javions.adsb;
+
+import ch.epfl.javions.Preconditions;
+import ch.epfl.javions.Units;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.OptionalLong;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * Classe qui fusionne les messages bruts de plusieurs récepteurs couvrant des espaces aériens qui se recouvrent
+ * en un seul flot, transmis à un consommateur (p. ex. la file des messages du gestionnaire d'états).
+ * <p>
+ * Chaque récepteur horodate ses messages avec sa propre horloge, dont l'origine est le début de son enregistrement :
+ * le fusionneur estime donc le décalage de chacune par rapport à celle d'un récepteur de référence. Avant la fusion,
+ * les décalages peuvent être fixés par calibrate, qui apparie les trames de position reçues par deux récepteurs
+ * pendant les premières minutes de leurs enregistrements (un horizon bien plus long que l'écart entre leurs débuts)
+ * et prend la médiane des écarts de leurs horodatages. Le décalage d'un récepteur qui n'a pu être fixé ainsi est
+ * supposé tel que son premier message soit contemporain du dernier message reçu. Tous les décalages sont ensuite
+ * affinés par une moyenne mobile exponentielle de l'écart entre les horodatages des messages de position reçus par
+ * deux récepteurs, ce qui suit la dérive des horloges.
+ * <p>
+ * Une même trame reçue par plusieurs récepteurs n'est transmise qu'une fois : les trames (112 bits) transmises sont
+ * gardées dans deux tables de hachage qui couvrent chacune une fenêtre d'une seconde, la plus ancienne étant vidée
+ * et réutilisée lorsque la plus récente est pleine ou a fait son temps. Une trame identique reçue par le même
+ * récepteur est une nouvelle émission de l'aéronef (p. ex. un message d'identification), et n'est pas supprimée.
+ * Entre deux récepteurs dont les décalages ont été fixés, une trame n'est un doublon que si ses horodatages
+ * corrigés diffèrent de moins de 10 ms, pour ne pas supprimer une nouvelle émission identique (p. ex. un message
+ * de vitesse répété) reçue par l'autre récepteur.
+ * <p>
+ * Les messages, dont les horodatages sont exprimés dans l'horloge de la référence, sont retenus pendant 100 ms
+ * avant d'être transmis, ce qui suffit à les remettre dans l'ordre. Les méthodes peuvent être appelées depuis
+ * plusieurs fils (un par récepteur), le consommateur étant toujours appelé par un seul fil à la fois.
+ *
+ * @author Brian Jean Claud El Banna (356437)
+ * @author Nicolas Khamis (355598)
+ */
+public final class RawMessageMerger {
+    // La durée pendant laquelle une trame reçue par un autre récepteur est considérée comme un doublon
+    private static final long DUPLICATE_WINDOW_NS = (long) Units.convertTo(1, Units.Time.NANOSECONDS);
+    // Cette durée, lorsque les décalages des horloges des deux récepteurs ont été fixés par calibrate
+    private static final long LOCKED_DUPLICATE_WINDOW_NS = (long) Units.convert(10,
+            Units.Time.MILLISECONDS,
+            Units.Time.NANOSECONDS);
+    // La durée pendant laquelle les messages sont retenus pour être remis dans l'ordre
+    private static final long REORDER_DELAY_NS = (long) Units.convert(100,
+            Units.Time.MILLISECONDS,
+            Units.Time.NANOSECONDS);
+    private static final double OFFSET_SMOOTHING = 1d / 16; // Le poids d'un nouvel écart dans la moyenne mobile
+    private static final int GENERATION_CAPACITY = 1 << 15; // La capacité d'une table de trames (2 fois sa limite)
+    private static final long AMBIGUOUS_FRAME = Long.MIN_VALUE; // L'horodatage d'une trame reçue plusieurs fois
+    public static final int MAX_SOURCE_COUNT = Integer.SIZE; // Les récepteurs d'une trame forment un masque de 32 bits
+
+    private final Consumer<RawMessage> messageSink;
+    private final int sourceCount;
+    private final double[] clockOffsetsNs; // Le décalage de l'horloge de chaque récepteur, en nanosecondes
+    private final boolean[] sourceIsStarted; // Vrai dès que le premier message du récepteur a été reçu
+    private final boolean[] offsetIsLocked; // Vrai si le décalage du récepteur a été fixé par calibrate
+    private final long[] messageCounts; // Le nombre de messages reçus de chaque récepteur
+    private final long[][] duplicateCounts; // [a][b] : le nombre de trames reçues par a, puis (en doublon) par b
+    private int referenceSource = -1;
+    private long lateMessageCount;
+
+    // Les trames transmises depuis moins d'une fenêtre (current), et pendant la fenêtre précédente (previous)
+    private FrameTable current = new FrameTable(GENERATION_CAPACITY);
+    private FrameTable previous = new FrameTable(GENERATION_CAPACITY);
+    private long generationStartNs = Long.MIN_VALUE;
+
+    // Les messages retenus, par ordre d'horodatage, le plus grand horodatage reçu, et le dernier transmis
+    private final PriorityQueue<RawMessage> pendingMessages =
+            new PriorityQueue<>(Comparator.comparingLong(RawMessage::timeStampNs));
+    private long newestTimeStampNs = Long.MIN_VALUE;
+    private long lastSentTimeStampNs = Long.MIN_VALUE;
+
+    /**
+     * Constructeur de RawMessageMerger qui retourne un fusionneur des messages du nombre de récepteurs donné,
+     * qui transmet les messages fusionnés au consommateur donné.
+     *
+     * @param sourceCount le nombre de récepteurs, identifiés par les entiers de 0 à sourceCount - 1.
+     * @param messageSink le consommateur des messages fusionnés.
+     * @throws IllegalArgumentException si le nombre de récepteurs n'est pas compris entre 1 et MAX_SOURCE_COUNT.
+     * @throws NullPointerException     si le consommateur est nul.
+     */
+    public RawMessageMerger(int sourceCount, Consumer<RawMessage> messageSink) {
+        boolean sourceCountIsValid = sourceCount > 0 && sourceCount <= MAX_SOURCE_COUNT;
+        Preconditions.checkArgument(sourceCountIsValid);
+        this.messageSink = Objects.requireNonNull(messageSink);
+        this.sourceCount = sourceCount;
+        clockOffsetsNs = new double[sourceCount];
+        sourceIsStarted = new boolean[sourceCount];
+        offsetIsLocked = new boolean[sourceCount];
+        messageCounts = new long[sourceCount];
+        duplicateCounts = new long[sourceCount][sourceCount];
+    }
+
+    /**
+     * Retourne le nombre de récepteurs.
+     *
+     * @return le nombre de récepteurs.
+     */
+    public int sourceCount() {
+        return sourceCount;
+    }
+
+    /**
+     * Ajoute au flot le message donné, reçu par le récepteur donné, à moins qu'il ne s'agisse d'un doublon.
+     *
+     * @param source  l'index du récepteur.
+     * @param message le message, horodaté avec l'horloge du récepteur.
+     * @throws IndexOutOfBoundsException si l'index du récepteur n'est pas valide.
+     */
+    public synchronized void offer(int source, RawMessage message) {
+        Objects.checkIndex(source, sourceCount);
+        messageCounts[source] += 1;
+        if (!sourceIsStarted[source]) {
+            startSource(source, message.timeStampNs());
+        }
+        long timeStampNs = message.timeStampNs() - Math.round(clockOffsetsNs[source]);
+        rotateGenerationsIfNeeded(timeStampNs);
+
+    /*
+    --------------------------------------------------------------------------------------------------------------------
+      -- Recherche de la trame parmi celles transmises récemment
+    --------------------------------------------------------------------------------------------------------------------
+    */
+        long high = message.high();
+        long low = message.low();
+        FrameTable table = current;
+        int index = table.indexOf(high, low);
+        if (!table.contains(index)) {
+            table = previous;
+            index = table.indexOf(high, low);
+        }
+
+        if (table.contains(index)) {
+            int receivers = table.receivers[index];
+            long firstTimeStampNs = table.timeStampsNs[index];
+            int firstSource = table.firstSources[index];
+            long windowNs = (offsetIsLocked[firstSource] && offsetIsLocked[source])
+                    ? LOCKED_DUPLICATE_WINDOW_NS
+                    : DUPLICATE_WINDOW_NS;
+            boolean isDuplicate = (receivers & (1 << source)) == 0
+                    && Math.abs(timeStampNs - firstTimeStampNs) <= windowNs;
+            if (isDuplicate) {
+                // Le doublon est compté pour chaque récepteur qui a déjà reçu la trame
+                for (int r = receivers; r != 0; r &= r - 1) {
+                    duplicateCounts[Integer.numberOfTrailingZeros(r)][source] += 1;
+                }
+                table.receivers[index] = receivers | (1 << source);
+                if (MessageParser.isAirbornePosition(RawMessage.typeCode(RawMessage.payload(high, low)))) {
+                    alignClocks(firstSource, source, timeStampNs - firstTimeStampNs);
+                }
+                return;
+            }
+        }
+        current.put(current.indexOf(high, low), high, low, timeStampNs, source);
+
+    /*
+    --------------------------------------------------------------------------------------------------------------------
+      -- Remise dans l'ordre et transmission des messages retenus depuis assez longtemps
+    --------------------------------------------------------------------------------------------------------------------
+    */
+        pendingMessages.add(timeStampNs == message.timeStampNs()
+                ? message
+                : new RawMessage(timeStampNs, high, low));
+        newestTimeStampNs = Math.max(newestTimeStampNs, timeStampNs);
+        while (!pendingMessages.isEmpty()
+                && pendingMessages.peek().timeStampNs() <= newestTimeStampNs - REORDER_DELAY_NS) {
+            send(pendingMessages.poll());
+        }
+    }
+
+    /**
+     * Fixe, avant la fusion, le décalage de l'horloge de chaque récepteur d'après ses premiers messages donnés
+     * (ceux de ses premières minutes d'enregistrement, p. ex.) : pour chaque paire de récepteurs, les trames de
+     * position reçues une seule fois par chacun sont appariées, et le décalage est la médiane des écarts de leurs
+     * horodatages. La référence est le premier récepteur qui a des messages, et le décalage d'un récepteur qui n'a
+     * aucune trame en commun avec elle est calculé, si possible, par l'intermédiaire d'un autre. Le décalage d'un
+     * récepteur qui n'a aucune trame en commun avec les autres n'est pas fixé. Doit être appelée avant le premier
+     * message.
+     *
+     * @param firstMessages les premiers messages de chaque récepteur, horodatés avec son horloge.
+     * @throws IllegalArgumentException si le nombre de listes n'est pas le nombre de récepteurs.
+     */
+    public synchronized void calibrate(List<List<RawMessage>> firstMessages) {
+        boolean sizeIsValid = firstMessages.size() == sourceCount;
+        Preconditions.checkArgument(sizeIsValid);
+
+        List<Map<Frame, Long>> positionFrames = new ArrayList<>(sourceCount);
+        for (List<RawMessage> messages : firstMessages) {
+            positionFrames.add(uniquePositionFrames(messages));
+        }
+        for (int source = 0; source < sourceCount; source++) {
+            if (!positionFrames.get(source).isEmpty()) {
+                referenceSource = source;
+                offsetIsLocked[source] = true;
+                break;
+            }
+        }
+
+        // Chaque passe fixe les décalages des récepteurs qui ont des trames en commun avec un récepteur déjà fixé
+        boolean offsetWasLocked = true;
+        while (offsetWasLocked) {
+            offsetWasLocked = false;
+            for (int source = 0; source < sourceCount; source++) {
+                for (int other = 0; other < sourceCount && !offsetIsLocked[source]; other++) {
+                    if (offsetIsLocked[other]) {
+                        OptionalLong differenceNs = medianDifferenceNs(positionFrames.get(other),
+                                positionFrames.get(source));
+                        if (differenceNs.isPresent()) {
+                            clockOffsetsNs[source] = clockOffsetsNs[other] + differenceNs.getAsLong();
+                            offsetIsLocked[source] = true;
+                            offsetWasLocked = true;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Retourne vrai si et seulement si le décalage de l'horloge du récepteur donné a été fixé par calibrate.
+     *
+     * @param source l'index du récepteur.
+     * @return vrai si et seulement si le décalage de l'horloge du récepteur a été fixé.
+     * @throws IndexOutOfBoundsException si l'index du récepteur n'est pas valide.
+     */
+    public synchronized boolean clockOffsetIsLocked(int source) {
+        return offsetIsLocked[Objects.checkIndex(source, sourceCount)];
+    }
+
+    /**
+     * Transmet tous les messages retenus, p. ex. lorsqu'un récepteur a terminé.
+     */
+    public synchronized void flush() {
+        while (!pendingMessages.isEmpty()) {
+            send(pendingMessages.poll());
+        }
+    }
+
+    /**
+     * Retourne le nombre de messages reçus du récepteur donné, doublons compris.
+     *
+     * @param source l'index du récepteur.
+     * @return le nombre de messages reçus du récepteur.
+     * @throws IndexOutOfBoundsException si l'index du récepteur n'est pas valide.
+     */
+    public synchronized long messageCount(int source) {
+        return messageCounts[Objects.checkIndex(source, sourceCount)];
+    }
+
+    /**
+     * Retourne le nombre de trames reçues à la fois par les deux récepteurs donnés (dans un ordre quelconque).
+     *
+     * @param source1 l'index du premier récepteur.
+     * @param source2 l'index du second récepteur.
+     * @return le nombre de doublons entre les deux récepteurs.
+     * @throws IndexOutOfBoundsException si l'un des index n'est pas valide.
+     */
+    public synchronized long duplicateCount(int source1, int source2) {
+        Objects.checkIndex(source1, sourceCount);
+        Objects.checkIndex(source2, sourceCount);
+        return duplicateCounts[source1][source2] + duplicateCounts[source2][source1];
+    }
+
+    /**
+     * Retourne la fraction des messages du récepteur le moins prolifique des deux donnés qui ont aussi été reçus
+     * par l'autre, c.-à-d. le taux de recouvrement des deux récepteurs.
+     *
+     * @param source1 l'index du premier récepteur.
+     * @param source2 l'index du second récepteur.
+     * @return le taux de doublons entre les deux récepteurs, entre 0 et 1 (0 si l'un n'a reçu aucun message).
+     * @throws IndexOutOfBoundsException si l'un des index n'est pas valide.
+     */
+    public synchronized double duplicateRatio(int source1, int source2) {
+        long messageCount = Math.min(messageCount(source1), messageCount(source2));
+        return messageCount == 0 ? 0 : (double) duplicateCount(source1, source2) / messageCount;
+    }
+
+    /**
+     * Retourne le décalage estimé de l'horloge du récepteur donné par rapport à celle de la référence.
+     *
+     * @param source l'index du récepteur.
+     * @return le décalage de l'horloge du récepteur, en nanosecondes (l'horodatage d'un message dans l'horloge de la
+     * référence étant son horodatage moins ce décalage).
+     * @throws IndexOutOfBoundsException si l'index du récepteur n'est pas valide.
+     */
+    public synchronized long clockOffsetNs(int source) {
+        return Math.round(clockOffsetsNs[Objects.checkIndex(source, sourceCount)]);
+    }
+
+    /**
+     * Retourne le nombre de messages transmis en retard, c.-à-d. après un message plus récent.
+     *
+     * @return le nombre de messages transmis en retard.
+     */
+    public synchronized long lateMessageCount() {
+        return lateMessageCount;
+    }
+
+    /**
+     * Initialise le décalage de l'horloge d'un récepteur lors de son premier message, s'il n'a pas été fixé : il est
+     * nul pour la référence, et place le message au même instant que le plus récent reçu pour les autres récepteurs.
+     */
+    private void startSource(int source, long timeStampNs) {
+        if (referenceSource < 0) {
+            referenceSource = source;
+        } else if (!offsetIsLocked[source]) {
+            clockOffsetsNs[source] = timeStampNs - newestTimeStampNs;
+        }
+        sourceIsStarted[source] = true;
+    }
+
+    /**
+     * Retourne l'horodatage de chacune des trames de position des messages donnés, à l'exception de celles qui y
+     * figurent plusieurs fois (p. ex. celles d'un aéronef immobile), dont l'appariement serait ambigu.
+     */
+    private static Map<Frame, Long> uniquePositionFrames(List<RawMessage> messages) {
+        Map<Frame, Long> timeStampsNs = new HashMap<>();
+        for (RawMessage message : messages) {
+            if (MessageParser.isAirbornePosition(message.typeCode())) {
+                // Une trame qui figure déjà dans la table est marquée comme ambiguë
+                timeStampsNs.merge(new Frame(message.high(), message.low()), message.timeStampNs(),
+                        (timeStampNs, ignored) -> AMBIGUOUS_FRAME);
+            }
+        }
+        timeStampsNs.values().removeIf(timeStampNs -> timeStampNs == AMBIGUOUS_FRAME);
+        return timeStampsNs;
+    }
+
+    /**
+     * Retourne la médiane des écarts entre les horodatages des trames communes des deux ensembles donnés (ceux du
+     * second moins ceux du premier), ou rien s'ils n'ont aucune trame en commun.
+     */
+    private static OptionalLong medianDifferenceNs(Map<Frame, Long> frames, Map<Frame, Long> otherFrames) {
+        long[] differencesNs = new long[Math.min(frames.size(), otherFrames.size())];
+        int count = 0;
+        for (Map.Entry<Frame, Long> entry : otherFrames.entrySet()) {
+            Long timeStampNs = frames.get(entry.getKey());
+            if (timeStampNs != null) {
+                differencesNs[count++] = entry.getValue() - timeStampNs;
+            }
+        }
+        if (count == 0) {
+            return OptionalLong.empty();
+        }
+        Arrays.sort(differencesNs, 0, count);
+        return OptionalLong.of(differencesNs[count / 2]);
+    }
+
+    /**
+     * Affine le décalage de l'horloge d'un des deux récepteurs donnés (le second, à moins qu'il ne s'agisse de la
+     * référence) d'après l'écart des horodatages d'une même trame.
+     *
+     * @param firstSource  le récepteur qui a reçu la trame en premier.
+     * @param source       le récepteur qui l'a reçue ensuite.
+     * @param differenceNs la différence entre les horodatages (corrigés) de la trame des deux récepteurs.
+     */
+    private void alignClocks(int firstSource, int source, long differenceNs) {
+        if (source != referenceSource) {
+            clockOffsetsNs[source] += OFFSET_SMOOTHING * differenceNs;
+        } else {
+            clockOffsetsNs[firstSource] -= OFFSET_SMOOTHING * differenceNs;
+        }
+    }
+
+    /**
+     * Remplace la table des trames de la fenêtre précédente par celle de la fenêtre courante lorsque celle-ci est
+     * pleine ou commence plus d'une fenêtre avant l'horodatage donné.
+     */
+    private void rotateGenerationsIfNeeded(long timeStampNs) {
+        boolean generationIsOver = generationStartNs == Long.MIN_VALUE
+                || timeStampNs - generationStartNs > DUPLICATE_WINDOW_NS;
+        if (generationIsOver || current.isFull()) {
+            FrameTable table = previous;
+            previous = current;
+            current = table;
+            current.clear();
+            generationStartNs = timeStampNs;
+        }
+    }
+
+    private void send(RawMessage message) {
+        if (message.timeStampNs() < lastSentTimeStampNs) {
+            lateMessageCount += 1;
+        } else {
+            lastSentTimeStampNs = message.timeStampNs();
+        }
+        messageSink.accept(message);
+    }
+
+    /**
+     * Trame de 112 bits, clef des tables de calibrate.
+     */
+    private record Frame(long high, long low) {
+    }
+
+    /**
+     * Table de hachage à adressage ouvert (sondage linéaire) des trames, avec l'horodatage de leur dernière
+     * transmission, le récepteur dont elle provient et l'ensemble des récepteurs qui l'ont reçue depuis.
+     */
+    private static final class FrameTable {
+        private final long[] highs;
+        private final long[] lows;
+        private final long[] timeStampsNs;
+        private final int[] firstSources;
+        private final int[] receivers; // Le masque des récepteurs, 0 marquant les cases vides
+        private final int mask;
+        private int count;
+
+        private FrameTable(int capacity) {
+            highs = new long[capacity];
+            lows = new long[capacity];
+            timeStampsNs = new long[capacity];
+            firstSources = new int[capacity];
+            receivers = new int[capacity];
+            mask = capacity - 1;
+        }
+
+        /**
+         * Retourne l'index de la case qui contient la trame donnée, ou de la case vide où elle doit être placée.
+         * Les 24 bits de poids faible d'une trame étant son CRC, ils sont uniformément répartis.
+         */
+        private int indexOf(long high, long low) {
+            int index = ((int) low * 0x9E3779B1) >>> 8 & mask;
+            while (receivers[index] != 0 && (highs[index] != high || lows[index] != low)) {
+                index = (index + 1) & mask;
+            }
+            return index;
+        }
+
+        private boolean contains(int index) {
+            return receivers[index] != 0;
+        }
+
+        private void put(int index, long high, long low, long timeStampNs, int source) {
+            if (receivers[index] == 0) {
+                count += 1;
+            }
+            highs[index] = high;
+            lows[index] = low;
+            timeStampsNs[index] = timeStampNs;
+            firstSources[index] = source;
+            receivers[index] = 1 << source;
+        }
+
+        // La table est pleine lorsqu'elle est à moitié remplie, pour que les sondages restent courts
+        private boolean isFull() {
+            return count >= (mask + 1) / 2;
+        }
+
+        private void clear() {
+            Arrays.fill(receivers, 0);
+            count = 0;
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package ch.epfl.javions.adsb;
+
+import ch.epfl.javions.Preconditions;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Classe qui représente une file bornée et préallouée de messages bruts, sans verrou, entre un unique producteur
+ * (p. ex. le fil du démodulateur) et un unique consommateur (le fil de traitement des messages).
+ * <p>
+ * Chaque case de la file contient les trois entiers de type long d'un message (son horodatage, puis ses bits high
+ * et low) : l'ajout d'un message n'alloue donc rien, et la mémoire occupée est constante. Les compteurs du
+ * producteur et du consommateur sont placés dans un même tableau, à des index éloignés de plus d'une ligne de
+ * cache, pour que la modification de l'un n'invalide pas la ligne de l'autre. Les messages retirés sont transmis
+ * au consommateur sous la forme de leurs attributs (voir FrameSink), sans qu'aucun message brut ne soit alloué.
+ * <p>
+ * Un fil qui se met en pause s'annonce (parkedProducer ou parkedConsumer) avant de revérifier la file, et l'autre
+ * fil publie ses modifications avant de lire cette annonce, les deux accès étant volatils : l'un des deux voit
+ * donc toujours l'autre, et aucun réveil ne peut être manqué.
+ * <p>
+ * Lorsque la file est pleine, la politique de débordement choisie décide du sort du message ajouté : le producteur
+ * attend qu'il y ait de la place, ou le plus ancien message de la file est abandonné, ou le message ajouté
+ * lui-même est abandonné. Les messages abandonnés sont comptés.
+ * <p>
+ * Plusieurs fils peuvent produire (p. ex. les fils de lecture des fichiers de plusieurs récepteurs) s'ils ne le
+ * font jamais en même temps, c.-à-d. s'ils sont synchronisés entre eux (par RawMessageMerger, p. ex.).
+ *
+ * @author Brian Jean Claud El Banna (356437)
+ * @author Nicolas Khamis (355598)
+ */
+public final class RawMessageRing {
+    /**
+     * Énumération des politiques de débordement de la file, c.-à-d. de ce que fait un ajout lorsqu'elle est pleine.
+     */
+    public enum OverflowPolicy {
+        BLOCK, // Le producteur attend qu'il y ait de la place
+        DROP_OLDEST, // Le plus ancien message de la file est abandonné
+        DROP_NEWEST // Le message ajouté est abandonné
+    }
+
+    private static final int SLOT_LONGS = 3; // Horodatage, high et low
+    private static final int MAX_DRAIN_BATCH = 256; // Le nombre maximal de messages copiés à la fois par drainTo
+    // Le nombre d'essais actifs (aucun sur un seul processeur, où l'autre fil ne peut pas avancer pendant qu'on
+    // boucle), puis le nombre total d'essais avant de se mettre en pause, les suivants cédant le processeur
+    private static final int SPIN_LIMIT = Runtime.getRuntime().availableProcessors() > 1 ? 1 << 10 : 0;
+    private static final int YIELD_LIMIT = SPIN_LIMIT + (1 << 6);
+
+    /* Les index des compteurs dans le tableau sequences : ceux du consommateur et ceux du producteur sont séparés
+    par 16 entiers (128 octets, c.-à-d. deux lignes de cache, que certains processeurs chargent par paires) */
+    private static final int PADDING = 16;
+    private static final int HEAD = PADDING; // Le nombre de messages retirés (ou abandonnés par DROP_OLDEST)
+    private static final int CACHED_TAIL = HEAD + 1; // La dernière valeur de TAIL lue par le consommateur
+    private static final int TAIL = 2 * PADDING; // Le nombre de messages ajoutés (par le producteur)
+    private static final int CACHED_HEAD = TAIL + 1; // La dernière valeur de HEAD lue par le producteur
+    private static final VarHandle SEQUENCES = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final OverflowPolicy policy;
+    private final long[] slots;
+    private final int capacity;
+    private final int mask;
+    private final long[] sequences = new long[3 * PADDING];
+    private final long[] drainedSlots; // Les cases copiées par drainTo, propres au consommateur
+    private final AtomicLong droppedOldestCount = new AtomicLong();
+    private final AtomicLong droppedNewestCount = new AtomicLong();
+    private volatile Thread parkedProducer;
+    private volatile Thread parkedConsumer;
+
+    /**
+     * Constructeur de RawMessageRing qui retourne une file vide de capacité et de politique de débordement données.
+     *
+     * @param capacity la capacité de la file, en messages : une puissance de 2.
+     * @param policy   la politique de débordement de la file.
+     * @throws IllegalArgumentException si la capacité n'est pas une puissance de 2 strictement positive.
+     * @throws NullPointerException     si la politique est null.
+     */
+    public RawMessageRing(int capacity, OverflowPolicy policy) {
+        boolean capacityIsAPowerOf2 = capacity > 0 && Integer.bitCount(capacity) == 1;
+        Preconditions.checkArgument(capacityIsAPowerOf2);
+        this.policy = Objects.requireNonNull(policy);
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.slots = new long[capacity * SLOT_LONGS];
+        this.drainedSlots = new long[Math.min(capacity, MAX_DRAIN_BATCH) * SLOT_LONGS];
+    }
+
+    /**
+     * Retourne la capacité de la file.
+     *
+     * @return le nombre maximal de messages dans la file.
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Retourne le nombre de messages actuellement dans la file (une estimation, si les fils la modifient).
+     *
+     * @return le nombre de messages actuellement dans la file.
+     */
+    public int size() {
+        long head = (long) SEQUENCES.getAcquire(sequences, HEAD);
+        long tail = (long) SEQUENCES.getAcquire(sequences, TAIL);
+        return (int) Math.max(0, Math.min(capacity, tail - head));
+    }
+
+    /**
+     * Retourne le nombre de messages abandonnés parce qu'ils étaient les plus anciens d'une file pleine
+     * (politique DROP_OLDEST).
+     *
+     * @return le nombre de messages abandonnés par la file.
+     */
+    public long droppedOldestCount() {
+        return droppedOldestCount.get();
+    }
+
+    /**
+     * Retourne le nombre de messages qui n'ont pas été ajoutés à la file parce qu'elle était pleine (politique
+     * DROP_NEWEST), ou parce que le producteur a été interrompu pendant son attente (politique BLOCK).
+     *
+     * @return le nombre de messages refusés par la file.
+     */
+    public long droppedNewestCount() {
+        return droppedNewestCount.get();
+    }
+
+    /**
+     * Ajoute le message donné à la file (à n'appeler que depuis le producteur).
+     *
+     * @param message le message à ajouter.
+     * @return vrai si et seulement si le message a été ajouté.
+     */
+    public boolean offer(RawMessage message) {
+        return offer(message.timeStampNs(), message.high(), message.low());
+    }
+
+    /**
+     * Ajoute le message d'attributs donnés à la file (à n'appeler que depuis le producteur). Si la file est pleine,
+     * la politique de débordement s'applique. Si le producteur est interrompu pendant son attente (politique BLOCK),
+     * le message est abandonné et le fil reste interrompu.
+     *
+     * @param timeStampNs l'horodatage du message.
+     * @param high        les 48 premiers bits du message.
+     * @param low         les 64 derniers bits du message.
+     * @return vrai si et seulement si le message a été ajouté.
+     */
+    public boolean offer(long timeStampNs, long high, long low) {
+        long tail = sequences[TAIL];
+        for (int spins = 0; tail - sequences[CACHED_HEAD] >= capacity; spins++) {
+            long head = (long) SEQUENCES.getAcquire(sequences, HEAD);
+            sequences[CACHED_HEAD] = head;
+            if (tail - head < capacity) {
+                break;
+            }
+
+            switch (policy) {
+                case DROP_NEWEST -> {
+                    droppedNewestCount.incrementAndGet();
+                    return false;
+                }
+                // Le plus ancien message est retiré à la place du consommateur (qui s'en aperçoit lors de son retrait)
+                case DROP_OLDEST -> {
+                    if (SEQUENCES.compareAndSet(sequences, HEAD, head, head + 1)) {
+                        sequences[CACHED_HEAD] = head + 1;
+                        droppedOldestCount.incrementAndGet();
+                    }
+                }
+                case BLOCK -> {
+                    if (!awaitSpace(spins)) {
+                        droppedNewestCount.incrementAndGet();
+                        return false;
+                    }
+                }
+            }
+        }
+
+        int slot = (int) (tail & mask) * SLOT_LONGS;
+        slots[slot] = timeStampNs;
+        slots[slot + 1] = high;
+        slots[slot + 2] = low;
+        // Publie le message au consommateur, avant de lire son annonce (l'accès volatil ordonne les deux)
+        SEQUENCES.setVolatile(sequences, TAIL, tail + 1);
+
+        Thread consumer = parkedConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+        return true;
+    }
+
+    /**
+     * Retire de la file au plus le nombre donné de messages, sans attendre, et transmet leurs attributs dans l'ordre
+     * au consommateur donné (à n'appeler que depuis le consommateur).
+     *
+     * @param sink     le consommateur des messages retirés.
+     * @param maxCount le nombre maximal de messages retirés.
+     * @return le nombre de messages retirés.
+     */
+    public int drainTo(FrameSink sink, int maxCount) {
+        int drainedCount = 0;
+        while (drainedCount < maxCount) {
+            int batchSize = drainBatch(maxCount - drainedCount);
+            if (batchSize == 0) {
+                break;
+            }
+            for (int i = 0; i < batchSize * SLOT_LONGS; i += SLOT_LONGS) {
+                sink.accept(drainedSlots[i], drainedSlots[i + 1], drainedSlots[i + 2]);
+            }
+            drainedCount += batchSize;
+        }
+        return drainedCount;
+    }
+
+    /**
+     * Retire de la file au plus le nombre donné de messages et transmet leurs attributs dans l'ordre au consommateur
+     * donné (à n'appeler que depuis le consommateur), en attendant au plus la durée donnée qu'il y en ait un.
+     *
+     * @param sink      le consommateur des messages retirés.
+     * @param maxCount  le nombre maximal de messages retirés.
+     * @param timeoutNs la durée maximale de l'attente, en nanosecondes.
+     * @return le nombre de messages retirés (0 si la durée est écoulée).
+     * @throws InterruptedException si le fil est interrompu pendant l'attente.
+     */
+    public int drainTo(FrameSink sink, int maxCount, long timeoutNs) throws InterruptedException {
+        long startTime = System.nanoTime();
+        int drainedCount;
+        try {
+            for (int spins = 0; (drainedCount = drainTo(sink, maxCount)) == 0; spins++) {
+                long remainingNs = timeoutNs - (System.nanoTime() - startTime);
+                if (remainingNs <= 0) {
+                    break;
+                }
+                if (!backOff(spins)) {
+                    // On s'annonce avant de réessayer, pour que le producteur ne puisse pas manquer le réveil
+                    parkedConsumer = Thread.currentThread();
+                    if ((drainedCount = drainTo(sink, maxCount)) != 0) {
+                        break;
+                    }
+                    LockSupport.parkNanos(this, remainingNs);
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                }
+            }
+        } finally {
+            parkedConsumer = null;
+        }
+        return drainedCount;
+    }
+
+    /**
+     * Copie dans drainedSlots au plus le nombre donné de messages en tête de la file, puis les retire.
+     *
+     * @return le nombre de messages copiés.
+     */
+    private int drainBatch(int maxCount) {
+        while (true) {
+            long head = (long) SEQUENCES.getAcquire(sequences, HEAD);
+            long tail = sequences[CACHED_TAIL];
+            if (tail - head <= 0) {
+                // Lecture volatile : elle suit l'éventuelle annonce du consommateur (voir drainTo)
+                tail = (long) SEQUENCES.getVolatile(sequences, TAIL);
+                sequences[CACHED_TAIL] = tail;
+                if (tail - head <= 0) {
+                    return 0;
+                }
+            }
+
+            int batchSize = (int) Math.min(tail - head, Math.min(maxCount, drainedSlots.length / SLOT_LONGS));
+            for (int i = 0; i < batchSize; i++) {
+                System.arraycopy(slots, (int) ((head + i) & mask) * SLOT_LONGS,
+                        drainedSlots, i * SLOT_LONGS, SLOT_LONGS);
+            }
+
+            /* Avec DROP_OLDEST, le producteur a pu abandonner (puis écraser) l'un des messages copiés : la copie
+            n'est valide que si la tête n'a pas bougé entre temps */
+            if (policy == OverflowPolicy.DROP_OLDEST) {
+                if (!SEQUENCES.compareAndSet(sequences, HEAD, head, head + batchSize)) {
+                    continue;
+                }
+            } else {
+                // Rend les cases au producteur, avant de lire son annonce (l'accès volatil ordonne les deux)
+                SEQUENCES.setVolatile(sequences, HEAD, head + batchSize);
+            }
+
+            Thread producer = parkedProducer;
+            if (producer != null) {
+                LockSupport.unpark(producer);
+            }
+            return batchSize;
+        }
+    }
+
+    /**
+     * Attend (activement, puis en se mettant en pause) que le consommateur retire un message.
+     *
+     * @return faux si et seulement si le producteur a été interrompu.
+     */
+    private boolean awaitSpace(int spins) {
+        if (backOff(spins)) {
+            return true;
+        }
+        // On s'annonce avant de revérifier, pour que le consommateur ne puisse pas manquer le réveil
+        parkedProducer = Thread.currentThread();
+        if (sequences[TAIL] - (long) SEQUENCES.getVolatile(sequences, HEAD) >= capacity) {
+            LockSupport.park(this);
+        }
+        parkedProducer = null;
+        if (Thread.interrupted()) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Attend un peu avant l'essai suivant, en bouclant activement puis en cédant le processeur.
+     *
+     * @param spins le nombre d'essais déjà faits.
+     * @return faux si et seulement si le fil doit plutôt se mettre en pause.
+     */
+    private static boolean backOff(int spins) {
+        if (spins < SPIN_LIMIT) {
+            Thread.onSpinWait();
+        } else if (spins < YIELD_LIMIT) {
+            Thread.yield();
+        } else {
+            return false;
+        }
+        return true;
+    }
+}
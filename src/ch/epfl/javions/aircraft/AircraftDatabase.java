@@ -1,37 +1,243 @@
 package ch.epfl.javions.aircraft;
 
+import ch.epfl.javions.Preconditions;
+
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
 /**
  * Classe qui représente la base de données mictronics des aéronefs.
+ * <p>
+ * Le fichier est soit l'archive aircraft.zip, soit la version compilée de celle-ci par AircraftDatabaseCompiler
+ * (reconnue à son nombre magique), projetée en mémoire et dans laquelle une recherche est dichotomique. Chaque
+ * recherche dans l'archive l'ouvre et parcourt l'un de ses fichiers CSV : les résultats, y compris l'absence d'un
+ * aéronef, sont donc gardés dans un cache borné, qui oublie les adresses utilisées le moins récemment.
+ * <p>
+ * Les recherches peuvent être faites en arrière-plan (getAsync), pour ne jamais bloquer le fil qui les demande.
+ * Les 256 fichiers CSV de l'archive peuvent aussi être décompressés à l'avance, en parallèle (prewarm) : ils sont
+ * alors gardés en mémoire, et une recherche y est dichotomique. Les méthodes peuvent être appelées depuis plusieurs
+ * fils.
  *
  * @author Brian Jean Claud El Banna (356437)
  * @author Nicolas Khamis (355598)
  */
 public final class AircraftDatabase {
+    public static final int DEFAULT_CACHE_CAPACITY = 1 << 14; // Le nombre d'adresses gardées par défaut dans le cache
+    private static final int MEMBER_COUNT = 256; // Le nombre de fichiers CSV de l'archive, un par octet de poids faible
+    private static final int LOOKUP_THREAD_COUNT = 2; // Le nombre de fils qui font les recherches en arrière-plan
+
+    // Les fils (démons) qui font les recherches en arrière-plan, partagés par toutes les bases de données
+    private static final ExecutorService LOOKUP_EXECUTOR = Executors.newFixedThreadPool(LOOKUP_THREAD_COUNT, r -> {
+        Thread thread = new Thread(r, "javions-aircraft-database");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private final String fileName;
+    private final CompiledAircraftDatabase compiledDatabase; // La base de données compilée, ou null pour l'archive
+
+    // Les lignes, triées, des fichiers CSV décompressés à l'avance (null pour ceux qui ne l'ont pas été)
+    private final AtomicReferenceArray<String[]> members = new AtomicReferenceArray<>(MEMBER_COUNT);
+
+    // Le cache des résultats, dans l'ordre de leur dernière utilisation (Optional.empty() si l'aéronef est inconnu)
+    private final Map<IcaoAddress, Optional<AircraftData>> cache;
+    private long hitCount;
+    private long missCount;
 
     /**
      * Constructeur de la classe AircraftDatabase
      *
-     * @param fileName nom du fichier dont on va extraire les données.
+     * @param fileName nom du fichier dont on va extraire les données (l'archive, ou sa version compilée).
      * @throws NullPointerException if fileName is null.
+     * @throws UncheckedIOException si le fichier est une base de données compilée qui ne peut pas être lue.
      */
     public AircraftDatabase(String fileName) {
+        this(fileName, DEFAULT_CACHE_CAPACITY);
+    }
+
+    /**
+     * Constructeur de la classe AircraftDatabase, dont le cache garde les résultats du nombre d'adresses donné.
+     *
+     * @param fileName      nom du fichier dont on va extraire les données (l'archive, ou sa version compilée).
+     * @param cacheCapacity le nombre maximal d'adresses dont le résultat est gardé dans le cache.
+     * @throws NullPointerException     if fileName is null.
+     * @throws IllegalArgumentException si la capacité du cache n'est pas strictement positive.
+     * @throws UncheckedIOException     si le fichier est une base de données compilée qui ne peut pas être lue.
+     */
+    public AircraftDatabase(String fileName, int cacheCapacity) {
+        boolean cacheCapacityIsValid = cacheCapacity > 0;
+        Preconditions.checkArgument(cacheCapacityIsValid);
         this.fileName = Objects.requireNonNull(fileName);
+
+        Path path = Path.of(fileName);
+        try {
+            this.compiledDatabase = CompiledAircraftDatabase.isCompiled(path)
+                    ? new CompiledAircraftDatabase(path)
+                    : null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<IcaoAddress, Optional<AircraftData>> eldest) {
+                return size() > cacheCapacity;
+            }
+        };
     }
 
     /**
-     * Methode qui retourne les données de l'aéronef dont l'adresse OACI est celle donnée.
+     * Methode qui retourne les données de l'aéronef dont l'adresse OACI est celle donnée, en ne consultant le
+     * fichier que si l'adresse n'est pas dans le cache.
      *
      * @param address Addresse OACI de l'aéronef.
-     * @return les données de l'aéronef dont l'adresse OACI est celle données.
+     * @return les données de l'aéronef dont l'adresse OACI est celle données, ou null si elle est inconnue.
      * @throws IOException en cas d'erreur d'entrée/sortie.
      */
     public AircraftData get(IcaoAddress address) throws IOException {
+        // La base de données compilée n'a pas besoin du cache : ses données sont déjà partagées
+        if (compiledDatabase != null) {
+            return compiledDatabase.get(address);
+        }
+
+        synchronized (cache) {
+            Optional<AircraftData> cachedData = cache.get(address);
+            if (cachedData != null) {
+                hitCount += 1;
+                return cachedData.orElse(null);
+            }
+            missCount += 1;
+        }
+
+        // La recherche dans le fichier se fait hors du verrou, pour ne pas bloquer les recherches dans le cache
+        AircraftData aircraftData = read(address);
+        synchronized (cache) {
+            cache.put(address, Optional.ofNullable(aircraftData));
+        }
+        return aircraftData;
+    }
+
+    /**
+     * Methode qui cherche en arrière-plan les données de l'aéronef dont l'adresse OACI est celle donnée, au moyen
+     * des fils de recherche partagés.
+     *
+     * @param address Addresse OACI de l'aéronef.
+     * @return le futur des données de l'aéronef (null si elle est inconnue), déjà complété si l'adresse est dans
+     * le cache, et complété exceptionnellement (par une UncheckedIOException) en cas d'erreur d'entrée/sortie.
+     */
+    public CompletableFuture<AircraftData> getAsync(IcaoAddress address) {
+        return getAsync(address, LOOKUP_EXECUTOR);
+    }
+
+    /**
+     * Methode qui cherche en arrière-plan, au moyen de l'exécuteur donné, les données de l'aéronef dont l'adresse
+     * OACI est celle donnée.
+     *
+     * @param address  Addresse OACI de l'aéronef.
+     * @param executor l'exécuteur qui fait la recherche, si l'adresse n'est pas dans le cache.
+     * @return le futur des données de l'aéronef (null si elle est inconnue), déjà complété si l'adresse est dans
+     * le cache, et complété exceptionnellement (par une UncheckedIOException) en cas d'erreur d'entrée/sortie.
+     */
+    public CompletableFuture<AircraftData> getAsync(IcaoAddress address, Executor executor) {
+        Objects.requireNonNull(address);
+        if (compiledDatabase == null) {
+            synchronized (cache) {
+                Optional<AircraftData> cachedData = cache.get(address);
+                if (cachedData != null) {
+                    hitCount += 1;
+                    return CompletableFuture.completedFuture(cachedData.orElse(null));
+                }
+            }
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return get(address);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Methode qui décompresse à l'avance, en parallèle au moyen de l'exécuteur donné, les 256 fichiers CSV de
+     * l'archive, et les garde en mémoire. Pour une base de données compilée, elle charge le fichier en mémoire.
+     *
+     * @param executor l'exécuteur qui décompresse les fichiers.
+     * @return le futur complété lorsque tous les fichiers sont décompressés, et complété exceptionnellement
+     * (par une UncheckedIOException) en cas d'erreur d'entrée/sortie.
+     */
+    public CompletableFuture<Void> prewarm(Executor executor) {
+        if (compiledDatabase != null) {
+            return CompletableFuture.runAsync(compiledDatabase::load, executor);
+        }
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[MEMBER_COUNT];
+        for (int member = 0; member < MEMBER_COUNT; member++) {
+            int memberIndex = member;
+            futures[member] = CompletableFuture.runAsync(() -> {
+                try {
+                    members.set(memberIndex, readMember(memberIndex));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, executor);
+        }
+        return CompletableFuture.allOf(futures);
+    }
+
+    /**
+     * Retourne le nombre de recherches dont le résultat était dans le cache.
+     *
+     * @return le nombre de recherches résolues par le cache.
+     */
+    public long hitCount() {
+        synchronized (cache) {
+            return hitCount;
+        }
+    }
+
+    /**
+     * Retourne le nombre de recherches dont le résultat n'était pas dans le cache, et qui ont consulté le fichier.
+     *
+     * @return le nombre de recherches qui ont consulté le fichier.
+     */
+    public long missCount() {
+        synchronized (cache) {
+            return missCount;
+        }
+    }
+
+    /**
+     * Cherche dans le fichier les données de l'aéronef dont l'adresse OACI est celle donnée.
+     *
+     * @param address Addresse OACI de l'aéronef.
+     * @return les données de l'aéronef, ou null si elle est inconnue.
+     * @throws IOException en cas d'erreur d'entrée/sortie.
+     */
+    private AircraftData read(IcaoAddress address) throws IOException {
+        // Recherche dichotomique de la première ligne qui commence par l'adresse, si le fichier est en mémoire
+        String[] lines = members.get(address.address() & (MEMBER_COUNT - 1));
+        if (lines != null) {
+            int index = Arrays.binarySearch(lines, address.string());
+            int firstGreaterLine = index >= 0 ? index + 1 : -index - 1;
+            return (firstGreaterLine < lines.length && lines[firstGreaterLine].startsWith(address.string()))
+                    ? aircraftData(lines[firstGreaterLine])
+                    : null;
+        }
+
         try (ZipFile zipFile = new ZipFile(fileName);
              InputStream stream = zipFile.getInputStream(zipFile.getEntry
                      (address.string().substring(4, 6)
@@ -48,16 +254,50 @@ public final class AircraftDatabase {
                 int index = line.compareTo(address.string());
                 boolean lineIsFound = index > 0 && line.startsWith(address.string());
                 if (lineIsFound) {
-                    String[] aircraftData = line.split(",", -1);
-                    return new AircraftData(
-                            new AircraftRegistration(aircraftData[1]),
-                            new AircraftTypeDesignator(aircraftData[2]),
-                            aircraftData[3],
-                            new AircraftDescription(aircraftData[4]),
-                            WakeTurbulenceCategory.of(aircraftData[5]));
+                    return aircraftData(line);
                 }
             }
         }
         return null;
     }
+
+    /**
+     * Décompresse le fichier CSV d'index donné de l'archive.
+     *
+     * @param member l'index du fichier, c.-à-d. l'octet de poids faible des adresses qu'il contient.
+     * @return les lignes du fichier, triées (aucune si l'archive ne le contient pas).
+     * @throws IOException en cas d'erreur d'entrée/sortie.
+     */
+    private String[] readMember(int member) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (ZipFile zipFile = new ZipFile(fileName)) {
+            ZipEntry entry = zipFile.getEntry("%02X.csv".formatted(member));
+            if (entry != null) {
+                try (InputStream stream = zipFile.getInputStream(entry);
+                     Reader reader = new InputStreamReader(stream, StandardCharsets.UTF_8);
+                     BufferedReader bufferedReader = new BufferedReader(reader)) {
+                    String line;
+                    while ((line = bufferedReader.readLine()) != null) {
+                        lines.add(line);
+                    }
+                }
+            }
+        }
+        String[] sortedLines = lines.toArray(new String[0]);
+        Arrays.sort(sortedLines);
+        return sortedLines;
+    }
+
+    /**
+     * Retourne les données de l'aéronef décrites par la ligne donnée d'un fichier CSV, découpée en colonnes.
+     */
+    private static AircraftData aircraftData(String line) {
+        String[] aircraftData = line.split(",", -1);
+        return new AircraftData(
+                new AircraftRegistration(aircraftData[1]),
+                new AircraftTypeDesignator(aircraftData[2]),
+                aircraftData[3],
+                new AircraftDescription(aircraftData[4]),
+                WakeTurbulenceCategory.of(aircraftData[5]));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,143 @@
+package ch.epfl.javions.aircraft;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static ch.epfl.javions.aircraft.CompiledAircraftDatabase.*;
+
+/**
+ * Classe non instanciable qui compile l'archive de la base de données mictronics des aéronefs (aircraft.zip) en un
+ * fichier binaire compact, projeté en mémoire et lu par AircraftDatabase (voir CompiledAircraftDatabase pour son
+ * format). Les chaînes identiques, p. ex. les modèles et les indicatifs de type, n'y sont stockées qu'une fois.
+ *
+ * @author Brian Jean Claud El Banna (356437)
+ * @author Nicolas Khamis (355598)
+ */
+public final class AircraftDatabaseCompiler {
+    private static final int COLUMN_COUNT = 6; // Adresse, immatriculation, type, modèle, description, catégorie
+
+    private AircraftDatabaseCompiler() {
+    }
+
+    /**
+     * Programme qui compile l'archive dont le chemin est le premier argument dans le fichier dont le chemin est
+     * le second argument.
+     *
+     * @param args le chemin de l'archive, puis celui du fichier compilé à écrire.
+     * @throws IOException en cas d'erreur d'entrée/sortie.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage : AircraftDatabaseCompiler <aircraft.zip> <fichier compilé>");
+            return;
+        }
+        int aircraftCount = compile(Path.of(args[0]), Path.of(args[1]));
+        System.err.printf("%d aéronefs compilés (%d octets)%n", aircraftCount, Files.size(Path.of(args[1])));
+    }
+
+    /**
+     * Compile l'archive de chemin donné dans le fichier de chemin donné.
+     *
+     * @param zipPath    le chemin de l'archive, qui contient les fichiers CSV de la base de données.
+     * @param outputPath le chemin du fichier compilé.
+     * @return le nombre d'aéronefs compilés.
+     * @throws IOException en cas d'erreur d'entrée/sortie, ou si une ligne de l'archive n'a pas le bon nombre de
+     *                     colonnes.
+     */
+    public static int compile(Path zipPath, Path outputPath) throws IOException {
+    /*
+    --------------------------------------------------------------------------------------------------------------------
+      -- Lecture des lignes de tous les fichiers CSV, triées par adresse (la première l'emporte en cas de doublon)
+    --------------------------------------------------------------------------------------------------------------------
+    */
+        TreeMap<Integer, String[]> lines = new TreeMap<>();
+        try (ZipFile zipFile = new ZipFile(zipPath.toFile())) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.isDirectory() || !entry.getName().endsWith(".csv")) {
+                    continue;
+                }
+                try (InputStream stream = zipFile.getInputStream(entry);
+                     BufferedReader reader = new BufferedReader(
+                             new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        String[] columns = line.split(",", -1);
+                        if (columns.length != COLUMN_COUNT) {
+                            throw new IOException("Ligne invalide dans " + entry.getName() + " : " + line);
+                        }
+                        lines.putIfAbsent(new IcaoAddress(columns[0]).address(), columns);
+                    }
+                }
+            }
+        }
+
+    /*
+    --------------------------------------------------------------------------------------------------------------------
+      -- Construction des clefs, des enregistrements et du dictionnaire des chaînes
+    --------------------------------------------------------------------------------------------------------------------
+    */
+        int[] keys = new int[lines.size()];
+        int[] records = new int[lines.size() * RECORD_INTS];
+        Map<String, Integer> stringIndexes = new HashMap<>();
+        List<byte[]> strings = new ArrayList<>();
+        int index = 0;
+        for (Map.Entry<Integer, String[]> line : lines.entrySet()) {
+            String[] columns = line.getValue();
+            keys[index] = (WakeTurbulenceCategory.of(columns[5]).ordinal() << CATEGORY_SHIFT) | line.getKey();
+            for (int column = 0; column < RECORD_INTS; column++) {
+                records[index * RECORD_INTS + column] = stringIndexes.computeIfAbsent(columns[column + 1], s -> {
+                    strings.add(s.getBytes(StandardCharsets.UTF_8));
+                    return strings.size() - 1;
+                });
+            }
+            index += 1;
+        }
+
+    /*
+    --------------------------------------------------------------------------------------------------------------------
+      -- Écriture du fichier
+    --------------------------------------------------------------------------------------------------------------------
+    */
+        try (DataOutputStream s = new DataOutputStream(
+                new BufferedOutputStream(
+                        Files.newOutputStream(outputPath)))) {
+            s.writeInt(MAGIC);
+            s.writeInt(VERSION);
+            s.writeInt(keys.length);
+            s.writeInt(strings.size());
+            for (int key : keys) {
+                s.writeInt(key);
+            }
+            for (int record : records) {
+                s.writeInt(record);
+            }
+            int offset = 0;
+            for (byte[] string : strings) {
+                s.writeInt(offset);
+                offset += string.length;
+            }
+            s.writeInt(offset);
+            for (byte[] string : strings) {
+                s.write(string);
+            }
+        }
+        return keys.length;
+    }
+}
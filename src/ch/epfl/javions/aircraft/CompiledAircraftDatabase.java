@@ -0,0 +1,148 @@
+package ch.epfl.javions.aircraft;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Classe qui représente la base de données des aéronefs compilée par AircraftDatabaseCompiler, projetée en mémoire.
+ * <p>
+ * Le fichier contient, après un en-tête (le nombre magique, la version, le nombre d'aéronefs et le nombre de
+ * chaînes) :
+ * <ul>
+ *     <li>les clefs des aéronefs, triées : l'adresse OACI dans les 24 bits de poids faible, et la catégorie de
+ *     turbulence de sillage dans les 8 bits de poids fort,</li>
+ *     <li>l'enregistrement de chaque aéronef : les index, dans le dictionnaire, de son immatriculation, de son
+ *     indicatif de type, de son modèle et de sa description,</li>
+ *     <li>le dictionnaire des chaînes : la position de chacune (plus celle de la fin de la dernière), puis leurs
+ *     octets (UTF-8).</li>
+ * </ul>
+ * Une recherche est une recherche dichotomique dans les clefs, qui ne lit que les pages du fichier dont elle a
+ * besoin. Les données d'un aéronef ne sont construites qu'une fois, puis partagées. La lecture du tampon se faisant
+ * à des positions absolues, les recherches peuvent être faites depuis plusieurs fils.
+ *
+ * @author Brian Jean Claud El Banna (356437)
+ * @author Nicolas Khamis (355598)
+ */
+final class CompiledAircraftDatabase {
+    static final int MAGIC = 0x4A564442; // "JVDB"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 4 * Integer.BYTES;
+    static final int RECORD_INTS = 4; // Immatriculation, indicatif de type, modèle, description
+    static final int ADDRESS_MASK = (1 << 24) - 1;
+    static final int CATEGORY_SHIFT = 24;
+
+    private static final WakeTurbulenceCategory[] CATEGORIES = WakeTurbulenceCategory.values();
+
+    private final MappedByteBuffer buffer;
+    private final int recordCount;
+    private final int recordsOffset;
+    private final int stringOffsetsOffset;
+    private final int stringBytesOffset;
+    private final AtomicReferenceArray<AircraftData> aircraftData; // Les données partagées, construites à la demande
+
+    /**
+     * Constructeur de CompiledAircraftDatabase qui projette en mémoire le fichier compilé de chemin donné.
+     *
+     * @param path le chemin du fichier compilé.
+     * @throws IOException en cas d'erreur d'entrée/sortie, ou si le fichier n'est pas une base de données compilée
+     *                     de la bonne version.
+     */
+    CompiledAircraftDatabase(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Base de données compilée invalide : " + path);
+        }
+        recordCount = buffer.getInt(8);
+        int stringCount = buffer.getInt(12);
+        recordsOffset = HEADER_BYTES + recordCount * Integer.BYTES;
+        stringOffsetsOffset = recordsOffset + recordCount * RECORD_INTS * Integer.BYTES;
+        stringBytesOffset = stringOffsetsOffset + (stringCount + 1) * Integer.BYTES;
+        aircraftData = new AtomicReferenceArray<>(recordCount);
+    }
+
+    /**
+     * Retourne vrai si et seulement si le fichier de chemin donné commence par le nombre magique d'une base de
+     * données compilée.
+     *
+     * @param path le chemin du fichier.
+     * @return vrai si le fichier est une base de données compilée, faux sinon (ou s'il ne peut pas être lu).
+     */
+    static boolean isCompiled(Path path) {
+        try (InputStream stream = Files.newInputStream(path)) {
+            return new DataInputStream(stream).readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Charge le fichier en mémoire, pour que les recherches suivantes n'attendent pas le disque.
+     */
+    void load() {
+        buffer.load();
+    }
+
+    /**
+     * Retourne les données de l'aéronef dont l'adresse OACI est celle donnée.
+     *
+     * @param address l'adresse OACI de l'aéronef.
+     * @return les données de l'aéronef, ou null si elle est inconnue.
+     */
+    AircraftData get(IcaoAddress address) {
+        int key = address.address();
+        int low = 0;
+        int high = recordCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleKey = buffer.getInt(HEADER_BYTES + middle * Integer.BYTES) & ADDRESS_MASK;
+            if (middleKey < key) {
+                low = middle + 1;
+            } else if (middleKey > key) {
+                high = middle - 1;
+            } else {
+                return aircraftData(middle);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Retourne les données de l'aéronef d'index donné, construites lors du premier appel.
+     */
+    private AircraftData aircraftData(int index) {
+        AircraftData data = aircraftData.get(index);
+        if (data == null) {
+            int category = buffer.getInt(HEADER_BYTES + index * Integer.BYTES) >>> CATEGORY_SHIFT;
+            int record = recordsOffset + index * RECORD_INTS * Integer.BYTES;
+            aircraftData.compareAndSet(index, null, new AircraftData(
+                    new AircraftRegistration(string(buffer.getInt(record))),
+                    new AircraftTypeDesignator(string(buffer.getInt(record + Integer.BYTES))),
+                    string(buffer.getInt(record + 2 * Integer.BYTES)),
+                    new AircraftDescription(string(buffer.getInt(record + 3 * Integer.BYTES))),
+                    CATEGORIES[category]));
+            data = aircraftData.get(index); // Celles qu'on vient de construire, ou celles d'un autre fil
+        }
+        return data;
+    }
+
+    /**
+     * Retourne la chaîne d'index donné du dictionnaire.
+     */
+    private String string(int index) {
+        int start = buffer.getInt(stringOffsetsOffset + index * Integer.BYTES);
+        int end = buffer.getInt(stringOffsetsOffset + (index + 1) * Integer.BYTES);
+        byte[] bytes = new byte[end - start];
+        buffer.get(stringBytesOffset + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
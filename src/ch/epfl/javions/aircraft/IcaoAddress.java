@@ -2,32 +2,147 @@ package ch.epfl.javions.aircraft;
 
 import ch.epfl.javions.Preconditions;
 
+import java.util.HexFormat;
 import java.util.regex.Pattern;
 
 /**
- * Enregistrement qui représente l'adresse OACI d'un aéronef.
+ * Classe qui représente l'adresse OACI d'un aéronef.
+ * <p>
+ * L'adresse est stockée sous la forme d'un entier de 24 bits, et sa représentation textuelle n'est construite
+ * que lorsqu'on la demande (pour l'affichage, ou la recherche dans la base de données). Les adresses obtenues
+ * avec of(int) sont uniques : un aéronef obtient toujours la même instance (tant que la table des adresses, bornée,
+ * n'a pas dû la remplacer), ce qui évite d'en allouer une à chaque message.
  *
- * @param string chaîne contenant la représentation textuelle de l'adresse OACI
  * @author Brian Jean Claud El Banna (356437)
  * @author Nicolas Khamis (355598)
  */
-public record IcaoAddress(String string) {
+public final class IcaoAddress {
 
     // "[0-9A-F]{6}" Expression régulière correspondant à une Adresse OACI
     private static final Pattern NUM = Pattern.compile("[0-9A-F]{6}");
+    private static final HexFormat HEX_FORMAT = HexFormat.of().withUpperCase();
+    private static final int SIZE = 24; // La taille d'une adresse OACI, en bits
+    private static final int TABLE_BITS = 14; // La table des adresses a 2 puissance 14 cases
+    private static final int MAX_PROBES = 8; // Le nombre maximal de cases examinées pour une adresse
+
+    /* Les adresses uniques, dans une table de hachage à adressage ouvert indexée par leurs 24 bits (sondage linéaire
+    d'au plus MAX_PROBES cases, une case vide n'ayant pas d'instance). Lorsque toutes les cases examinées sont
+    occupées, par exemple par des adresses de messages erronés ou d'aéronefs expirés, la première est remplacée :
+    la table reste ainsi bornée, et ne garde pas en vie les adresses qui ne sont plus utilisées. Elle n'est accédée
+    que sous le verrou de la classe */
+    private static final int[] ADDRESSES = new int[1 << TABLE_BITS];
+    private static final IcaoAddress[] ICAO_ADDRESSES = new IcaoAddress[1 << TABLE_BITS];
+
+    private final int address; // Les 24 bits de l'adresse
+    private String string; // La représentation textuelle de l'adresse, construite à la demande
 
     /**
-     * Constructeur compact de l'enregistrement AircraftDescription quI valide
-     * la chaîne qui lui est passée au moyen de l'expression régulière "[0-9A-F]{6}"
+     * Constructeur public de IcaoAddress qui valide la chaîne qui lui est passée au moyen de
+     * l'expression régulière "[0-9A-F]{6}"
      *
      * @param string chaîne contenant la représentation textuelle de l'adresse OACI
      * @throws IllegalArgumentException si "string" est vide
      * @throws IllegalArgumentException si "string" ne représente pas une adresse OACI valide
      */
-
-    public IcaoAddress {
+    public IcaoAddress(String string) {
         // Vérification de la correspondance de la chaine à l’expression régulière
         boolean icaoIsValid = NUM.matcher(string).matches();
         Preconditions.checkArgument(icaoIsValid);
+        this.address = HexFormat.fromHexDigits(string);
+        this.string = string;
+    }
+
+    private IcaoAddress(int address) {
+        this.address = address;
+    }
+
+    /**
+     * Retourne l'instance de l'adresse OACI dont les 24 bits sont donnés. Tant qu'elle reste dans la table des
+     * adresses, c'est toujours la même instance qui est retournée.
+     *
+     * @param address les 24 bits de l'adresse OACI.
+     * @return l'adresse OACI correspondante.
+     * @throws IllegalArgumentException si l'adresse ne tient pas sur 24 bits.
+     */
+    public static synchronized IcaoAddress of(int address) {
+        boolean addressFitsIn24Bits = (address >>> SIZE) == 0;
+        Preconditions.checkArgument(addressFitsIn24Bits);
+
+        int mask = ICAO_ADDRESSES.length - 1;
+        int firstIndex = (address * 0x9E3779B9) >>> (Integer.SIZE - TABLE_BITS);
+        // Si toutes les cases examinées sont occupées, l'adresse remplacera celle de la première
+        int freeIndex = firstIndex;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int index = (firstIndex + probe) & mask;
+            IcaoAddress icaoAddress = ICAO_ADDRESSES[index];
+            if (icaoAddress == null) {
+                freeIndex = index; // L'adresse n'est pas dans la table, et sera placée dans cette case vide
+                break;
+            }
+            if (ADDRESSES[index] == address) {
+                return icaoAddress;
+            }
+        }
+
+        IcaoAddress icaoAddress = new IcaoAddress(address);
+        ADDRESSES[freeIndex] = address;
+        ICAO_ADDRESSES[freeIndex] = icaoAddress;
+        return icaoAddress;
+    }
+
+    /**
+     * Retourne les 24 bits de l'adresse OACI.
+     *
+     * @return les 24 bits de l'adresse OACI, sous forme d'entier.
+     */
+    public int address() {
+        return address;
+    }
+
+    /**
+     * Retourne la représentation textuelle de l'adresse OACI, construite lors du premier appel.
+     *
+     * @return la chaîne contenant la représentation textuelle de l'adresse OACI (6 chiffres hexadécimaux).
+     */
+    public String string() {
+        // Une chaîne étant immuable, deux fils qui la construisent en même temps obtiennent des chaînes égales
+        String s = string;
+        if (s == null) {
+            s = HEX_FORMAT.toHexDigits(address).substring(2); // Les 2 premiers des 8 chiffres d'un int sont nuls
+            string = s;
+        }
+        return s;
+    }
+
+    /**
+     * Redéfinition de equals qui retourne vrai si et seulement si la valeur passée en argument
+     * est une adresse OACI de mêmes 24 bits.
+     *
+     * @param that valeur passée en argument qu'on teste.
+     * @return true si la valeur passée en argument est une adresse OACI égale à celle-ci.
+     */
+    @Override
+    public boolean equals(Object that) {
+        return that instanceof IcaoAddress icaoAddress && icaoAddress.address == address;
+    }
+
+    /**
+     * Redéfinition de hashCode qui retourne les 24 bits de l'adresse.
+     *
+     * @return la valeur de hachage de l'adresse OACI.
+     */
+    @Override
+    public int hashCode() {
+        return address;
+    }
+
+    /**
+     * Redéfinition de toString qui retourne une représentation de l'adresse OACI.
+     *
+     * @return une représentation de l'adresse OACI, avec sa représentation textuelle.
+     */
+    @Override
+    public String toString() {
+        return "IcaoAddress[string=" + string() + "]";
     }
-}
\ No newline at end of file
+}
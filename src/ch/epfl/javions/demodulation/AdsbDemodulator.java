@@ -1,11 +1,14 @@
 package ch.epfl.javions.demodulation;
 
+import ch.epfl.javions.Crc24;
+import ch.epfl.javions.Crc24Corrector;
+import ch.epfl.javions.Preconditions;
 import ch.epfl.javions.Units;
 import ch.epfl.javions.adsb.RawMessage;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
@@ -16,9 +19,21 @@ import java.util.Arrays;
  */
 public final class AdsbDemodulator {
     private final PowerWindow powerWindow;
-    private final static int WINDOW_SIZE = 1200;
-    private final static int ADSB_LENGTH = 14;
-    private final byte[] adsbMessage = new byte[ADSB_LENGTH];
+    final static int WINDOW_SIZE = 1200;
+    private final static int CANDIDATE_CAPACITY = 256; // Le nombre maximal de préambules trouvés par balayage
+    private final static int HIGH_BITS = 48; // Le nombre de bits du message placés dans high (octets 0 à 5)
+    private final static int HIGH_BITS_AFTER_BYTE0 = HIGH_BITS - Byte.SIZE;
+    private final PreambleDetector preambleDetector = new PreambleDetector(CANDIDATE_CAPACITY);
+    // Les correcteurs d'erreurs, dont les tables sont construites une seule fois
+    private final static Crc24Corrector SINGLE_BIT_CORRECTOR = new Crc24Corrector(Crc24.GENERATOR, 1);
+    private final static Crc24Corrector TWO_BIT_CORRECTOR = new Crc24Corrector(Crc24.GENERATOR, 2);
+
+    private final long[] frame = new long[2]; // Le message en cours de correction (high, puis low)
+    private volatile int maxCorrectedBits = 1; // Le nombre maximal de bits corrigés par message
+    private final AtomicLong singleBitCorrections = new AtomicLong();
+    private final AtomicLong twoBitCorrections = new AtomicLong();
+    private final long firstPosition; // La position absolue du premier échantillon de la source
+    private long processingTimeNs; // Le temps total passé à rechercher des messages, en nanosecondes
 
 
     /**
@@ -32,6 +47,116 @@ public final class AdsbDemodulator {
      */
     public AdsbDemodulator(InputStream sampleStream) throws IOException {
         powerWindow = new PowerWindow(sampleStream, WINDOW_SIZE);
+        firstPosition = 0;
+    }
+
+    /**
+     * Constructeur de la classe AdsbDemodulator qui retourne un démodulateur lisant les échantillons directement
+     * depuis le fichier projeté en mémoire passé en argument, sans copie intermédiaire.
+     *
+     * @param samplesFile fichier d'échantillons projeté en mémoire.
+     * @throws IOException si une erreur d'entrée/sortie se produit lors de la création de la fenêtre.
+     */
+    public AdsbDemodulator(MappedSamplesFile samplesFile) throws IOException {
+        this(samplesFile, 0);
+    }
+
+    /**
+     * Constructeur de la classe AdsbDemodulator qui retourne un démodulateur lisant les échantillons depuis
+     * le fichier projeté en mémoire passé en argument, dont le premier échantillon se trouve à la position
+     * absolue donnée (par exemple lorsque le fichier n'est lu qu'à partir d'une certaine plage). Les horodatages
+     * des messages sont calculés à partir de cette position absolue.
+     *
+     * @param samplesFile   fichier d'échantillons projeté en mémoire.
+     * @param firstPosition la position absolue du premier échantillon lu dans le fichier.
+     * @throws IOException              si une erreur d'entrée/sortie se produit lors de la création de la fenêtre.
+     * @throws IllegalArgumentException si la position est négative.
+     */
+    public AdsbDemodulator(MappedSamplesFile samplesFile, long firstPosition) throws IOException {
+        boolean firstPositionIsPositive = firstPosition >= 0;
+        Preconditions.checkArgument(firstPositionIsPositive);
+        powerWindow = new PowerWindow(samplesFile, WINDOW_SIZE);
+        this.firstPosition = firstPosition;
+    }
+
+    /**
+     * Constructeur de la classe AdsbDemodulator qui retourne un démodulateur obtenant les échantillons
+     * de puissance de la source donnée, dont les lots doivent être de taille 2 puissance 16.
+     *
+     * @param powerSource source des échantillons de puissance.
+     * @throws IOException              si une erreur d'entrée/sortie se produit lors de la création de la fenêtre.
+     * @throws IllegalArgumentException si la taille des lots de la source n'est pas 2 puissance 16.
+     */
+    public AdsbDemodulator(PowerSource powerSource) throws IOException {
+        powerWindow = new PowerWindow(powerSource, WINDOW_SIZE);
+        firstPosition = 0;
+    }
+
+    /**
+     * Méthode qui retourne le débit du démodulateur, c.-à-d. le nombre d'échantillons de puissance parcourus
+     * par seconde passée à rechercher des messages, ce qui permet de comparer les différentes sources d'échantillons.
+     *
+     * @return le nombre d'échantillons de puissance parcourus par seconde, ou 0 si aucun message n'a été recherché.
+     */
+    public double samplesPerSecond() {
+        if (processingTimeNs == 0) {
+            return 0;
+        }
+        double processingTimeS = Units.convertFrom(processingTimeNs, Units.Time.NANOSECONDS);
+        return powerWindow.position() / processingTimeS;
+    }
+
+    /**
+     * Méthode qui choisit le nombre maximal de bits erronés corrigés dans un message dont le CRC est invalide :
+     * 0 (aucune correction), 1 (par défaut) ou 2.
+     *
+     * @param maxCorrectedBits le nombre maximal de bits corrigés dans un message.
+     * @throws IllegalArgumentException si le nombre n'est pas compris entre 0 et 2.
+     */
+    public void setMaxCorrectedBits(int maxCorrectedBits) {
+        boolean maxCorrectedBitsIsValid = maxCorrectedBits >= 0
+                && maxCorrectedBits <= Crc24Corrector.MAX_CORRECTED_BITS;
+        Preconditions.checkArgument(maxCorrectedBitsIsValid);
+        this.maxCorrectedBits = maxCorrectedBits;
+    }
+
+    /**
+     * Retourne le nombre de messages récupérés en corrigeant un bit erroné.
+     *
+     * @return le nombre de messages récupérés en corrigeant un bit erroné.
+     */
+    public long singleBitCorrections() {
+        return singleBitCorrections.get();
+    }
+
+    /**
+     * Retourne le nombre de messages récupérés en corrigeant deux bits erronés.
+     *
+     * @return le nombre de messages récupérés en corrigeant deux bits erronés.
+     */
+    public long twoBitCorrections() {
+        return twoBitCorrections.get();
+    }
+
+    /**
+     * Retourne la position absolue à laquelle commence la recherche du prochain message. La recherche ne dépend que
+     * de cette position (et des échantillons), ce qui permet de la reprendre plus tard avec un autre démodulateur.
+     *
+     * @return la position absolue à laquelle commence la recherche du prochain message.
+     */
+    long position() {
+        return firstPosition + powerWindow.position();
+    }
+
+    /**
+     * Avance du nombre d'échantillons donné la position à laquelle commence la recherche du prochain message.
+     *
+     * @param count le nombre d'échantillons à sauter.
+     * @throws IOException              en cas d'erreur d'entrée/sortie.
+     * @throws IllegalArgumentException si le nombre d'échantillons est négatif.
+     */
+    void skip(int count) throws IOException {
+        powerWindow.advanceBy(count);
     }
 
     /**
@@ -43,124 +168,149 @@ public final class AdsbDemodulator {
      * @throws IOException en cas d'erreur d'entrée/sortie.
      */
     public RawMessage nextMessage() throws IOException {
-        //Somme des Pics Précedente
-        int sumPrevious = 0;
-        //Somme des Pics Actuelle
-        int sumPics = powerWindow.get(0)
-                + powerWindow.get(10)
-                + powerWindow.get(35)
-                + powerWindow.get(45);
+        long startTimeNs = System.nanoTime();
+        try {
+            return findNextMessage();
+        } finally {
+            processingTimeNs += System.nanoTime() - startTimeNs;
+        }
+    }
+
+    /**
+     * Méthode qui recherche le prochain message ADS-B dans la fenêtre d'échantillons de puissance.
+     * <p>
+     * Les préambules sont d'abord cherchés par le détecteur sur toutes les positions disponibles, puis les
+     * candidats sont décodés dans l'ordre. Lorsqu'un candidat a un DF valide mais un CRC invalide, la somme
+     * des pics de la position suivante n'est pas reportée : la position candidat + 2 est alors réexaminée
+     * avec, comme somme des pics précédente, celle du candidat.
+     *
+     * @return le prochain message ADS-B, ou null si la fin du flot d'échantillons a été atteinte.
+     * @throws IOException en cas d'erreur d'entrée/sortie.
+     */
+    private RawMessage findNextMessage() throws IOException {
+        long position = powerWindow.position(); // La prochaine position à examiner
+        int sumPrevious = 0; // La somme des pics qui précède cette position (0 au début de chaque recherche)
 
         while (powerWindow.isFull()) {
-            //Prochaine Somme des Pics
-            int sumNext = powerWindow.get(1)
-                    + powerWindow.get(11)
-                    + powerWindow.get(36)
-                    + powerWindow.get(46);
-            //Somme des vallées
-            int sumValleys = powerWindow.get(5)
-                    + powerWindow.get(15)
-                    + powerWindow.get(20)
-                    + powerWindow.get(25)
-                    + powerWindow.get(30)
-                    + powerWindow.get(40);
-
-            //Conditions vérifiées en présence d’un préambule
-            boolean sumPicsIsBiggerThanDoubleSumValley = sumPics >= 2 * sumValleys;
-            boolean sumPicsIsStrictlyBiggerThanSurroundingSums = (sumPics > sumPrevious) && (sumPics > sumNext);
-
-            boolean preambleIsFound = sumPicsIsBiggerThanDoubleSumValley &&
-                    sumPicsIsStrictlyBiggerThanSurroundingSums;
-
-
-    /*
-    --------------------------------------------------------------------------------------------------------------------
-      -- Décodage du premier bit
-
-        À chaque itération, la fonction "Decode(i)" est appelée et le résultat est décalé vers la gauche de (7 - i) bits
-        Ensuite, le résultat est OR avec la valeur de "adsbMessage[0]". Finalement, la valeur résultante est stockée
-        dans "adsbMessage[0]".
-    --------------------------------------------------------------------------------------------------------------------
-    */
-            if (preambleIsFound) {
-                //Remplissage du tableau de 0
-                Arrays.fill(adsbMessage, (byte) 0);
-                for (int i = 0; i < Byte.SIZE; i++) {
-                    adsbMessage[0] |= ((Decode(i) << (7 - i)));
+            int candidateCount = preambleDetector.scan(powerWindow, position, sumPrevious);
+            position = preambleDetector.resumePosition();
+            sumPrevious = preambleDetector.resumeSumPrevious();
+
+            long lastRetriedPosition = -1; // La dernière position réexaminée après un CRC invalide
+            for (int k = 0; k < candidateCount; k++) {
+                long candidate = preambleDetector.candidate(k);
+                if (candidate <= lastRetriedPosition) {
+                    continue; // Cette position a déjà été réexaminée
                 }
 
+                while (candidate >= 0) {
+                    powerWindow.advanceBy((int) (candidate - powerWindow.position()));
+                    int[] ring = powerWindow.ringSamples();
+                    int index = (int) candidate & PowerWindow.RING_MASK;
 
-    /*
-    --------------------------------------------------------------------------------------------------------------------
-      -- Décodage du reste des bits
-
-        Le code fourni est une double boucle for en Java qui parcourt le tableau d'octets "adsbMessage" et qui effectue
-        des opérations de décodage.La boucle externe commence à l'index 1 de "adsbMessage" (puisque le premier élément a
-        déjà été traité.À chaque itération de la boucle interne, la variable "index" est calculée (position du bit
-        correspondant)La fonction "Decode(index)" est ensuite appelée pour récupérer la valeur du bit correspondant de
-        "adsbMessage". Cette valeur est ensuite décalée vers la gauche de (7 - j) bits et OR avec la valeur actuelle de
-        "adsbMessage[i]". Finalement, la valeur résultante est stockée dans "adsbMessage[i]".
-    --------------------------------------------------------------------------------------------------------------------
-    */
-                //Condition vérifiée lorsque l'attribut DF est valide
-                boolean downlinkFormatIsValid = (RawMessage.size(adsbMessage[0]) == RawMessage.LENGTH);
-                if (downlinkFormatIsValid) {
-                    for (int i = 1; i < ADSB_LENGTH; i++) {
-                        for (int j = 0; j < Byte.SIZE; j++) {
-                            int index = j + i * Byte.SIZE;
-                            adsbMessage[i] |= ((Decode(index) << (7 - j)));
-                        }
-                    }
+                    // On ne décode d'abord que le premier octet, pour rejeter au plus tôt les DF invalides
+                    long byte0 = sliceBits(ring, index, 0, Byte.SIZE);
+                    boolean downlinkFormatIsValid = (RawMessage.size((byte) byte0) == RawMessage.LENGTH);
+                    candidate = -1;
+                    if (downlinkFormatIsValid) {
+                        long high = (byte0 << HIGH_BITS_AFTER_BYTE0)
+                                | sliceBits(ring, index, Byte.SIZE, HIGH_BITS_AFTER_BYTE0);
+                        long low = sliceBits(ring, index, HIGH_BITS, Long.SIZE);
 
+                        // Si le CRC est invalide, on essaie de corriger le message avant de l'ignorer
+                        int syndrome = Crc24.ADSB.crc(high, low);
+                        if (syndrome != 0 && correct(high, low, syndrome)) {
+                            high = frame[0];
+                            low = frame[1];
+                        }
 
-    /*
-    --------------------------------------------------------------------------------------------------------------------
-      -- Création du message
-    --------------------------------------------------------------------------------------------------------------------
-    */
-                    /* Conversion de 0.1 microseconde à nanoseconde
-                    (Le passage d'une position à une autre prend 1 microseconde, on multiplie par 100
-                    donc on divise par 0.01 (Units.CENTI)) */
+                        long timeStamps = timeStampNs(firstPosition + powerWindow.position());
+                        RawMessage message = RawMessage.of(timeStamps, high, low);
 
-                    long timeStamps = (long) (powerWindow.position() / Units.CENTI);
-                    RawMessage message = RawMessage.of(timeStamps, adsbMessage);
+                        // Cas ou le  message est trouvé (crc est valide)
+                        if (message != null) {
+                            powerWindow.advanceBy(WINDOW_SIZE);   // On avance la fenetre de 1200 positions
+                            return message;
+                        }
 
-                    // Cas ou le  message est trouvé (crc est valide)
-                    if (message != null) {
-                        powerWindow.advanceBy(WINDOW_SIZE);   // On avance la fenetre de 1200 positions
-                        return message;
-                    }
+                        // Cas ou le message est ignoré (crc invalide) : on réexamine la position candidat + 2
+                        int sumPics = PreambleDetector.peakSum(powerWindow, powerWindow.position());
+                        long retryPosition = powerWindow.position() + 2;
+                        lastRetriedPosition = retryPosition;
 
-                    // Cas ou le message est ignoré (crc invalide)
-                    else {
-                        powerWindow.advance();
-                        sumPrevious = sumPics; // sumPrevious prend la valeur de la somme actuelle
+                        if (retryPosition >= position) {
+                            // La position n'a pas encore été balayée, le prochain balayage commence par elle
+                            position = retryPosition;
+                            sumPrevious = sumPics;
+                        } else if (PreambleDetector.isPreamble(powerWindow, retryPosition, sumPics)) {
+                            candidate = retryPosition;
+                        }
                     }
-
-                } else {
-                    powerWindow.advance();
-                    sumPrevious = sumPics; // sumPrevious prend la valeur de la somme actuelle
-                    sumPics = sumNext; // sumPics prend la valeur de sumNext
                 }
-
-            } else {
-                powerWindow.advance();
-                sumPrevious = sumPics; // sumPrevious prend la valeur de la somme actuelle
-                sumPics = sumNext; // sumPics prend la valeur de sumNext*
             }
+            powerWindow.advanceBy((int) (position - powerWindow.position()));
         }
         return null;
     }
 
     /**
-     * Méthode qui réalise le décodage des bits
+     * Méthode qui essaie de corriger, dans le tableau frame, le message donné dont le CRC vaut le syndrome donné.
      *
-     * @param index index du bit
-     * @return 0 si la somme des Pics à la position 80 + index * 10 est inferieure à la somme des pics à la position
-     * 85 + index * 10 et 1 sinon
+     * @param high     les 48 premiers bits du message.
+     * @param low      les 64 derniers bits du message.
+     * @param syndrome le CRC du message, non nul.
+     * @return vrai si et seulement si le message a été corrigé (le tableau frame contient alors le message corrigé).
      */
-    private byte Decode(int index) {
-        boolean sumPics80IsLessThanSumPics85 = powerWindow.get(80 + index * 10) < powerWindow.get(85 + index * 10);
-        return (byte) (sumPics80IsLessThanSumPics85 ? 0 : 1);
+    private boolean correct(long high, long low, int syndrome) {
+        int maxBits = maxCorrectedBits;
+        if (maxBits == 0) {
+            return false;
+        }
+
+        frame[0] = high;
+        frame[1] = low;
+        Crc24Corrector corrector = (maxBits == 1) ? SINGLE_BIT_CORRECTOR : TWO_BIT_CORRECTOR;
+        int correctedBits = corrector.correct(frame, syndrome);
+        if (correctedBits == 1) {
+            singleBitCorrections.incrementAndGet();
+        } else if (correctedBits == 2) {
+            twoBitCorrections.incrementAndGet();
+        }
+        return correctedBits > 0;
+    }
+
+    /**
+     * Retourne l'horodatage, en nanosecondes, d'un message dont le préambule commence à la position absolue donnée.
+     *
+     * @param position la position absolue du début du préambule.
+     * @return l'horodatage du message, en nanosecondes.
+     */
+    static long timeStampNs(long position) {
+        /* Conversion de 0.1 microseconde à nanoseconde
+        (Le passage d'une position à une autre prend 1 microseconde, on multiplie par 100
+        donc on divise par 0.01 (Units.CENTI)) */
+        return (long) (position / Units.CENTI);
+    }
+
+    /**
+     * Méthode qui décode, sans branchement, le nombre donné de bits consécutifs du message dont le préambule
+     * commence à l'index donné du tableau circulaire. Le bit k vaut 0 si l'échantillon de puissance à la position
+     * 80 + 10 * k est strictement inférieur à celui à la position 85 + 10 * k, et 1 sinon.
+     *
+     * @param ring     le tableau circulaire de la fenêtre, contigu sur toute la taille de la fenêtre.
+     * @param index    l'index du début du préambule dans le tableau circulaire.
+     * @param fromBit  l'index du premier bit à décoder.
+     * @param bitCount le nombre de bits à décoder (au plus 64).
+     * @return les bits décodés, le premier étant celui de poids le plus fort.
+     */
+    private static long sliceBits(int[] ring, int index, int fromBit, int bitCount) {
+        long bits = 0;
+        int sampleIndex = index + 80 + fromBit * 10;
+        for (int k = 0; k < bitCount; k++, sampleIndex += 10) {
+            // La différence est négative (bit de signe à 1) si et seulement si le bit vaut 0
+            int difference = ring[sampleIndex] - ring[sampleIndex + 5];
+            bits = (bits << 1) | (~difference >>> 31);
+        }
+        return bits;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,142 @@
+package ch.epfl.javions.demodulation;
+
+import ch.epfl.javions.Preconditions;
+import ch.epfl.javions.adsb.RawMessage;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Classe non instanciable qui démodule un même fichier d'échantillons au moyen de chacune des sources
+ * d'échantillons (le fichier projeté en mémoire, le flot, et le flot en pipeline du mode en direct), et affiche
+ * le débit obtenu avec chacune, ce qui permet de mesurer le gain de la projection en mémoire.
+ *
+ * @author Brian Jean Claud El Banna (356437)
+ * @author Nicolas Khamis (355598)
+ */
+public final class DemodulationBenchmark {
+    private static final int SAMPLE_PAIR_BYTES = 2 * Short.BYTES; // Un échantillon I et un échantillon Q
+    private static final int DEFAULT_RUNS = 3; // Le nombre de mesures par source, dont on garde la meilleure
+
+    private DemodulationBenchmark() {
+    }
+
+    /**
+     * Programme qui démodule le fichier d'échantillons dont le chemin est le premier argument avec chacune des
+     * sources d'échantillons, en gardant la meilleure de plusieurs mesures (le second argument, facultatif, en donne
+     * le nombre, au moins 1), et affiche pour chacune le nombre de messages trouvés, le débit du démodulateur
+     * (mesuré par AdsbDemodulator.samplesPerSecond) et le débit total, en échantillons de puissance par seconde.
+     *
+     * @param args le chemin du fichier d'échantillons, puis, facultativement, le nombre de mesures.
+     * @throws IOException              en cas d'erreur d'entrée/sortie.
+     * @throws IllegalArgumentException si le nombre de mesures n'est pas strictement positif.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage : DemodulationBenchmark <fichier d'échantillons> [nombre de mesures]");
+            return;
+        }
+        Path path = Path.of(args[0]);
+        int runs = (args.length == 2) ? Integer.parseInt(args[1]) : DEFAULT_RUNS;
+        Preconditions.checkArgument(runs > 0);
+        long sampleCount = Files.size(path) / SAMPLE_PAIR_BYTES;
+
+        String[] names = {"Fichier projeté", "Flot", "Flot en pipeline"};
+        Measure[] measures = {
+                () -> {
+                    try (MappedSamplesFile samplesFile = new MappedSamplesFile(path)) {
+                        return demodulate(new AdsbDemodulator(samplesFile), sampleCount);
+                    }
+                },
+                () -> {
+                    try (InputStream stream = new FileInputStream(path.toFile())) {
+                        return demodulate(new AdsbDemodulator(stream), sampleCount);
+                    }
+                },
+                () -> {
+                    try (InputStream stream = new FileInputStream(path.toFile());
+                         PipelinedPowerSource powerSource = new PipelinedPowerSource(stream, PowerWindow.BATCH_SIZE)) {
+                        return demodulate(new AdsbDemodulator(powerSource), sampleCount);
+                    }
+                }
+        };
+
+        /* Les sources sont mesurées à tour de rôle, après une première démodulation non comptée avec chacune,
+        pour qu'aucune ne soit désavantagée par la compilation à la volée */
+        Result[] best = new Result[measures.length];
+        for (int run = -1; run < runs; run++) {
+            for (int i = 0; i < measures.length; i++) {
+                Result result = measures[i].run();
+                boolean resultIsCounted = run >= 0;
+                if (resultIsCounted && (best[i] == null
+                        || result.totalSamplesPerSecond() > best[i].totalSamplesPerSecond())) {
+                    best[i] = result;
+                }
+            }
+        }
+        for (int i = 0; i < measures.length; i++) {
+            print(names[i], best[i]);
+        }
+    }
+
+    /**
+     * Démodule tous les messages du démodulateur donné.
+     *
+     * @param demodulator le démodulateur, qui vient d'être créé.
+     * @param sampleCount le nombre d'échantillons de puissance du fichier.
+     * @return le résultat de la démodulation.
+     * @throws IOException en cas d'erreur d'entrée/sortie.
+     */
+    private static Result demodulate(AdsbDemodulator demodulator, long sampleCount) throws IOException {
+        long startNs = System.nanoTime();
+        int messageCount = 0;
+        RawMessage message;
+        while ((message = demodulator.nextMessage()) != null) {
+            messageCount++;
+        }
+        double elapsedS = (System.nanoTime() - startNs) / 1e9;
+        return new Result(messageCount, demodulator.samplesPerSecond(), sampleCount / elapsedS);
+    }
+
+    /**
+     * Affiche le résultat d'une source d'échantillons.
+     *
+     * @param name   le nom de la source.
+     * @param result le résultat de la source.
+     */
+    private static void print(String name, Result result) {
+        System.out.printf("%-18s %8d messages, démodulateur %7.1f M échantillons/s, total %7.1f M échantillons/s%n",
+                name,
+                result.messageCount(),
+                result.demodulatorSamplesPerSecond() / 1e6,
+                result.totalSamplesPerSecond() / 1e6);
+    }
+
+    /**
+     * Mesure d'une source d'échantillons.
+     */
+    @FunctionalInterface
+    private interface Measure {
+        /**
+         * Démodule le fichier au moyen de la source d'échantillons mesurée.
+         *
+         * @return le résultat de la démodulation.
+         * @throws IOException en cas d'erreur d'entrée/sortie.
+         */
+        Result run() throws IOException;
+    }
+
+    /**
+     * Résultat d'une démodulation.
+     *
+     * @param messageCount                le nombre de messages trouvés.
+     * @param demodulatorSamplesPerSecond le débit mesuré par le démodulateur, en échantillons de puissance par
+     *                                    seconde passée à rechercher des messages.
+     * @param totalSamplesPerSecond       le débit total, en échantillons de puissance par seconde écoulée.
+     */
+    private record Result(int messageCount, double demodulatorSamplesPerSecond, double totalSamplesPerSecond) {
+    }
+}
@@ -0,0 +1,146 @@
+package ch.epfl.javions.demodulation;
+
+import ch.epfl.javions.Preconditions;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Objects;
+
+/**
+ * Classe qui représente un calculateur de puissance qui, en une seule passe, lit les échantillons I/Q de 12 bits
+ * (en little-endian) et calcule les échantillons de puissance, sans passer par un tableau d'échantillons
+ * intermédiaire. Il produit exactement les mêmes lots que PowerComputer, qui reste l'implémentation de référence.
+ *
+ * @author Brian Jean Claud El Banna (356437)
+ * @author Nicolas Khamis (355598)
+ */
+public final class FusedPowerComputer implements PowerSource {
+    static final int FIR_STATE_SIZE = 6; // Les 3 derniers échantillons I puis les 3 derniers échantillons Q
+    private static final int BIAIS = 2048; // La valeur du biais
+    private static final int SAMPLE_PAIR_BYTES = 2 * Short.BYTES; // Un échantillon I et un échantillon Q
+    private final int batchSize;
+    private final InputStream stream; // Le flot des données (null si les échantillons sont projetés en mémoire)
+    private final MappedSamplesFile samplesFile; // Le fichier projeté (null si les échantillons viennent d'un flot)
+    private final byte[] byteTable; // Le tableau d'octets lus depuis le flot
+    private final ByteBuffer byteBuffer; // Vue little-endian sur le tableau byteTable
+    private final int[] firState = new int[FIR_STATE_SIZE];
+
+    /**
+     * Constructeur de la classe FusedPowerComputer qui retourne un calculateur de puissance utilisant
+     * le flot d'entrée donné pour obtenir les octets de la radio AirSpy et produisant
+     * des échantillons de puissance par lots de taille donnée.
+     *
+     * @param stream    flot des données.
+     * @param batchSize taille des échantillons.
+     * @throws IllegalArgumentException si la taille des lots n'est pas un multiple de 8 strictement positif.
+     * @throws NullPointerException     si le flot est nul.
+     */
+    public FusedPowerComputer(InputStream stream, int batchSize) {
+        this.batchSize = checkBatchSize(batchSize);
+        this.stream = Objects.requireNonNull(stream);
+        this.samplesFile = null;
+        this.byteTable = new byte[batchSize * SAMPLE_PAIR_BYTES];
+        this.byteBuffer = ByteBuffer.wrap(byteTable).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Constructeur de la classe FusedPowerComputer qui retourne un calculateur de puissance lisant les octets
+     * de la radio AirSpy directement depuis le fichier projeté en mémoire donné.
+     *
+     * @param samplesFile fichier d'échantillons projeté en mémoire.
+     * @param batchSize   taille des échantillons.
+     * @throws IllegalArgumentException si la taille des lots n'est pas un multiple de 8 strictement positif.
+     * @throws NullPointerException     si le fichier est nul.
+     */
+    public FusedPowerComputer(MappedSamplesFile samplesFile, int batchSize) {
+        this.batchSize = checkBatchSize(batchSize);
+        this.stream = null;
+        this.samplesFile = Objects.requireNonNull(samplesFile);
+        this.byteTable = null;
+        this.byteBuffer = null;
+    }
+
+    /**
+     * Teste la validité de la taille des échantillons.
+     *
+     * @param batchSize taille des échantillons.
+     * @return la taille des échantillons, si elle est valide.
+     * @throws IllegalArgumentException si la taille des lots n'est pas un multiple de 8 strictement positif.
+     */
+    private static int checkBatchSize(int batchSize) {
+        boolean batchSizeIsAMultipleOf8 = (batchSize % 8 == 0);
+        boolean batchSizeIsStriclyPositive = (batchSize > 0);
+        Preconditions.checkArgument(batchSizeIsAMultipleOf8
+                && batchSizeIsStriclyPositive);
+        return batchSize;
+    }
+
+    @Override
+    public int batchSize() {
+        return batchSize;
+    }
+
+    @Override
+    public int readBatch(int[] batch, int offset) throws IOException {
+        Objects.checkFromIndexSize(offset, batchSize, batch.length);
+
+        ByteBuffer bytes;
+        if (samplesFile != null) {
+            bytes = samplesFile.nextBytes(batchSize * SAMPLE_PAIR_BYTES);
+        } else {
+            int totalBytes = stream.readNBytes(byteTable, 0, byteTable.length);
+            bytes = byteBuffer.clear().limit(totalBytes);
+        }
+        return computePowers(bytes, firState, batch, offset);
+    }
+
+    /**
+     * Méthode qui calcule, en une seule passe, les échantillons de puissance correspondant aux paires
+     * d'échantillons I/Q contenues dans les octets donnés (jusqu'à leur limite).
+     * <p>
+     * Chaque échantillon de puissance vaut (I[n] - I[n-1] + I[n-2] - I[n-3])² + (Q[n] - Q[n-1] + Q[n-2] - Q[n-3])²,
+     * ce qui est exactement la valeur calculée par PowerComputer à l'aide de son tableau circulaire de 8 valeurs.
+     * Les échantillons précédents sont gardés dans des variables locales pendant la boucle, et ne sont recopiés
+     * dans le tableau firState qu'à la fin, pour pouvoir enchaîner les lots.
+     *
+     * @param bytes    octets little-endian contenant les paires d'échantillons I/Q (12 bits, biaisés).
+     * @param firState les 3 derniers échantillons I puis les 3 derniers échantillons Q du lot précédent.
+     * @param batch    tableau dans lequel on place les échantillons de puissance.
+     * @param offset   l'index du tableau auquel on place le premier échantillon de puissance.
+     * @return le nombre d'échantillons de puissance placés dans le tableau.
+     */
+    static int computePowers(ByteBuffer bytes, int[] firState, int[] batch, int offset) {
+        int count = bytes.limit() / SAMPLE_PAIR_BYTES; // Le nombre de paires I/Q complètes
+
+        int i1 = firState[0], i2 = firState[1], i3 = firState[2];
+        int q1 = firState[3], q2 = firState[4], q3 = firState[5];
+
+        for (int n = 0; n < count; n++) {
+            int byteIndex = n * SAMPLE_PAIR_BYTES;
+            // Le transtypage en short reproduit exactement la conversion faite par SamplesDecoder
+            int i0 = (short) (bytes.getShort(byteIndex) - BIAIS);
+            int q0 = (short) (bytes.getShort(byteIndex + Short.BYTES) - BIAIS);
+
+            int i = i0 - i1 + i2 - i3;
+            int q = q0 - q1 + q2 - q3;
+            batch[offset + n] = i * i + q * q;
+
+            i3 = i2;
+            i2 = i1;
+            i1 = i0;
+            q3 = q2;
+            q2 = q1;
+            q1 = q0;
+        }
+
+        firState[0] = i1;
+        firState[1] = i2;
+        firState[2] = i3;
+        firState[3] = q1;
+        firState[4] = q2;
+        firState[5] = q3;
+        return count;
+    }
+}
@@ -0,0 +1,137 @@
+package ch.epfl.javions.demodulation;
+
+import ch.epfl.javions.Preconditions;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Classe qui représente un fichier d'échantillons projeté en mémoire, permettant de lire les octets produits
+ * par la radio AirSpy directement depuis le cache de pages, sans copie intermédiaire.
+ *
+ * @author Brian Jean Claud El Banna (356437)
+ * @author Nicolas Khamis (355598)
+ */
+public final class MappedSamplesFile implements Closeable {
+    // Taille maximale d'une fenêtre projetée (une projection ne peut pas dépasser 2 Go)
+    private static final long MAX_MAPPING_SIZE = 1L << 30;
+    private final FileChannel channel;
+    private final long startPosition; // La position dans le fichier du premier octet à lire
+    private final long endPosition; // La position dans le fichier qui suit le dernier octet à lire
+
+    private MappedByteBuffer mapping; // La fenêtre actuellement projetée
+    private long mappingStart; // La position dans le fichier du premier octet de la fenêtre projetée
+    private long filePosition; // La position dans le fichier du prochain octet à lire
+
+    /**
+     * Constructeur de MappedSamplesFile qui ouvre le fichier d'échantillons au chemin donné en lecture seule.
+     *
+     * @param path chemin du fichier d'échantillons.
+     * @throws IOException en cas d'erreur d'entrée/sortie lors de l'ouverture du fichier.
+     */
+    public MappedSamplesFile(Path path) throws IOException {
+        this(path, 0, -1);
+    }
+
+    /**
+     * Constructeur de MappedSamplesFile qui ouvre le fichier d'échantillons au chemin donné en lecture seule,
+     * et n'en lit que la plage d'octets donnée (qui permet de démoduler un fichier par morceaux).
+     *
+     * @param path      chemin du fichier d'échantillons.
+     * @param fromByte  la position dans le fichier du premier octet à lire.
+     * @param byteCount le nombre d'octets à lire.
+     * @throws IOException              en cas d'erreur d'entrée/sortie lors de l'ouverture du fichier.
+     * @throws IllegalArgumentException si la plage n'est pas entièrement comprise dans le fichier.
+     */
+    public MappedSamplesFile(Path path, long fromByte, long byteCount) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        long fileSize = channel.size();
+        if (byteCount < 0) {
+            byteCount = fileSize - fromByte; // Tout le fichier, depuis fromByte
+        }
+
+        boolean rangeIsInFile = fromByte >= 0 && byteCount >= 0 && fromByte + byteCount <= fileSize;
+        if (!rangeIsInFile) {
+            channel.close();
+        }
+        Preconditions.checkArgument(rangeIsInFile);
+
+        startPosition = fromByte;
+        endPosition = fromByte + byteCount;
+        mapping = null;
+        mappingStart = fromByte;
+        filePosition = fromByte;
+    }
+
+    /**
+     * Retourne la taille de la partie du fichier à lire (tout le fichier, sauf si une plage a été donnée),
+     * en octets.
+     *
+     * @return la taille de la partie du fichier à lire, en octets.
+     */
+    public long size() {
+        return endPosition - startPosition;
+    }
+
+    /**
+     * Retourne le nombre d'octets déjà lus depuis le début de la partie du fichier à lire.
+     *
+     * @return le nombre d'octets déjà lus.
+     */
+    public long position() {
+        return filePosition - startPosition;
+    }
+
+    /**
+     * Méthode qui retourne une vue (sans copie) sur les prochains octets du fichier, au plus byteCount, ordonnés
+     * en little-endian. La vue est valide jusqu'au prochain appel de cette méthode.
+     *
+     * @param byteCount le nombre d'octets souhaités.
+     * @return une vue sur les prochains octets du fichier, dont la limite est le nombre d'octets effectivement lus
+     * (inférieur à byteCount uniquement à la fin du fichier, ou de la plage à lire).
+     * @throws IOException              en cas d'erreur d'entrée/sortie lors de la projection.
+     * @throws IllegalArgumentException si byteCount n'est pas strictement positif ou s'il dépasse la taille
+     *                                  maximale d'une fenêtre projetée.
+     */
+    public ByteBuffer nextBytes(int byteCount) throws IOException {
+        boolean byteCountIsValid = byteCount > 0 && byteCount <= MAX_MAPPING_SIZE;
+        Preconditions.checkArgument(byteCountIsValid);
+
+        int length = (int) Math.min(byteCount, endPosition - filePosition);
+
+    /*
+    --------------------------------------------------------------------------------------------------------------------
+      -- Si les octets demandés dépassent la fenêtre projetée, on projette une nouvelle fenêtre qui commence
+         à la position courante (ce qui permet de parcourir des fichiers de plus de 2 Go)
+    --------------------------------------------------------------------------------------------------------------------
+    */
+        boolean bytesAreOutsideMapping = mapping == null
+                || filePosition + length > mappingStart + mapping.capacity();
+        if (bytesAreOutsideMapping) {
+            long mappingSize = Math.min(MAX_MAPPING_SIZE, endPosition - filePosition);
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, filePosition, mappingSize);
+            mappingStart = filePosition;
+        }
+
+        int offset = (int) (filePosition - mappingStart);
+        filePosition += length;
+        return mapping.slice(offset, length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Ferme le fichier d'échantillons.
+     *
+     * @throws IOException en cas d'erreur d'entrée/sortie.
+     */
+    @Override
+    public void close() throws IOException {
+        mapping = null;
+        channel.close();
+    }
+}
@@ -0,0 +1,363 @@
+package ch.epfl.javions.demodulation;
+
+import ch.epfl.javions.Preconditions;
+import ch.epfl.javions.adsb.RawMessage;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Classe non instanciable qui démodule un fichier d'échantillons enregistré en le découpant en morceaux,
+ * démodulés en parallèle (fork/join), puis en réunissant les messages dans l'ordre de leurs horodatages.
+ * <p>
+ * Le démodulateur saute la suite de chaque message trouvé : le premier message trouvé dans un morceau dépend donc
+ * de ceux trouvés avant lui, et un morceau qui commence au milieu du fichier peut s'écarter, à son début, d'une
+ * démodulation séquentielle. En revanche, deux démodulateurs qui trouvent un même message (même horodatage et
+ * mêmes bits) sont ensuite dans le même état, et trouvent les mêmes messages. Chaque morceau est donc démodulé
+ * depuis le début de sa plage jusqu'à son premier message qui la dépasse, puis les morceaux sont recousus dans
+ * l'ordre : le morceau qui précède (en continuant sa démodulation au-delà de sa plage si nécessaire) fournit
+ * les messages jusqu'au premier message qu'il a en commun avec le suivant, qui fournit les messages à partir
+ * de celui-ci. Si aucun message n'est commun, le morceau suivant est ignoré et le précédent continue.
+ * Le résultat est ainsi identique à celui d'une démodulation séquentielle, les horodatages étant calculés
+ * à partir des positions absolues des échantillons.
+ * <p>
+ * Seuls quelques morceaux sont démodulés à la fois, et chacun ferme son fichier dès la fin de sa démodulation :
+ * le nombre de fichiers ouverts et la mémoire des démodulateurs ne dépendent donc pas de la taille du fichier.
+ * Le morceau de tête ne rouvre son fichier que s'il doit continuer au-delà de sa plage.
+ *
+ * @author Brian Jean Claud El Banna (356437)
+ * @author Nicolas Khamis (355598)
+ */
+public final class ParallelDemodulator {
+    private static final int SAMPLE_PAIR_BYTES = 2 * Short.BYTES; // Un échantillon I et un échantillon Q
+    private static final int MIN_CHUNK_SIZE = AdsbDemodulator.WINDOW_SIZE; // La taille minimale d'un morceau
+    public static final long DEFAULT_CHUNK_SIZE = 1L << 24; // La taille par défaut d'un morceau, en échantillons
+    // Les paires I/Q précédentes dont dépend un échantillon de puissance
+    private static final int RESUME_LEAD_IN = FusedPowerComputer.FIR_STATE_SIZE / 2;
+
+    private ParallelDemodulator() {
+    }
+
+    /**
+     * Programme qui démodule le fichier d'échantillons dont le chemin est le premier argument, et écrit les messages
+     * dans le fichier dont le chemin est le second argument, au format lu par le programme principal (pour chaque
+     * message, son horodatage sur 8 octets, puis ses 14 octets).
+     *
+     * @param args le chemin du fichier d'échantillons, puis celui du fichier de messages à écrire.
+     * @throws IOException en cas d'erreur d'entrée/sortie.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage : ParallelDemodulator <fichier d'échantillons> <fichier de messages>");
+            return;
+        }
+
+        long startTime = System.nanoTime();
+        List<RawMessage> messages = demodulate(Path.of(args[0]), DEFAULT_CHUNK_SIZE);
+        try (DataOutputStream s = new DataOutputStream(
+                new BufferedOutputStream(
+                        new FileOutputStream(args[1])))) {
+            for (RawMessage message : messages) {
+                // Les 14 octets du message : les 6 octets de high (2 puis 4), puis les 8 octets de low
+                s.writeLong(message.timeStampNs());
+                s.writeShort((int) (message.high() >>> Integer.SIZE));
+                s.writeInt((int) message.high());
+                s.writeLong(message.low());
+            }
+        }
+        System.err.printf("%d messages démodulés en %.1f s%n",
+                messages.size(), (System.nanoTime() - startTime) / 1e9);
+    }
+
+    /**
+     * Démodule le fichier d'échantillons au chemin donné, par morceaux de taille donnée, en utilisant
+     * le réservoir de fils commun de fork/join.
+     *
+     * @param path      chemin du fichier d'échantillons.
+     * @param chunkSize la taille d'un morceau, en échantillons de puissance.
+     * @return les messages du fichier, dans l'ordre de leurs horodatages.
+     * @throws IOException              en cas d'erreur d'entrée/sortie.
+     * @throws IllegalArgumentException si la taille des morceaux n'est pas strictement supérieure à la taille
+     *                                  de la fenêtre du démodulateur.
+     */
+    public static List<RawMessage> demodulate(Path path, long chunkSize) throws IOException {
+        return demodulate(path, chunkSize, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Démodule le fichier d'échantillons au chemin donné, par morceaux de taille donnée, en utilisant
+     * le réservoir de fils donné. Au plus un morceau de plus que le parallélisme du réservoir est démodulé
+     * à la fois, et chaque morceau est recousu dès que sa démodulation est terminée.
+     *
+     * @param path      chemin du fichier d'échantillons.
+     * @param chunkSize la taille d'un morceau, en échantillons de puissance.
+     * @param pool      le réservoir de fils qui démodule les morceaux.
+     * @return les messages du fichier, dans l'ordre de leurs horodatages.
+     * @throws IOException              en cas d'erreur d'entrée/sortie.
+     * @throws IllegalArgumentException si la taille des morceaux n'est pas strictement supérieure à la taille
+     *                                  de la fenêtre du démodulateur.
+     */
+    public static List<RawMessage> demodulate(Path path, long chunkSize, ForkJoinPool pool) throws IOException {
+        boolean chunkSizeIsValid = chunkSize > MIN_CHUNK_SIZE;
+        Preconditions.checkArgument(chunkSizeIsValid);
+
+        long sampleCount;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            sampleCount = channel.size() / SAMPLE_PAIR_BYTES;
+        }
+        int chunkCount = (int) ((sampleCount + chunkSize - 1) / chunkSize);
+        int maxChunksInFlight = pool.getParallelism() + 1;
+
+        List<RawMessage> messages = new ArrayList<>();
+        Deque<ChunkTask> inFlight = new ArrayDeque<>();
+        int nextChunk = 0;
+        // Le morceau qui fournit les messages, dont la démodulation est identique à la démodulation séquentielle
+        Chunk lead = null;
+        try {
+            while (nextChunk < chunkCount || !inFlight.isEmpty()) {
+                while (nextChunk < chunkCount && inFlight.size() < maxChunksInFlight) {
+                    ChunkTask task = new ChunkTask(path, sampleCount, chunkSize, nextChunk++);
+                    pool.execute(task);
+                    inFlight.addLast(task);
+                }
+
+                Chunk next = join(inFlight.removeFirst());
+                if (lead == null) {
+                    lead = next;
+                } else if (stitch(lead, next, messages)) {
+                    lead.close();
+                    lead = next;
+                }
+            }
+
+            // Le dernier morceau retenu fournit tous les messages restants, jusqu'à la fin du fichier
+            RawMessage message;
+            while (lead != null && (message = lead.peek()) != null) {
+                messages.add(message);
+                lead.advance();
+            }
+            return messages;
+        } finally {
+            // Les tâches annulées en cours d'exécution se terminent normalement, et ferment leur fichier
+            for (ChunkTask task : inFlight) {
+                task.cancel(false);
+            }
+            if (lead != null) {
+                lead.close();
+            }
+        }
+    }
+
+    /**
+     * Attend la fin de la démodulation d'un morceau et la retourne.
+     *
+     * @param task la tâche qui démodule le morceau.
+     * @return le morceau démodulé.
+     * @throws IOException en cas d'erreur d'entrée/sortie lors de la démodulation.
+     */
+    private static Chunk join(ChunkTask task) throws IOException {
+        try {
+            return task.join();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Ajoute aux messages donnés ceux du morceau de tête qui précèdent son premier message en commun avec le morceau
+     * suivant, en continuant si nécessaire la démodulation du morceau de tête au-delà de sa plage, tant que ses
+     * messages ne dépassent pas le dernier message du morceau suivant.
+     *
+     * @param lead     le morceau de tête, dont les messages sont ceux d'une démodulation séquentielle.
+     * @param next     le morceau suivant.
+     * @param messages les messages déjà recousus, auxquels on ajoute ceux du morceau de tête.
+     * @return vrai si et seulement si un message commun a été trouvé : le morceau suivant, positionné sur ce
+     * message, devient alors le morceau de tête. Sinon, le morceau suivant doit être ignoré.
+     * @throws IOException en cas d'erreur d'entrée/sortie lors de la démodulation au-delà de la plage.
+     */
+    private static boolean stitch(Chunk lead, Chunk next, List<RawMessage> messages) throws IOException {
+        List<RawMessage> nextMessages = next.messages;
+        if (nextMessages.isEmpty()) {
+            return false;
+        }
+        long lastTimeStampNs = nextMessages.get(nextMessages.size() - 1).timeStampNs();
+
+        int nextIndex = 0;
+        RawMessage message;
+        while ((message = lead.peek()) != null && message.timeStampNs() <= lastTimeStampNs) {
+            // Les deux suites sont ordonnées par horodatage : on avance dans la suivante jusqu'à celui du message
+            while (nextMessages.get(nextIndex).timeStampNs() < message.timeStampNs()) {
+                nextIndex++;
+            }
+            if (nextMessages.get(nextIndex).equals(message)) {
+                next.index = nextIndex;
+                return true;
+            }
+            messages.add(message);
+            lead.advance();
+        }
+        return false;
+    }
+
+    /**
+     * Démodule le morceau d'index donné, depuis le début de sa plage jusqu'à son premier message qui la dépasse
+     * (inclus). Le fichier est fermé dès la fin de la démodulation : le morceau ne garde que ses messages et la
+     * position à laquelle reprendre, si la couture doit continuer au-delà de sa plage.
+     *
+     * @return le morceau démodulé.
+     * @throws IOException en cas d'erreur d'entrée/sortie.
+     */
+    private static Chunk demodulateChunk(Path path, long sampleCount, long chunkSize, int chunk)
+            throws IOException {
+        long start = chunk * chunkSize;
+        long end = Math.min(start + chunkSize, sampleCount);
+
+        // Les horodatages croissent avec les positions : on compare donc directement les horodatages
+        long endTimeStampNs = AdsbDemodulator.timeStampNs(end);
+
+        List<RawMessage> messages = new ArrayList<>();
+        try (MappedSamplesFile samplesFile = new MappedSamplesFile(path,
+                start * SAMPLE_PAIR_BYTES,
+                (sampleCount - start) * SAMPLE_PAIR_BYTES)) {
+            AdsbDemodulator demodulator = new AdsbDemodulator(samplesFile, start);
+            RawMessage message;
+            do {
+                message = demodulator.nextMessage();
+                if (message != null) {
+                    messages.add(message);
+                }
+            } while (message != null && message.timeStampNs() < endTimeStampNs);
+            return new Chunk(path, sampleCount, messages, demodulator.position(), message == null);
+        }
+    }
+
+    /**
+     * Morceau démodulé : les messages trouvés dans sa plage, et la position à laquelle reprendre la démodulation
+     * au-delà. Le fichier n'est rouvert, depuis cette position, que si la couture doit continuer au-delà de la plage.
+     */
+    private static final class Chunk {
+        private final Path path;
+        private final long sampleCount;
+        private final List<RawMessage> messages;
+        private int index; // L'index du prochain message à fournir
+        private final long resumePosition; // La position absolue à laquelle reprendre la démodulation
+        private boolean isExhausted; // Vrai si et seulement si la démodulation a atteint la fin du fichier
+        private MappedSamplesFile samplesFile; // Le fichier rouvert pour continuer la démodulation, ou null
+        private AdsbDemodulator demodulator; // Le démodulateur qui continue la démodulation, ou null
+
+        private Chunk(Path path, long sampleCount, List<RawMessage> messages, long resumePosition,
+                      boolean isExhausted) {
+            this.path = path;
+            this.sampleCount = sampleCount;
+            this.messages = messages;
+            this.resumePosition = resumePosition;
+            this.isExhausted = isExhausted;
+        }
+
+        /**
+         * Retourne le prochain message à fournir, en le démodulant s'il n'a pas encore été trouvé. Les messages
+         * déjà fournis sont alors oubliés.
+         *
+         * @return le prochain message à fournir, ou null si la fin du fichier a été atteinte.
+         * @throws IOException en cas d'erreur d'entrée/sortie.
+         */
+        private RawMessage peek() throws IOException {
+            if (index == messages.size() && !isExhausted) {
+                if (demodulator == null) {
+                    reopen();
+                }
+                RawMessage message = demodulator.nextMessage();
+                if (message == null) {
+                    isExhausted = true;
+                    close();
+                } else {
+                    messages.clear();
+                    messages.add(message);
+                    index = 0;
+                }
+            }
+            return index < messages.size() ? messages.get(index) : null;
+        }
+
+        /**
+         * Passe au message suivant.
+         */
+        private void advance() {
+            index++;
+        }
+
+        /**
+         * Rouvre le fichier pour continuer la démodulation à la position de reprise. Le fichier est projeté à partir
+         * de quelques échantillons plus tôt, pour que les premiers échantillons de puissance soient calculés
+         * avec les mêmes échantillons I/Q précédents que lors d'une démodulation séquentielle.
+         *
+         * @throws IOException en cas d'erreur d'entrée/sortie.
+         */
+        private void reopen() throws IOException {
+            long from = Math.max(0, resumePosition - RESUME_LEAD_IN);
+            samplesFile = new MappedSamplesFile(path,
+                    from * SAMPLE_PAIR_BYTES,
+                    (sampleCount - from) * SAMPLE_PAIR_BYTES);
+            try {
+                demodulator = new AdsbDemodulator(samplesFile, from);
+                demodulator.skip((int) (resumePosition - from));
+            } catch (IOException | RuntimeException e) {
+                close();
+                throw e;
+            }
+        }
+
+        /**
+         * Ferme le fichier rouvert pour continuer la démodulation, s'il l'a été.
+         *
+         * @throws IOException en cas d'erreur d'entrée/sortie.
+         */
+        private void close() throws IOException {
+            MappedSamplesFile file = samplesFile;
+            samplesFile = null;
+            demodulator = null;
+            if (file != null) {
+                file.close();
+            }
+        }
+    }
+
+    /**
+     * Tâche qui démodule un morceau.
+     */
+    @SuppressWarnings("serial") // Les tâches ne sont jamais sérialisées
+    private static final class ChunkTask extends RecursiveTask<Chunk> {
+        private final Path path;
+        private final long sampleCount;
+        private final long chunkSize;
+        private final int chunk;
+
+        private ChunkTask(Path path, long sampleCount, long chunkSize, int chunk) {
+            this.path = path;
+            this.sampleCount = sampleCount;
+            this.chunkSize = chunkSize;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected Chunk compute() {
+            try {
+                return demodulateChunk(path, sampleCount, chunkSize, chunk);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
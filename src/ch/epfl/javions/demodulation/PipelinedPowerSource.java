@@ -0,0 +1,283 @@
+package ch.epfl.javions.demodulation;
+
+import ch.epfl.javions.Preconditions;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Objects;
+
+/**
+ * Classe qui représente une source d'échantillons de puissance organisée en chaîne de traitement : la lecture
+ * des octets de la radio AirSpy et le calcul de la puissance se font chacun sur un fil d'exécution dédié,
+ * le fil qui appelle readBatch (celui du démodulateur) ne faisant plus que recopier les lots déjà calculés.
+ * <p>
+ * Les étages s'échangent des tampons alloués une fois pour toutes, au travers de files à un producteur et
+ * un consommateur : chaque tampon va d'un étage au suivant, puis revient, vide, à l'étage précédent.
+ * Chaque étage mesure son taux d'occupation, c.-à-d. la fraction du temps qu'il ne passe pas à attendre
+ * un tampon d'un autre étage ; l'étage limitant est celui dont le taux est le plus proche de 1.
+ *
+ * @author Brian Jean Claud El Banna (356437)
+ * @author Nicolas Khamis (355598)
+ */
+public final class PipelinedPowerSource implements PowerSource, Closeable {
+    private static final int BUFFER_COUNT = 4; // Le nombre de tampons de chaque étage (une puissance de 2)
+    private static final int SAMPLE_PAIR_BYTES = 2 * Short.BYTES; // Un échantillon I et un échantillon Q
+    private final int batchSize;
+    private final InputStream stream;
+
+    // Les tampons d'octets pleins (de la lecture vers le calcul) et vides (du calcul vers la lecture)
+    private final SpscQueue<SampleBatch> fullSampleBatches = new SpscQueue<>(BUFFER_COUNT);
+    private final SpscQueue<SampleBatch> freeSampleBatches = new SpscQueue<>(BUFFER_COUNT);
+
+    // Les lots de puissance calculés (du calcul vers le démodulateur) et vides (du démodulateur vers le calcul)
+    private final SpscQueue<PowerBatch> fullPowerBatches = new SpscQueue<>(BUFFER_COUNT);
+    private final SpscQueue<PowerBatch> freePowerBatches = new SpscQueue<>(BUFFER_COUNT);
+
+    private final StageClock readerClock = new StageClock();
+    private final StageClock powerClock = new StageClock();
+    private final StageClock demodulatorClock = new StageClock();
+    private final Thread readerThread;
+    private final Thread powerThread;
+
+    private volatile IOException failure; // L'erreur survenue lors de la lecture, transmise au démodulateur
+    private boolean endOfStreamIsReached; // Vrai dès que le dernier lot a été rendu au démodulateur
+
+    /**
+     * Constructeur de PipelinedPowerSource qui retourne une source lisant les octets de la radio AirSpy depuis
+     * le flot donné et produisant des échantillons de puissance par lots de taille donnée. Les fils de lecture
+     * et de calcul sont démarrés immédiatement.
+     *
+     * @param stream    flot des données.
+     * @param batchSize taille des échantillons.
+     * @throws IllegalArgumentException si la taille des lots n'est pas un multiple de 8 strictement positif.
+     * @throws NullPointerException     si le flot est nul.
+     */
+    public PipelinedPowerSource(InputStream stream, int batchSize) {
+        boolean batchSizeIsAMultipleOf8 = (batchSize % 8 == 0);
+        boolean batchSizeIsStriclyPositive = (batchSize > 0);
+        Preconditions.checkArgument(batchSizeIsAMultipleOf8
+                && batchSizeIsStriclyPositive);
+
+        this.batchSize = batchSize;
+        this.stream = Objects.requireNonNull(stream);
+        for (int i = 0; i < BUFFER_COUNT; i++) {
+            freeSampleBatches.offer(new SampleBatch(batchSize * SAMPLE_PAIR_BYTES));
+            freePowerBatches.offer(new PowerBatch(batchSize));
+        }
+
+        readerThread = new Thread(this::readSamples, "javions-samples-reader");
+        powerThread = new Thread(this::computePowers, "javions-power-computer");
+        readerThread.setDaemon(true);
+        powerThread.setDaemon(true);
+        readerThread.start();
+        powerThread.start();
+    }
+
+    @Override
+    public int batchSize() {
+        return batchSize;
+    }
+
+    @Override
+    public int readBatch(int[] batch, int offset) throws IOException {
+        Objects.checkFromIndexSize(offset, batchSize, batch.length);
+        if (endOfStreamIsReached) {
+            return 0;
+        }
+
+        demodulatorClock.startIfNeeded();
+        try {
+            PowerBatch powerBatch = demodulatorClock.take(fullPowerBatches);
+            int count = powerBatch.count;
+            System.arraycopy(powerBatch.powers, 0, batch, offset, count);
+            demodulatorClock.put(freePowerBatches, powerBatch);
+
+            // Le dernier lot, incomplet, signale la fin du flot ou une erreur de lecture
+            endOfStreamIsReached = count < batchSize;
+            IOException readerFailure = failure;
+            if (endOfStreamIsReached && readerFailure != null) {
+                throw readerFailure;
+            }
+            return count;
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+    }
+
+    /**
+     * Retourne le taux d'occupation de l'étage de lecture (qui inclut l'attente des octets de la radio).
+     *
+     * @return la fraction du temps que l'étage de lecture ne passe pas à attendre un tampon vide.
+     */
+    public double readerOccupancy() {
+        return readerClock.occupancy();
+    }
+
+    /**
+     * Retourne le taux d'occupation de l'étage de calcul de la puissance.
+     *
+     * @return la fraction du temps que l'étage de calcul ne passe pas à attendre un tampon.
+     */
+    public double powerOccupancy() {
+        return powerClock.occupancy();
+    }
+
+    /**
+     * Retourne le taux d'occupation du démodulateur, c.-à-d. du fil qui appelle readBatch.
+     *
+     * @return la fraction du temps que le démodulateur ne passe pas à attendre un lot de puissance.
+     */
+    public double demodulatorOccupancy() {
+        return demodulatorClock.occupancy();
+    }
+
+    /**
+     * Retourne le nombre de tampons d'octets lus qui attendent d'être traités par l'étage de calcul.
+     *
+     * @return le nombre de tampons d'octets en attente, entre 0 et le nombre de tampons.
+     */
+    public int pendingSampleBatches() {
+        return fullSampleBatches.size();
+    }
+
+    /**
+     * Retourne le nombre de lots de puissance calculés qui attendent d'être lus par le démodulateur.
+     *
+     * @return le nombre de lots de puissance en attente, entre 0 et le nombre de tampons.
+     */
+    public int pendingPowerBatches() {
+        return fullPowerBatches.size();
+    }
+
+    /**
+     * Arrête les fils de lecture et de calcul. Le flot n'est pas fermé.
+     */
+    @Override
+    public void close() {
+        readerThread.interrupt();
+        powerThread.interrupt();
+    }
+
+    /*
+    --------------------------------------------------------------------------------------------------------------------
+      -- Étage de lecture : remplit les tampons d'octets vides depuis le flot, jusqu'à la fin de celui-ci
+    --------------------------------------------------------------------------------------------------------------------
+    */
+    private void readSamples() {
+        readerClock.startIfNeeded();
+        try {
+            boolean endOfStream = false;
+            while (!endOfStream) {
+                SampleBatch sampleBatch = readerClock.take(freeSampleBatches);
+                try {
+                    sampleBatch.length = stream.readNBytes(sampleBatch.bytes, 0, sampleBatch.bytes.length);
+                } catch (IOException e) {
+                    failure = e; // Publiée au démodulateur avec le tampon (vide) qui suit
+                    sampleBatch.length = 0;
+                }
+                endOfStream = sampleBatch.length < sampleBatch.bytes.length;
+                readerClock.put(fullSampleBatches, sampleBatch);
+            }
+        } catch (InterruptedException ignored) {
+            // La source a été fermée
+        }
+    }
+
+    /*
+    --------------------------------------------------------------------------------------------------------------------
+      -- Étage de calcul : transforme chaque tampon d'octets en un lot de puissance, en une seule passe
+    --------------------------------------------------------------------------------------------------------------------
+    */
+    private void computePowers() {
+        powerClock.startIfNeeded();
+        int[] firState = new int[FusedPowerComputer.FIR_STATE_SIZE];
+        try {
+            boolean endOfStream = false;
+            while (!endOfStream) {
+                SampleBatch sampleBatch = powerClock.take(fullSampleBatches);
+                PowerBatch powerBatch = powerClock.take(freePowerBatches);
+
+                ByteBuffer bytes = sampleBatch.buffer.clear().limit(sampleBatch.length);
+                powerBatch.count = FusedPowerComputer.computePowers(bytes, firState, powerBatch.powers, 0);
+                endOfStream = sampleBatch.length < sampleBatch.bytes.length;
+
+                powerClock.put(freeSampleBatches, sampleBatch);
+                powerClock.put(fullPowerBatches, powerBatch);
+            }
+        } catch (InterruptedException ignored) {
+            // La source a été fermée
+        }
+    }
+
+    /**
+     * Tampon d'octets lus depuis le flot, avec le nombre d'octets effectivement lus.
+     */
+    private static final class SampleBatch {
+        private final byte[] bytes;
+        private final ByteBuffer buffer; // Vue little-endian sur le tableau bytes
+        private int length;
+
+        private SampleBatch(int byteCount) {
+            bytes = new byte[byteCount];
+            buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    /**
+     * Lot d'échantillons de puissance, avec le nombre d'échantillons effectivement calculés.
+     */
+    private static final class PowerBatch {
+        private final int[] powers;
+        private int count;
+
+        private PowerBatch(int batchSize) {
+            powers = new int[batchSize];
+        }
+    }
+
+    /**
+     * Horloge d'un étage, qui mesure le temps qu'il passe à attendre les autres étages. Elle n'est modifiée
+     * que par le fil de l'étage, mais peut être lue depuis n'importe quel fil.
+     */
+    private static final class StageClock {
+        private volatile long startNs = -1; // L'instant auquel l'étage a commencé, ou -1
+        private volatile long waitNs; // Le temps total passé à attendre
+
+        private void startIfNeeded() {
+            if (startNs < 0) {
+                startNs = System.nanoTime();
+            }
+        }
+
+        private <E> E take(SpscQueue<E> queue) throws InterruptedException {
+            E element = queue.poll();
+            if (element == null) {
+                long waitStartNs = System.nanoTime();
+                element = queue.take();
+                waitNs += System.nanoTime() - waitStartNs;
+            }
+            return element;
+        }
+
+        private <E> void put(SpscQueue<E> queue, E element) throws InterruptedException {
+            if (!queue.offer(element)) {
+                long waitStartNs = System.nanoTime();
+                queue.put(element);
+                waitNs += System.nanoTime() - waitStartNs;
+            }
+        }
+
+        private double occupancy() {
+            long start = startNs;
+            if (start < 0) {
+                return 0;
+            }
+            long elapsedNs = System.nanoTime() - start;
+            return elapsedNs == 0 ? 0 : Math.max(0, 1 - (double) waitNs / elapsedNs);
+        }
+    }
+}
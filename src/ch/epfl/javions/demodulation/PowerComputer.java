@@ -4,14 +4,16 @@ import ch.epfl.javions.Preconditions;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Objects;
 
 /**
- * Classe qui représente un calculateur de puissance.
+ * Classe qui représente un calculateur de puissance. Elle passe par un décodeur d'échantillons et sert
+ * d'implémentation de référence pour FusedPowerComputer.
  *
  * @author Brian Jean Claud El Banna (356437)
  * @author Nicolas Khamis (355598)
  */
-public final class PowerComputer {
+public final class PowerComputer implements PowerSource {
     private final int batchSize;
     private final SamplesDecoder samplesDecoder;
     // Le tableau d'octets issus des échantillons décodés
@@ -31,25 +33,53 @@ public final class PowerComputer {
      * @throws NullPointerException     si le flot est nul.
      */
     public PowerComputer(InputStream stream, int batchSize) {
-    /*
-    --------------------------------------------------------------------------------------------------------------------
-      -- Teste la validité de la taille des échantillons.
-    --------------------------------------------------------------------------------------------------------------------
-    */
+        this(batchSize, new SamplesDecoder(stream, 2 * checkBatchSize(batchSize)));
+    }
+
+    /**
+     * Constructeur de la classe PowerComputer qui retourne un calculateur de puissance lisant les octets
+     * de la radio AirSpy directement depuis le fichier projeté en mémoire donné.
+     *
+     * @param samplesFile fichier d'échantillons projeté en mémoire.
+     * @param batchSize   taille des échantillons.
+     * @throws IllegalArgumentException si la taille des lots n'est pas strictement positive.
+     * @throws NullPointerException     si le fichier est nul.
+     */
+    public PowerComputer(MappedSamplesFile samplesFile, int batchSize) {
+        this(batchSize, new SamplesDecoder(samplesFile, 2 * checkBatchSize(batchSize)));
+    }
+
+    /**
+     * Constructeur privé commun, qui instancie les variables à partir du décodeur d'échantillons donné.
+     *
+     * @param batchSize      taille des échantillons.
+     * @param samplesDecoder décodeur d'échantillons.
+     */
+    private PowerComputer(int batchSize, SamplesDecoder samplesDecoder) {
+        this.batchSize = batchSize;
+        int samplesTabSize = 2 * batchSize; // La taille du tableau samplesTab
+        samplesTab = new short[samplesTabSize];
+        this.samplesDecoder = samplesDecoder;
+    }
+
+    /**
+     * Teste la validité de la taille des échantillons.
+     *
+     * @param batchSize taille des échantillons.
+     * @return la taille des échantillons, si elle est valide.
+     * @throws IllegalArgumentException si la taille des lots n'est pas un multiple de 8 strictement positif.
+     */
+    private static int checkBatchSize(int batchSize) {
         boolean batchSizeIsAMultipleOf8 = (batchSize % 8 == 0);
         boolean batchSizeIsStriclyPositive = (batchSize > 0);
         Preconditions.checkArgument(batchSizeIsAMultipleOf8
                 && batchSizeIsStriclyPositive);
+        return batchSize;
+    }
 
-    /*
-    --------------------------------------------------------------------------------------------------------------------
-      -- Instanciation des variables.
-    --------------------------------------------------------------------------------------------------------------------
-    */
-        this.batchSize = batchSize;
-        int samplesTabSize = 2 * batchSize; // La taille du tableau samplesTab
-        samplesTab = new short[samplesTabSize];
-        samplesDecoder = new SamplesDecoder(stream, samplesTabSize);
+    @Override
+    public int batchSize() {
+        return batchSize;
     }
 
     /**
@@ -62,6 +92,7 @@ public final class PowerComputer {
      * @throws IllegalArgumentException si la taille du tableau passé en argument
      *                                  n'est pas égale à la taille d'un lot.
      */
+    @Override
     public int readBatch(int[] batch) throws IOException {
     /*
     --------------------------------------------------------------------------------------------------------------------
@@ -70,6 +101,12 @@ public final class PowerComputer {
     */
         boolean batchLengthIsValid = batch.length == batchSize;
         Preconditions.checkArgument(batchLengthIsValid);
+        return readBatch(batch, 0);
+    }
+
+    @Override
+    public int readBatch(int[] batch, int offset) throws IOException {
+        Objects.checkFromIndexSize(offset, batchSize, batch.length);
 
     /*
     --------------------------------------------------------------------------------------------------------------------
@@ -103,7 +140,7 @@ public final class PowerComputer {
 
             /* On remplit à l'index j/2 car le tableau batch est de taille "batchSize"
             et le tableau samplesTab est de taille "batchSize * 2" */
-            batch[j / 2] = q + i;
+            batch[offset + j / 2] = q + i;
             index += 2;
         }
 
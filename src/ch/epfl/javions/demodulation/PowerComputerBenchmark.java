@@ -0,0 +1,115 @@
+package ch.epfl.javions.demodulation;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * Classe non instanciable qui mesure le débit des calculateurs de puissance sur un même fichier d'échantillons
+ * projeté en mémoire : PowerComputer (l'implémentation de référence), FusedPowerComputer et, s'il est disponible,
+ * le calculateur vectoriel. Elle vérifie aussi qu'ils produisent exactement les mêmes échantillons de puissance.
+ *
+ * @author Brian Jean Claud El Banna (356437)
+ * @author Nicolas Khamis (355598)
+ */
+public final class PowerComputerBenchmark {
+    private static final int BATCH_SIZE = PowerWindow.BATCH_SIZE;
+    private static final int DEFAULT_RUNS = 5; // Le nombre de mesures par calculateur, dont on garde la meilleure
+
+    private PowerComputerBenchmark() {
+    }
+
+    /**
+     * Programme qui mesure le débit de chaque calculateur de puissance sur le fichier d'échantillons dont le chemin
+     * est le premier argument, en gardant la meilleure de plusieurs mesures (le second argument, facultatif, en donne
+     * le nombre). Le calculateur vectoriel n'est mesuré que si le programme est lancé avec l'option --add-modules
+     * jdk.incubator.vector et que ses classes sont sur le chemin des classes.
+     *
+     * @param args le chemin du fichier d'échantillons, puis, facultativement, le nombre de mesures.
+     * @throws IOException en cas d'erreur d'entrée/sortie.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage : PowerComputerBenchmark <fichier d'échantillons> [nombre de mesures]");
+            return;
+        }
+        Path path = Path.of(args[0]);
+        int runs = (args.length == 2) ? Integer.parseInt(args[1]) : DEFAULT_RUNS;
+
+        Result reference = measure(path, runs, f -> new PowerComputer(f, BATCH_SIZE));
+        Result fused = measure(path, runs, f -> new FusedPowerComputer(f, BATCH_SIZE));
+        print("PowerComputer", reference, reference, fused);
+        print("FusedPowerComputer", fused, reference, fused);
+
+        PowerSourceProvider vectorProvider = PowerWindow.vectorProvider();
+        if (vectorProvider == null) {
+            System.out.println("Calculateur vectoriel indisponible (module jdk.incubator.vector ou classes absents)");
+        } else {
+            Result vector = measure(path, runs, f -> vectorProvider.of(f, BATCH_SIZE));
+            print("VectorPowerComputer", vector, reference, fused);
+        }
+    }
+
+    /**
+     * Calcule tous les échantillons de puissance du fichier avec des calculateurs construits par la fonction donnée,
+     * le nombre de fois donné, et retourne le meilleur débit obtenu. Seule la lecture des lots est chronométrée.
+     *
+     * @param path     chemin du fichier d'échantillons.
+     * @param runs     le nombre de mesures.
+     * @param computer la fonction qui construit un calculateur de puissance lisant le fichier projeté donné.
+     * @return le meilleur débit obtenu, et l'empreinte des échantillons de puissance calculés.
+     * @throws IOException en cas d'erreur d'entrée/sortie.
+     */
+    private static Result measure(Path path, int runs, Function<MappedSamplesFile, PowerSource> computer)
+            throws IOException {
+        int[] batch = new int[BATCH_SIZE];
+        double bestSamplesPerSecond = 0;
+        int hash = 0;
+        for (int run = 0; run < runs; run++) {
+            long sampleCount = 0;
+            long elapsedNs = 0;
+            hash = 0;
+            try (MappedSamplesFile samplesFile = new MappedSamplesFile(path)) {
+                PowerSource powerSource = computer.apply(samplesFile);
+                int count;
+                do {
+                    long startNs = System.nanoTime();
+                    count = powerSource.readBatch(batch);
+                    elapsedNs += System.nanoTime() - startNs;
+
+                    sampleCount += count;
+                    hash = 31 * hash + Arrays.hashCode(Arrays.copyOf(batch, count));
+                } while (count == BATCH_SIZE);
+            }
+            bestSamplesPerSecond = Math.max(bestSamplesPerSecond, sampleCount / (elapsedNs / 1e9));
+        }
+        return new Result(bestSamplesPerSecond, hash);
+    }
+
+    /**
+     * Affiche le débit d'un calculateur, son accélération par rapport à FusedPowerComputer, et s'il produit
+     * les mêmes échantillons de puissance que l'implémentation de référence.
+     *
+     * @param name      le nom du calculateur.
+     * @param result    le résultat du calculateur.
+     * @param reference le résultat de l'implémentation de référence.
+     * @param fused     le résultat de FusedPowerComputer.
+     */
+    private static void print(String name, Result result, Result reference, Result fused) {
+        System.out.printf("%-20s %7.1f M échantillons/s  (x %.2f par rapport à FusedPowerComputer)  %s%n",
+                name,
+                result.samplesPerSecond() / 1e6,
+                result.samplesPerSecond() / fused.samplesPerSecond(),
+                result.hash() == reference.hash() ? "identique" : "DIFFÉRENT de PowerComputer");
+    }
+
+    /**
+     * Résultat d'une mesure.
+     *
+     * @param samplesPerSecond le meilleur débit obtenu, en échantillons de puissance par seconde.
+     * @param hash             l'empreinte des échantillons de puissance calculés.
+     */
+    private record Result(double samplesPerSecond, int hash) {
+    }
+}
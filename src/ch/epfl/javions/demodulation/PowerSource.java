@@ -0,0 +1,48 @@
+package ch.epfl.javions.demodulation;
+
+import ch.epfl.javions.Preconditions;
+
+import java.io.IOException;
+
+/**
+ * Interface qui a pour but d'être implémentée par toutes les classes produisant des échantillons de puissance
+ * par lots de taille fixe.
+ *
+ * @author Brian Jean Claud El Banna (356437)
+ * @author Nicolas Khamis (355598)
+ */
+public interface PowerSource {
+    /**
+     * Méthode qui retourne la taille des lots d'échantillons de puissance produits.
+     *
+     * @return la taille des lots d'échantillons de puissance produits.
+     */
+    int batchSize(); // méthode qui est publique et abstraite
+
+    /**
+     * Méthode qui calcule le prochain lot d'échantillons de puissance et le place dans le tableau "batch".
+     *
+     * @param batch tableau qui contient le résultat des calculs de puissance.
+     * @return le nombre d'échantillons de puissance placés dans le tableau.
+     * @throws IOException              en cas d'erreur d'entrée/sortie.
+     * @throws IllegalArgumentException si la taille du tableau passé en argument
+     *                                  n'est pas égale à la taille d'un lot.
+     */
+    default int readBatch(int[] batch) throws IOException {
+        boolean batchLengthIsValid = batch.length == batchSize();
+        Preconditions.checkArgument(batchLengthIsValid);
+        return readBatch(batch, 0);
+    }
+
+    /**
+     * Méthode qui calcule le prochain lot d'échantillons de puissance et le place dans le tableau "batch"
+     * à partir de l'index donné, ce qui permet de remplir directement une partie d'un tableau plus grand.
+     *
+     * @param batch  tableau qui contient le résultat des calculs de puissance.
+     * @param offset l'index du tableau auquel on place le premier échantillon de puissance.
+     * @return le nombre d'échantillons de puissance placés dans le tableau.
+     * @throws IOException               en cas d'erreur d'entrée/sortie.
+     * @throws IndexOutOfBoundsException si un lot placé à partir de l'index donné ne tient pas dans le tableau.
+     */
+    int readBatch(int[] batch, int offset) throws IOException; // méthode qui est publique et abstraite
+}
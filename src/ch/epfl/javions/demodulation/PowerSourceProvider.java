@@ -0,0 +1,37 @@
+package ch.epfl.javions.demodulation;
+
+import java.io.InputStream;
+
+/**
+ * Interface qui a pour but d'être implémentée par les fournisseurs de sources de puissance compilés à part du
+ * projet et chargés au moyen d'un ServiceLoader (par exemple le calculateur vectoriel, qui dépend d'un module
+ * incubateur du JDK).
+ *
+ * @author Brian Jean Claud El Banna (356437)
+ * @author Nicolas Khamis (355598)
+ */
+public interface PowerSourceProvider {
+    /**
+     * Méthode qui retourne une source de puissance utilisant le flot d'entrée donné pour obtenir les octets de la
+     * radio AirSpy et produisant des échantillons de puissance par lots de taille donnée.
+     *
+     * @param stream    flot des données.
+     * @param batchSize taille des lots.
+     * @return la source de puissance.
+     * @throws IllegalArgumentException si la taille des lots n'est pas un multiple de 8 strictement positif.
+     * @throws NullPointerException     si le flot est nul.
+     */
+    PowerSource of(InputStream stream, int batchSize);
+
+    /**
+     * Méthode qui retourne une source de puissance lisant les octets de la radio AirSpy directement depuis
+     * le fichier projeté en mémoire donné.
+     *
+     * @param samplesFile fichier d'échantillons projeté en mémoire.
+     * @param batchSize   taille des lots.
+     * @return la source de puissance.
+     * @throws IllegalArgumentException si la taille des lots n'est pas un multiple de 8 strictement positif.
+     * @throws NullPointerException     si le fichier est nul.
+     */
+    PowerSource of(MappedSamplesFile samplesFile, int batchSize);
+}
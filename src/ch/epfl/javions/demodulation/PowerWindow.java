@@ -5,6 +5,8 @@ import ch.epfl.javions.Preconditions;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Objects;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
 
 /**
  * Classe qui représente une fenêtre de taille fixe sur une séquence
@@ -15,15 +17,23 @@ import java.util.Objects;
  */
 public final class PowerWindow {
     private static final int LIMIT = 1 << 16; // équivalent à Math.pow(2, 16) donc 2 puissance 16
-    private final PowerComputer powerComputer;
+    public static final int BATCH_SIZE = LIMIT; // La taille des lots que doit produire une source de puissance
+    private static final int RING_SIZE = 2 * LIMIT; // Deux lots, une puissance de 2
+    static final int RING_MASK = RING_SIZE - 1; // Masque qui remplace le modulo RING_SIZE
+
+    /* Le fournisseur du calculateur vectoriel (compilé à part, voir PowerSourceProvider), ou null s'il n'est pas
+    sur le chemin des classes ou si le module de l'API vectorielle n'a pas été chargé (option --add-modules
+    jdk.incubator.vector) : FusedPowerComputer est alors utilisé. */
+    private static final PowerSourceProvider VECTOR_PROVIDER = vectorProvider();
+    private final PowerSource powerComputer;
     private final int windowSize;
 
-    // Le tableau primaire
-    private int[] mainTab = new int[LIMIT];
-
-    // Le tableau secondaire
-    private int[] secondaryTab = new int[LIMIT];
-    private int windowPosition = 0;
+    /* Le tableau circulaire, formé de deux moitiés de la taille d'un lot : la fenêtre chevauche au plus
+    les deux derniers lots lus, et chaque nouveau lot est lu directement dans la moitié la plus ancienne.
+    Il est suivi d'une copie de ses windowSize premiers éléments, pour que la fenêtre y soit toujours contiguë */
+    private final int[] ringTab;
+    private long windowPosition = 0; // long, pour pouvoir parcourir des fichiers de plus de 2 Go
+    private long nextBatchPosition; // La position du premier échantillon du prochain lot à lire
     private long totalNumberElements;
 
     /**
@@ -38,12 +48,64 @@ public final class PowerWindow {
      * @throws IOException              si le flot n'est pas fermé.
      */
     public PowerWindow(InputStream stream, int windowSize) throws IOException {
+        this(VECTOR_PROVIDER != null
+                ? VECTOR_PROVIDER.of(stream, LIMIT)
+                : new FusedPowerComputer(stream, LIMIT), windowSize);
+    }
+
+    /**
+     * Constructeur de PowerWindow qui retourne une fenêtre de taille donnée sur la séquence d'échantillons
+     * de puissance calculés à partir des octets lus directement dans le fichier projeté en mémoire donné.
+     *
+     * @param samplesFile fichier d'échantillons projeté en mémoire.
+     * @param windowSize  taille de la fenêtre.
+     * @throws IllegalArgumentException si la taille de la fenêtre n'est pas strictement positive
+     *                                  ou si elle n'est pas inférieure ou égale à la taille limite
+     * @throws IOException              en cas d'erreur d'entrée/sortie.
+     */
+    public PowerWindow(MappedSamplesFile samplesFile, int windowSize) throws IOException {
+        this(VECTOR_PROVIDER != null
+                ? VECTOR_PROVIDER.of(samplesFile, LIMIT)
+                : new FusedPowerComputer(samplesFile, LIMIT), windowSize);
+    }
+
+    /**
+     * Constructeur de PowerWindow qui retourne une fenêtre de taille donnée sur la séquence d'échantillons
+     * de puissance produits par la source donnée (par exemple le calculateur de référence PowerComputer).
+     *
+     * @param powerComputer source des échantillons de puissance, produits par lots de 2 puissance 16.
+     * @param windowSize    taille de la fenêtre.
+     * @throws IllegalArgumentException si la taille de la fenêtre n'est pas valide,
+     *                                  ou si la taille des lots de la source n'est pas 2 puissance 16.
+     * @throws IOException              en cas d'erreur d'entrée/sortie.
+     */
+    public PowerWindow(PowerSource powerComputer, int windowSize) throws IOException {
         boolean windowSizeIsValid = (windowSize > 0) && (windowSize <= LIMIT);
         Preconditions.checkArgument(windowSizeIsValid);
+        Preconditions.checkArgument(powerComputer.batchSize() == LIMIT);
 
         this.windowSize = windowSize;
-        powerComputer = new PowerComputer(stream, LIMIT);
-        totalNumberElements = powerComputer.readBatch(mainTab);
+        this.powerComputer = powerComputer;
+        ringTab = new int[RING_SIZE + windowSize];
+        totalNumberElements = readBatchAt(0);
+        nextBatchPosition = LIMIT;
+    }
+
+    /**
+     * Retourne le fournisseur du calculateur vectoriel, s'il est disponible. Le module est testé avant de charger
+     * le fournisseur, pour ne jamais charger le calculateur vectoriel sans lui.
+     *
+     * @return le fournisseur du calculateur vectoriel, ou null s'il n'est pas disponible.
+     */
+    static PowerSourceProvider vectorProvider() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            return ServiceLoader.load(PowerSourceProvider.class).findFirst().orElse(null);
+        } catch (ServiceConfigurationError | LinkageError e) {
+            return null;
+        }
     }
 
     /**
@@ -64,6 +126,29 @@ public final class PowerWindow {
         return windowPosition;
     }
 
+    /**
+     * Retourne le tableau circulaire des échantillons de puissance, sans copie : l'échantillon à la position p
+     * (absolue) se trouve à l'index (p &amp; RING_MASK), et les échantillons de la fenêtre placée à la position p
+     * se trouvent aux index contigus suivants (le tableau se prolonge au-delà de RING_MASK par une copie de son
+     * début). Le tableau ne doit pas être modifié.
+     *
+     * @return le tableau circulaire des échantillons de puissance.
+     */
+    int[] ringSamples() {
+        return ringTab;
+    }
+
+    /**
+     * Retourne la position (exclue) jusqu'à laquelle la fenêtre peut être placée en restant pleine et sans
+     * qu'un nouveau lot ne doive être lu : tous les échantillons des fenêtres placées avant cette position
+     * se trouvent déjà dans le tableau circulaire.
+     *
+     * @return la position (exclue) jusqu'à laquelle la fenêtre peut être placée sans lecture.
+     */
+    long loadedPositionsEnd() {
+        return Math.min(nextBatchPosition, totalNumberElements) - windowSize + 1;
+    }
+
     /**
      * Retourne vrai si et seulement si la fenêtre est pleine.
      *
@@ -83,17 +168,7 @@ public final class PowerWindow {
      */
     public int get(int i) {
         Objects.checkIndex(i, windowSize);
-
-        // On fait (windowPosition % LIMIT) pour savoir si on a atteint le début du deuxième tableau
-        int extractionPosition = (windowPosition % LIMIT) + i;
-
-        /* Si on chevauche sur le second tableau, le tableau (donc si la position d'extraction est supérieure
-         a la limite), le nouvel index d'extraction (donc dans le second tableau) sera l'ancien moins la limite */
-        if (extractionPosition < LIMIT) {
-            return mainTab[extractionPosition];
-        } else {
-            return secondaryTab[extractionPosition - LIMIT];
-        }
+        return ringTab[((int) windowPosition & RING_MASK) + i];
     }
 
     /**
@@ -102,38 +177,12 @@ public final class PowerWindow {
      * @throws IOException en cas d'erreur d'entrée/sortie.
      */
     public void advance() throws IOException {
-        windowPosition++; // On fait avancer la fenêtre d'une position
-
-    /*
-    --------------------------------------------------------------------------------------------------------------------
-      -- Juste avant d'atteindre le deuxième tableau, on lit des valeurs dans le second tableau
-    --------------------------------------------------------------------------------------------------------------------
-    */
-        /* On fait (windowPosition + windowSize - 1) pour lire des
-        valeurs dans le deuxième tableau juste avant de l'atteindre */
-        boolean startOfNewWindowIsAchieved = (windowPosition + windowSize - 1) % LIMIT == 0;
-        if (startOfNewWindowIsAchieved) {
-            totalNumberElements += powerComputer.readBatch(secondaryTab);
-        }
-
-
-    /*
-    --------------------------------------------------------------------------------------------------------------------
-      -- Quand la fenêtre est totalement dans le second tableau, on permute les 2 tableaux
-    --------------------------------------------------------------------------------------------------------------------
-    */
-        /* On fait (windowPosition % LIMIT) pour savoir si le début de la fenêtre est dans le second tableau
-        donc si la fenêtre est totalement dans le second tableau */
-        boolean windowIsFullyInSecondaryTab = (windowPosition % LIMIT) == 0;
-        if (windowIsFullyInSecondaryTab) {
-            int[] tempTab = secondaryTab.clone(); // On crée un tableau temporaire pour permuter les tableaux
-            secondaryTab = mainTab;
-            mainTab = tempTab;
-        }
+        advanceBy(1);
     }
 
     /**
      * Permet de faire avancer la fenêtre d'un nombre d'échantillons donné.
+     * Le coût ne dépend pas de l'offset, mis à part la lecture des lots que la fenêtre atteint.
      *
      * @param offset le nombre d'échantillons donné.
      * @throws IOException              en cas d'erreur d'entrée/sortie.
@@ -143,9 +192,33 @@ public final class PowerWindow {
         boolean offsetIsPositive = offset >= 0;
         Preconditions.checkArgument(offsetIsPositive);
 
-        // On applique la méthode "advance()" un nombre "offset" de fois.
-        for (int i = 0; i < offset; i++) {
-            advance();
+        windowPosition += offset;
+
+    /*
+    --------------------------------------------------------------------------------------------------------------------
+      -- Dès que le dernier échantillon de la fenêtre atteint le prochain lot, on lit ce lot dans la moitié
+         du tableau circulaire qui ne contient plus aucun échantillon de la fenêtre
+    --------------------------------------------------------------------------------------------------------------------
+    */
+        while (windowPosition + windowSize - 1 >= nextBatchPosition) {
+            totalNumberElements += readBatchAt((int) nextBatchPosition & RING_MASK);
+            nextBatchPosition += LIMIT;
+        }
+    }
+
+    /**
+     * Lit le prochain lot dans la moitié du tableau circulaire qui commence à l'index donné, puis, s'il s'agit
+     * de la première moitié, recopie son début après la fin du tableau circulaire.
+     *
+     * @param offset l'index de la moitié du tableau circulaire (0 ou LIMIT).
+     * @return le nombre d'échantillons de puissance lus.
+     * @throws IOException en cas d'erreur d'entrée/sortie.
+     */
+    private int readBatchAt(int offset) throws IOException {
+        int count = powerComputer.readBatch(ringTab, offset);
+        if (offset == 0) {
+            System.arraycopy(ringTab, 0, ringTab, RING_SIZE, windowSize);
         }
+        return count;
     }
 }
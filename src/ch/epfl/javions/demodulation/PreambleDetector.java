@@ -0,0 +1,154 @@
+package ch.epfl.javions.demodulation;
+
+import ch.epfl.javions.Preconditions;
+
+/**
+ * Classe qui représente un détecteur de préambules ADS-B travaillant directement sur le tableau circulaire
+ * d'une fenêtre de puissance. Un balayage parcourt toutes les positions disponibles d'un coup, en reportant
+ * d'une position à l'autre les sommes des pics déjà calculées, et place les positions des préambules trouvés
+ * dans un tableau de candidats, avant tout décodage de bits.
+ * <p>
+ * Une position p contient un préambule si la somme des pics (aux positions p, p + 10, p + 35 et p + 45) est
+ * strictement supérieure à la somme des pics précédente et à celle de la position suivante, et si elle est
+ * supérieure ou égale au double de la somme des vallées (aux positions p + 5, p + 15, p + 20, p + 25, p + 30
+ * et p + 40).
+ * <p>
+ * Le détecteur lit les échantillons qui suivent une position aux index contigus du tableau circulaire, ce que
+ * la fenêtre garantit sur toute sa taille : celle-ci doit donc être d'au moins 48 échantillons.
+ *
+ * @author Brian Jean Claud El Banna (356437)
+ * @author Nicolas Khamis (355598)
+ */
+final class PreambleDetector {
+    private static final int RING_MASK = PowerWindow.RING_MASK;
+    private final long[] candidates; // Les positions des préambules trouvés lors du dernier balayage
+    private int count; // Le nombre de préambules trouvés lors du dernier balayage
+    private long resumePosition; // La position à laquelle le prochain balayage doit commencer
+    private int resumeSumPrevious; // La somme des pics qui précède la position resumePosition
+
+    /**
+     * Constructeur de PreambleDetector qui retourne un détecteur pouvant trouver au plus le nombre donné
+     * de préambules par balayage.
+     *
+     * @param capacity le nombre maximal de préambules trouvés par balayage.
+     * @throws IllegalArgumentException si la capacité n'est pas strictement positive.
+     */
+    PreambleDetector(int capacity) {
+        boolean capacityIsStrictlyPositive = capacity > 0;
+        Preconditions.checkArgument(capacityIsStrictlyPositive);
+        candidates = new long[capacity];
+    }
+
+    /**
+     * Méthode qui cherche les préambules à partir de la position donnée, jusqu'à la dernière position où la fenêtre
+     * reste pleine sans lecture d'un nouveau lot, ou jusqu'à ce que le tableau des candidats soit plein.
+     *
+     * @param window      la fenêtre de puissance, dont les échantillons à partir de from sont disponibles.
+     * @param from        la position à laquelle le balayage commence.
+     * @param sumPrevious la somme des pics qui précède la position from (0 au début d'une recherche).
+     * @return le nombre de préambules trouvés, accessibles avec candidate(int).
+     */
+    int scan(PowerWindow window, long from, int sumPrevious) {
+        int[] ring = window.ringSamples();
+        long to = window.loadedPositionsEnd();
+
+        count = 0;
+        long position = from;
+        int previous = sumPrevious;
+
+        /* Les positions sont parcourues par segments d'index contigus, jusqu'à la fin du tableau circulaire,
+        puis depuis son début : les échantillons qui suivent un index se trouvent toujours juste après lui */
+        while (position < to && count < candidates.length) {
+            int startIndex = (int) position & RING_MASK;
+            int endIndex = startIndex + (int) Math.min(to - position, RING_MASK + 1 - startIndex);
+
+            int index = startIndex;
+            int current = peakSum(ring, index);
+            int next = peakSum(ring, index + 1);
+            for (; index < endIndex && count < candidates.length; index++) {
+                /* Les conditions sont combinées sans court-circuit et le candidat est toujours écrit (mais compté
+                seulement s'il contient un préambule) : la boucle ne contient ainsi aucun branchement imprévisible */
+                boolean preambleIsFound = (current > previous)
+                        & (current > next)
+                        & (current >= 2 * valleySum(ring, index));
+                candidates[count] = position + (index - startIndex);
+                count += preambleIsFound ? 1 : 0;
+
+                // On reporte les sommes des pics à la position suivante
+                previous = current;
+                current = next;
+                next = peakSum(ring, index + 2);
+            }
+            position += index - startIndex;
+        }
+
+        resumePosition = position;
+        resumeSumPrevious = previous;
+        return count;
+    }
+
+    /**
+     * Retourne la position du préambule d'index donné trouvé lors du dernier balayage (dans l'ordre croissant).
+     *
+     * @param index l'index du préambule, entre 0 (inclus) et le nombre de préambules trouvés (exclu).
+     * @return la position du préambule d'index donné.
+     */
+    long candidate(int index) {
+        return candidates[index];
+    }
+
+    /**
+     * Retourne la position à laquelle le balayage suivant doit commencer.
+     *
+     * @return la position qui suit la dernière position examinée lors du dernier balayage.
+     */
+    long resumePosition() {
+        return resumePosition;
+    }
+
+    /**
+     * Retourne la somme des pics qui précède la position retournée par resumePosition().
+     *
+     * @return la somme des pics de la dernière position examinée lors du dernier balayage.
+     */
+    int resumeSumPrevious() {
+        return resumeSumPrevious;
+    }
+
+    /**
+     * Méthode qui teste si la position donnée contient un préambule, la somme des pics précédente étant donnée.
+     *
+     * @param window      la fenêtre de puissance.
+     * @param position    la position à tester, pour laquelle la fenêtre est pleine.
+     * @param sumPrevious la somme des pics précédente.
+     * @return vrai si et seulement si la position donnée contient un préambule.
+     */
+    static boolean isPreamble(PowerWindow window, long position, int sumPrevious) {
+        int[] ring = window.ringSamples();
+        int index = (int) position & RING_MASK;
+        int sumPics = peakSum(ring, index);
+        boolean sumPicsIsStrictlyBiggerThanSurroundingSums = (sumPics > sumPrevious)
+                && (sumPics > peakSum(ring, index + 1));
+        return sumPicsIsStrictlyBiggerThanSurroundingSums && sumPics >= 2 * valleySum(ring, index);
+    }
+
+    /**
+     * Retourne la somme des pics à la position donnée.
+     *
+     * @param window   la fenêtre de puissance.
+     * @param position la position, pour laquelle la fenêtre est pleine.
+     * @return la somme des pics à la position donnée.
+     */
+    static int peakSum(PowerWindow window, long position) {
+        return peakSum(window.ringSamples(), (int) position & RING_MASK);
+    }
+
+    private static int peakSum(int[] ring, int index) {
+        return ring[index] + ring[index + 10] + ring[index + 35] + ring[index + 45];
+    }
+
+    private static int valleySum(int[] ring, int index) {
+        return ring[index + 5] + ring[index + 15] + ring[index + 20]
+                + ring[index + 25] + ring[index + 30] + ring[index + 40];
+    }
+}
@@ -1,10 +1,10 @@
 package ch.epfl.javions.demodulation;
 
-import ch.epfl.javions.ByteString;
 import ch.epfl.javions.Preconditions;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.Objects;
 
 /**
@@ -17,7 +17,8 @@ public final class SamplesDecoder {
     private final static int BIAIS = 2048; // La valeur du biais
     private final int batchSize;
     private final int byteTableSize; // La taille du tableau byteTable
-    private final InputStream stream; // Le flot des données
+    private final InputStream stream; // Le flot des données (null si les échantillons sont projetés en mémoire)
+    private final MappedSamplesFile samplesFile; // Le fichier projeté (null si les échantillons viennent d'un flot)
     private final byte[] byteTable; // Le tableau d'octets issus des échantillons
 
     /**
@@ -45,11 +46,32 @@ public final class SamplesDecoder {
     */
         this.batchSize = batchSize;
         this.stream = stream;
+        this.samplesFile = null;
         this.byteTableSize = 2 * batchSize;
         this.byteTable = new byte[byteTableSize];
         // la taille du tableau est 2 * batchSize car on a 2 octets par échantillon
     }
 
+    /**
+     * Constructeur de SamplesDecoder qui lit les octets directement depuis le fichier projeté en mémoire donné,
+     * sans les copier dans un tableau intermédiaire.
+     *
+     * @param samplesFile fichier d'échantillons projeté en mémoire.
+     * @param batchSize   taille des échantillons.
+     * @throws IllegalArgumentException si la taille des lots n'est pas strictement positive.
+     * @throws NullPointerException     si le fichier est nul.
+     */
+    public SamplesDecoder(MappedSamplesFile samplesFile, int batchSize) {
+        Preconditions.checkArgument(batchSize > 0);
+        Objects.requireNonNull(samplesFile);
+
+        this.batchSize = batchSize;
+        this.stream = null;
+        this.samplesFile = samplesFile;
+        this.byteTableSize = 2 * batchSize;
+        this.byteTable = null;
+    }
+
     /**
      * Méthode qui lit depuis le flot le nombre d'octets correspondant à un lot, puis convertit
      * ces octets en échantillons signés, avant de les placer dans le tableau "batch".
@@ -75,18 +97,20 @@ public final class SamplesDecoder {
       -- Transformation des octets grâce à la technique little-endian.
     --------------------------------------------------------------------------------------------------------------------
     */
+        if (samplesFile != null) {
+            return readMappedBatch(batch);
+        }
+
         int batchIndex = 0; // L'index des des éléments du tableau batch
         int totalElements = stream.readNBytes(byteTable, 0, byteTableSize);
-        // On crée une instance de ByteString pour utiliser la méthode byteAt
-        ByteString byteString = new ByteString(byteTable);
 
         for (int byteTableIndex = 0; byteTableIndex < totalElements; byteTableIndex += 2) {
             /* Le tableau byteTable a pour taille batchSize * 2 mais le tableau batch a pour taille batchSize.
              C'est pour cela qu'on incrémente l'index des éléments du tableau byteTable de 2
              et l'index des éléments du tableau batch de 1*/
 
-            int lsbByte = byteString.byteAt(byteTableIndex + 1); // Les 8 bits de poids faible
-            int msbByte = byteString.byteAt(byteTableIndex); // Les 8 bits de poids fort
+            int lsbByte = Byte.toUnsignedInt(byteTable[byteTableIndex + 1]); // Les 8 bits de poids faible
+            int msbByte = Byte.toUnsignedInt(byteTable[byteTableIndex]); // Les 8 bits de poids fort
             // On décale les 8 bits de poids faible à comme indiquée par la technique little-endian
             int lsbByteShifted = lsbByte << Byte.SIZE;
 
@@ -98,4 +122,24 @@ public final class SamplesDecoder {
 
         return totalElements / Short.BYTES;
     }
+
+    /**
+     * Méthode qui convertit les octets du prochain lot directement depuis le fichier projeté en mémoire.
+     *
+     * @param batch tableau de valeurs short dans lequel on place les échantillons.
+     * @return le nombre d'éléments effectivement convertis.
+     * @throws IOException en cas d'erreur d'entrée/sortie lors de la projection.
+     */
+    private int readMappedBatch(short[] batch) throws IOException {
+        // La vue est ordonnée en little-endian, chaque échantillon est donc lu en une seule fois
+        ByteBuffer bytes = samplesFile.nextBytes(byteTableSize);
+        int totalElements = bytes.limit();
+
+        for (int batchIndex = 0; batchIndex < totalElements / Short.BYTES; batchIndex++) {
+            int sample = Short.toUnsignedInt(bytes.getShort(batchIndex * Short.BYTES));
+            batch[batchIndex] = (short) (sample - BIAIS);
+        }
+
+        return totalElements / Short.BYTES;
+    }
 }
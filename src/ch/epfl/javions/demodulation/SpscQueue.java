@@ -0,0 +1,139 @@
+package ch.epfl.javions.demodulation;
+
+import ch.epfl.javions.Preconditions;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Classe qui représente une file bornée, sans verrou, entre un unique producteur et un unique consommateur
+ * (chacun étant un fil d'exécution différent). Elle sert à échanger des tampons préalloués entre les étages
+ * du démodulateur. Un fil qui doit attendre commence par boucler activement, puis se met en pause.
+ *
+ * @param <E> le type des éléments de la file.
+ * @author Brian Jean Claud El Banna (356437)
+ * @author Nicolas Khamis (355598)
+ */
+final class SpscQueue<E> {
+    private static final int SPIN_LIMIT = 1 << 10; // Le nombre d'essais actifs avant de se mettre en pause
+    // La durée maximale d'une pause, qui borne l'effet d'un réveil manqué
+    private static final long PARK_NS = TimeUnit.MICROSECONDS.toNanos(100);
+    private final Object[] elements;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong(); // Le nombre d'éléments retirés (par le consommateur)
+    private final AtomicLong tail = new AtomicLong(); // Le nombre d'éléments ajoutés (par le producteur)
+    private volatile Thread parkedProducer;
+    private volatile Thread parkedConsumer;
+
+    /**
+     * Constructeur de SpscQueue qui retourne une file vide de capacité donnée.
+     *
+     * @param capacity la capacité de la file, une puissance de 2.
+     * @throws IllegalArgumentException si la capacité n'est pas une puissance de 2 strictement positive.
+     */
+    SpscQueue(int capacity) {
+        boolean capacityIsAPowerOf2 = capacity > 0 && Integer.bitCount(capacity) == 1;
+        Preconditions.checkArgument(capacityIsAPowerOf2);
+        elements = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Retourne le nombre d'éléments actuellement dans la file (une estimation, si les fils la modifient).
+     *
+     * @return le nombre d'éléments actuellement dans la file.
+     */
+    int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    /**
+     * Ajoute l'élément donné à la file, s'il y a de la place (à n'appeler que depuis le producteur).
+     *
+     * @param element l'élément à ajouter.
+     * @return vrai si et seulement si l'élément a été ajouté.
+     */
+    boolean offer(E element) {
+        long t = tail.get();
+        if (t - head.get() == elements.length) {
+            return false;
+        }
+        elements[(int) t & mask] = element;
+        tail.set(t + 1); // Publie l'élément au consommateur
+        LockSupport.unpark(parkedConsumer);
+        return true;
+    }
+
+    /**
+     * Retire le prochain élément de la file, s'il y en a un (à n'appeler que depuis le consommateur).
+     *
+     * @return le prochain élément, ou null si la file est vide.
+     */
+    @SuppressWarnings("unchecked")
+    E poll() {
+        long h = head.get();
+        if (h == tail.get()) {
+            return null;
+        }
+        int index = (int) h & mask;
+        E element = (E) elements[index];
+        elements[index] = null;
+        head.set(h + 1); // Rend la place au producteur
+        LockSupport.unpark(parkedProducer);
+        return element;
+    }
+
+    /**
+     * Ajoute l'élément donné à la file, en attendant qu'il y ait de la place.
+     *
+     * @param element l'élément à ajouter.
+     * @throws InterruptedException si le fil est interrompu pendant l'attente.
+     */
+    void put(E element) throws InterruptedException {
+        for (int spins = 0; !offer(element); spins++) {
+            if (spins < SPIN_LIMIT) {
+                Thread.onSpinWait();
+            } else {
+                // On s'annonce avant de réessayer, pour que le consommateur ne puisse pas manquer le réveil
+                parkedProducer = Thread.currentThread();
+                if (offer(element)) {
+                    break;
+                }
+                park();
+            }
+        }
+        parkedProducer = null;
+    }
+
+    /**
+     * Retire le prochain élément de la file, en attendant qu'il y en ait un.
+     *
+     * @return le prochain élément de la file.
+     * @throws InterruptedException si le fil est interrompu pendant l'attente.
+     */
+    E take() throws InterruptedException {
+        E element;
+        for (int spins = 0; (element = poll()) == null; spins++) {
+            if (spins < SPIN_LIMIT) {
+                Thread.onSpinWait();
+            } else {
+                // On s'annonce avant de réessayer, pour que le producteur ne puisse pas manquer le réveil
+                parkedConsumer = Thread.currentThread();
+                if ((element = poll()) != null) {
+                    break;
+                }
+                park();
+            }
+        }
+        parkedConsumer = null;
+        return element;
+    }
+
+    private static void park() throws InterruptedException {
+        LockSupport.parkNanos(PARK_NS);
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+    }
+}
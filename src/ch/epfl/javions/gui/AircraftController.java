@@ -295,29 +295,31 @@ public final class AircraftController {
         final SVGPath aircraft = new SVGPath();
         // On ajoute la classe de style aircraft a l'icône
         aircraft.getStyleClass().add("aircraft");
-        AircraftData aircraftData = aircraftState.getAircraftData();
 
 
     /*
     --------------------------------------------------------------------------------------------------------------------
-      -- Dessin de l'icône.
+      -- Dessin de l'icône, qui change lorsque les données de l'aéronef arrivent de la base de données.
     --------------------------------------------------------------------------------------------------------------------
     */
-        AircraftTypeDesignator aircraftTypeDesignator = aircraftData != null ?
-                aircraftData.typeDesignator() :
-                EMPTY_AIRCRAFT_TYPE_DESIGNATOR;
-        AircraftDescription aircraftDescription = aircraftData != null ?
-                aircraftData.description() :
-                EMPTY_AIRCRAFT_DESCRIPTION;
-        WakeTurbulenceCategory wakeTurbulenceCategory = aircraftData != null ?
-                aircraftData.wakeTurbulenceCategory() :
-                WakeTurbulenceCategory.UNKNOWN;
-
-        ObservableValue<AircraftIcon> aircraftIcon = aircraftState.categoryProperty().map(c -> AircraftIcon.iconFor(
-                aircraftTypeDesignator,
-                aircraftDescription,
-                c.intValue(),
-                wakeTurbulenceCategory));
+        ObservableValue<AircraftIcon> aircraftIcon = Bindings.createObjectBinding(() -> {
+                    AircraftData aircraftData = aircraftState.getAircraftData();
+                    AircraftTypeDesignator aircraftTypeDesignator = aircraftData != null ?
+                            aircraftData.typeDesignator() :
+                            EMPTY_AIRCRAFT_TYPE_DESIGNATOR;
+                    AircraftDescription aircraftDescription = aircraftData != null ?
+                            aircraftData.description() :
+                            EMPTY_AIRCRAFT_DESCRIPTION;
+                    WakeTurbulenceCategory wakeTurbulenceCategory = aircraftData != null ?
+                            aircraftData.wakeTurbulenceCategory() :
+                            WakeTurbulenceCategory.UNKNOWN;
+                    return AircraftIcon.iconFor(aircraftTypeDesignator,
+                            aircraftDescription,
+                            aircraftState.getCategory(),
+                            wakeTurbulenceCategory);
+                },
+                aircraftState.categoryProperty(),
+                aircraftState.aircraftDataProperty());
 
         aircraft.contentProperty().bind(aircraftIcon.map(AircraftIcon::svgPath));
 
@@ -328,15 +330,14 @@ public final class AircraftController {
     --------------------------------------------------------------------------------------------------------------------
     */
         /* Si l'aéronef peut tourner, on lie sa rotation au cap de l'aeronef en degré.
-        Sinon, la rotation de l'aéronef est de 0, c'est a dire qu'il reste sur sa meme trajectoire */
-        if (aircraftIcon.getValue().canRotate()) {
-            // On lie la rotation de l'aéronef a l'angle en degré
-            aircraft.rotateProperty().bind(Bindings.createDoubleBinding(() ->
-                            Units.convertTo(aircraftState.getTrackOrHeading(), Units.Angle.DEGREE),
-                    aircraftState.trackOrHeadingProperty()));
-        } else {
-            aircraft.setRotate(NO_ROTATION_ANGLE);
-        }
+        Sinon, la rotation de l'aéronef est de 0, c'est a dire qu'il reste sur sa meme trajectoire.
+        L'icône pouvant changer (à l'arrivée des données de l'aéronef), la rotation dépend aussi d'elle */
+        aircraft.rotateProperty().bind(Bindings.createDoubleBinding(() ->
+                        aircraftIcon.getValue().canRotate()
+                                ? Units.convertTo(aircraftState.getTrackOrHeading(), Units.Angle.DEGREE)
+                                : NO_ROTATION_ANGLE,
+                aircraftState.trackOrHeadingProperty(),
+                aircraftIcon));
 
 
     /*
@@ -375,7 +376,8 @@ public final class AircraftController {
         text.textProperty().bind
                 (Bindings.createStringBinding(() -> labelText(aircraftState),
                         aircraftState.altitudeProperty(),
-                        aircraftState.velocityProperty()));
+                        aircraftState.velocityProperty(),
+                        aircraftState.aircraftDataProperty()));
 
         final Group label = new Group(background, text); // Groupe du texte + arrière-plan
         label.getStyleClass().add("label");
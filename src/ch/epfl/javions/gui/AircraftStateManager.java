@@ -1,16 +1,23 @@
 package ch.epfl.javions.gui;
 
+import ch.epfl.javions.GeoPos;
+import ch.epfl.javions.Preconditions;
 import ch.epfl.javions.Units;
 import ch.epfl.javions.adsb.AircraftStateAccumulator;
+import ch.epfl.javions.adsb.CallSign;
 import ch.epfl.javions.adsb.Message;
-import ch.epfl.javions.aircraft.AircraftData;
+import ch.epfl.javions.adsb.MessageParser;
+import ch.epfl.javions.adsb.MessageVisitor;
+import ch.epfl.javions.adsb.RawMessage;
 import ch.epfl.javions.aircraft.AircraftDatabase;
 import ch.epfl.javions.aircraft.IcaoAddress;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableSet;
 
-import java.io.IOException;
-import java.util.HashMap;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
 
@@ -19,23 +26,44 @@ import static ch.epfl.javions.Units.Time.NANOSECONDS;
 
 /**
  * Classe qui a pour but de garder à jour les états d'un ensemble d'aéronefs en fonction des messages reçus d'eux
+ * <p>
+ * Les messages sont traités par un fil dédié (updateWithMessage, updateWithRawMessage, updateWithFrame et purge),
+ * qui ne modifie que des états simples, non observables. Le fil JavaFX publie périodiquement (publish, p. ex. à chaque
+ * image) les modifications de ces états dans les états observables : chaque propriété change au plus une fois par
+ * publication, et une publication ne dure pas plus longtemps que le budget qui lui est donné (à la publication d'un
+ * état près), quel que soit le débit des messages, les états restants étant publiés lors de la suivante.
  *
  * @author Brian Jean Claud El Banna (356437)
  * @author Nicolas Khamis (355598)
  */
 public final class AircraftStateManager {
+    private static final int PUBLISH_BATCH_SIZE = 64; // Le nombre maximal d'états copiés à chaque prise du verrou
     private final AircraftDatabase aircraftDatabase;
+    private final GeoPos receiverPosition; // La position du récepteur, ou null si elle est inconnue
+    private final double receiverRange; // La portée du récepteur, en mètres
+    private final int maxTrajectoryLength; // Le nombre maximal de positions de la trajectoire de chaque aéronef
 
     // Ensemble des états des aéronefs dont la position est connue
     private final ObservableSet<ObservableAircraftState> statesSet = FXCollections.observableSet();
 
-    // Table associant un accumulateur d'état d'aéronef à l'ICAO de tout aéronef dont un message a été reçu récemment
-    private final Map<IcaoAddress, AircraftStateAccumulator<ObservableAircraftState>> table = new HashMap<>();
-
-    // Table associant l'horodatage de l'aéronef à l'ICAO de tout aéronef dont un message a été reçu récemment
-    private final Map<IcaoAddress, Long> timeStampsTable = new HashMap<>();
+    /* Table associant un accumulateur d'état d'aéronef à l'ICAO de tout aéronef dont un message a été reçu récemment.
+    Elle est dans l'ordre des derniers accès, et chaque message accède à l'accumulateur de son aéronef : c'est donc
+    une file d'expiration, dont la tête est l'aéronef dont le dernier message est le plus ancien */
+    private final Map<IcaoAddress, AircraftStateAccumulator<PendingAircraftState>> table =
+            new LinkedHashMap<>(16, 0.75f, true);
     private long lastTimeStampNs;
 
+    /* La file des états modifiés depuis leur dernière publication, dont le verrou protège aussi les états simples
+    (modifiés par le fil de traitement des messages, et copiés par le fil JavaFX) */
+    private final ArrayDeque<PendingAircraftState> pendingStates = new ArrayDeque<>();
+    /* Le dernier lot d'états copiés, qui sont appliqués aux états observables par le fil JavaFX de l'index
+    nextPublishedIndex (inclus) à publishedStatesCount (exclu) : ceux qui ne l'ont pas été lorsque le budget d'une
+    publication est épuisé le sont au début de la suivante, avant tout nouveau lot */
+    private final PendingAircraftState[] publishedStates = new PendingAircraftState[PUBLISH_BATCH_SIZE];
+    private int nextPublishedIndex;
+    private int publishedStatesCount;
+    private final StateUpdater stateUpdater = new StateUpdater(); // Le visiteur réutilisé pour chaque message brut
+
     /**
      * Constructuer de la classe AircraftStateManager.
      *
@@ -43,7 +71,46 @@ public final class AircraftStateManager {
      * @throws NullPointerException si aircraftDataBase est null.
      */
     public AircraftStateManager(AircraftDatabase aircraftDataBase) {
+        this(aircraftDataBase, null);
+    }
+
+    /**
+     * Constructeur de la classe AircraftStateManager, qui utilise la position du récepteur donnée pour décoder
+     * la position des aéronefs dès leur premier message de position.
+     *
+     * @param aircraftDataBase la base de données des aéronefs utilisée pour la gestion des états.
+     * @param receiverPosition la position du récepteur, ou null si elle est inconnue.
+     * @throws NullPointerException si aircraftDataBase est null.
+     */
+    public AircraftStateManager(AircraftDatabase aircraftDataBase, GeoPos receiverPosition) {
+        this(aircraftDataBase, receiverPosition, AircraftStateAccumulator.DEFAULT_RECEIVER_RANGE,
+                ObservableAircraftState.DEFAULT_MAX_TRAJECTORY_LENGTH);
+    }
+
+    /**
+     * Constructeur de la classe AircraftStateManager, qui n'accepte que les positions décodées relativement au
+     * récepteur situées à moins de sa portée donnée, et borne la longueur de la trajectoire de chaque aéronef.
+     *
+     * @param aircraftDataBase    la base de données des aéronefs utilisée pour la gestion des états.
+     * @param receiverPosition    la position du récepteur, ou null si elle est inconnue.
+     * @param receiverRange       la portée du récepteur, en mètres.
+     * @param maxTrajectoryLength le nombre maximal de positions de la trajectoire de chaque aéronef.
+     * @throws NullPointerException     si aircraftDataBase est null.
+     * @throws IllegalArgumentException si la portée n'est pas strictement positive ou n'est pas strictement inférieure
+     *                                  à AircraftStateAccumulator.MAX_RECEIVER_RANGE, ou si la longueur maximale est
+     *                                  inférieure à 4.
+     */
+    public AircraftStateManager(AircraftDatabase aircraftDataBase, GeoPos receiverPosition, double receiverRange,
+                                int maxTrajectoryLength) {
+        boolean receiverRangeIsValid = receiverRange > 0
+                && receiverRange < AircraftStateAccumulator.MAX_RECEIVER_RANGE;
+        boolean maxTrajectoryLengthIsValid = maxTrajectoryLength >= 4;
+        Preconditions.checkArgument(receiverRangeIsValid);
+        Preconditions.checkArgument(maxTrajectoryLengthIsValid);
         this.aircraftDatabase = Objects.requireNonNull(aircraftDataBase);
+        this.receiverPosition = receiverPosition;
+        this.receiverRange = receiverRange;
+        this.maxTrajectoryLength = maxTrajectoryLength;
     }
 
     /**
@@ -58,56 +125,211 @@ public final class AircraftStateManager {
     }
 
     /**
-     * Méthode qui met à jour l'état de l'aéronef correspondant.
+     * Méthode qui met à jour l'état de l'aéronef correspondant. Les modifications sont visibles dans son état
+     * observable après la prochaine publication.
      *
      * @param message le message envoyé.
-     * @throws IOException si une erreur s'est produite pendant l'écriture des données.
      */
-    public void updateWithMessage(Message message) throws IOException {
-        lastTimeStampNs = message.timeStampNs();
-        // Validation du ICAO
-        IcaoAddress icao = Objects.requireNonNull(message.icaoAddress());
-        // Les données de l'aéronef
-        AircraftData aircraftData = aircraftDatabase.get(icao);
+    public void updateWithMessage(Message message) {
+        Objects.requireNonNull(message);
+        synchronized (pendingStates) {
+            accumulatorFor(message.timeStampNs(), message.icaoAddress()).update(message);
+            stateUpdated(message.icaoAddress());
+        }
+    }
 
-        // Création de l'état lorsque le message est le premier recu de cet aéronef
-        if (!(table.containsKey(icao))) {
-            ObservableAircraftState observableAircraftState = new ObservableAircraftState(icao, aircraftData);
-            table.put(icao, new AircraftStateAccumulator<>(observableAircraftState));
-            table.get(icao).update(Objects.requireNonNull(message));
+    /**
+     * Méthode qui analyse le message brut donné et met à jour l'état de l'aéronef correspondant, sans allouer
+     * de message analysé. Les modifications sont visibles dans son état observable après la prochaine publication.
+     *
+     * @param rawMessage le message brut reçu.
+     * @return vrai si et seulement si le message a pu être analysé, et l'état mis à jour.
+     */
+    public boolean updateWithRawMessage(RawMessage rawMessage) {
+        return updateWithFrame(rawMessage.timeStampNs(), rawMessage.high(), rawMessage.low());
+    }
 
+    /**
+     * Méthode qui analyse le message brut d'attributs donnés (p. ex. retiré de la file des messages) et met à jour
+     * l'état de l'aéronef correspondant, sans allouer ni message brut, ni message analysé. Les modifications sont
+     * visibles dans son état observable après la prochaine publication.
+     *
+     * @param timeStampNs horodatage du message, exprimé en nanosecondes.
+     * @param high        les 48 premiers bits du message.
+     * @param low         les 64 derniers bits du message.
+     * @return vrai si et seulement si le message a pu être analysé, et l'état mis à jour.
+     */
+    public boolean updateWithFrame(long timeStampNs, long high, long low) {
+        synchronized (pendingStates) {
+            return MessageParser.parse(timeStampNs, high, low, stateUpdater);
         }
+    }
 
-        // Mise a jour de l'état de l'aéronef
-        else {
-            table.get(icao).update(Objects.requireNonNull(message));
+    /**
+     * Méthode qui publie, dans les états observables et l'ensemble des états, les modifications des états des
+     * aéronefs faites depuis la dernière publication. Elle s'arrête dès que le budget donné est épuisé, le temps
+     * écoulé étant vérifié après chaque état publié (au moins un état est publié, s'il y en a) : les états qui
+     * n'ont pas été publiés le seront lors de la publication suivante (avec les modifications faites entre temps).
+     * Doit être appelée sur le fil JavaFX.
+     *
+     * @param budgetNs la durée maximale de la publication, en nanosecondes.
+     * @return le nombre d'états publiés.
+     */
+    public int publish(long budgetNs) {
+        long startTime = System.nanoTime();
+        int publishedCount = 0;
+        while (true) {
+            // Copie, sous le verrou, d'un nouveau lot d'états modifiés, lorsque le précédent a été entièrement appliqué
+            if (nextPublishedIndex == publishedStatesCount) {
+                nextPublishedIndex = 0;
+                publishedStatesCount = 0;
+                synchronized (pendingStates) {
+                    while (publishedStatesCount < PUBLISH_BATCH_SIZE && !pendingStates.isEmpty()) {
+                        PendingAircraftState state = pendingStates.poll();
+                        state.swap();
+                        publishedStates[publishedStatesCount++] = state;
+                    }
+                }
+                if (publishedStatesCount == 0) {
+                    return publishedCount;
+                }
+            }
+
+            // Application des copies aux états observables, hors du verrou, tant que le budget n'est pas épuisé
+            while (nextPublishedIndex < publishedStatesCount) {
+                if (publishedCount > 0 && System.nanoTime() - startTime >= budgetNs) {
+                    return publishedCount;
+                }
+                publishedStates[nextPublishedIndex].publish(statesSet);
+                publishedStates[nextPublishedIndex++] = null;
+                publishedCount++;
+            }
         }
+    }
 
-        // Ajout des états des aéronefs dont la position est connue à l'ensemble des états
-        if (Objects.nonNull(table.get(
-                message.icaoAddress()).stateSetter().getPosition())) {
-            statesSet.add(table.get(icao).stateSetter());
+    /**
+     * Retourne l'accumulateur de l'aéronef d'adresse donnée, qui est créé lorsque le message est le premier reçu de
+     * cet aéronef.
+     */
+    private AircraftStateAccumulator<PendingAircraftState> accumulatorFor(long timeStampNs, IcaoAddress icao) {
+        lastTimeStampNs = timeStampNs;
+        // Validation du ICAO
+        Objects.requireNonNull(icao);
+
+        /* Création de l'état lorsque le message est le premier recu de cet aéronef : c'est le seul moment où ses
+        données sont cherchées dans la base de données (qui garde les résultats dans son cache). La recherche se fait
+        en arrière-plan, et l'état, d'abord sans données, les reçoit sur le fil JavaFX lorsqu'elle se termine */
+        AircraftStateAccumulator<PendingAircraftState> accumulator = table.get(icao);
+        if (accumulator == null) {
+            ObservableAircraftState observableAircraftState = new ObservableAircraftState(icao, null,
+                    maxTrajectoryLength);
+            aircraftDatabase.getAsync(icao)
+                    .thenAcceptAsync(observableAircraftState::setAircraftData, Platform::runLater)
+                    .exceptionally(e -> {
+                        System.err.println("Erreur lors de la recherche de l'aéronef " + icao.string() + " : "
+                                + e.getMessage());
+                        return null;
+                    });
+            accumulator = new AircraftStateAccumulator<>(new PendingAircraftState(observableAircraftState),
+                    receiverPosition, receiverRange);
+            table.put(icao, accumulator);
         }
-        timeStampsTable.put(icao, lastTimeStampNs);
-        table.get(icao).stateSetter().updateTrajectory();
+        return accumulator;
     }
 
     /**
-     * Méthode qui supprime de l'ensemble des états observables tous ceux qui correspondent à des aéronefs
-     * dont aucun message n'a été reçu dans la minute précédant la réception du dernier message.
+     * Termine la mise à jour de l'état de l'aéronef d'adresse donnée, en le plaçant dans la file des états à publier.
+     */
+    private void stateUpdated(IcaoAddress icao) {
+        enqueue(table.get(icao).stateSetter());
+    }
+
+    /**
+     * Place l'état donné dans la file des états à publier, s'il n'y est pas déjà.
+     */
+    private void enqueue(PendingAircraftState state) {
+        if (state.markPending()) {
+            pendingStates.add(state);
+        }
+    }
+
+    /**
+     * Méthode qui supprime de l'ensemble des états observables (lors de la prochaine publication) tous ceux qui
+     * correspondent à des aéronefs dont aucun message n'a été reçu dans la minute précédant la réception du dernier
+     * message, et qui oublie ces aéronefs (leur accumulateur, leurs derniers messages de position et leur
+     * trajectoire). Seuls les aéronefs expirés sont parcourus, depuis la tête de la file d'expiration : le coût est
+     * constant par aéronef supprimé.
      */
     public void purge() {
-        for (Map.Entry<IcaoAddress, Long> entry : timeStampsTable.entrySet()) {
-            IcaoAddress key = entry.getKey();
-            Long value = entry.getValue();
-
-            /* Si aucun message n'a été reçu dans la minute précédant la réception du dernier message passé
-             à updateWithMessage par l'aeronef, on supprime de l'ensemble des etats observables celui
-             qui lui correspond */
-            if ((Math.abs(value - lastTimeStampNs) > Units.convertTo(MINUTE, NANOSECONDS))) {
-                AircraftStateAccumulator<ObservableAircraftState> accumulator = table.get(key);
-                statesSet.remove(accumulator.stateSetter());
+        synchronized (pendingStates) {
+            Iterator<AircraftStateAccumulator<PendingAircraftState>> accumulators = table.values().iterator();
+            while (accumulators.hasNext()) {
+                PendingAircraftState state = accumulators.next().stateSetter();
+
+                /* Si aucun message n'a été reçu dans la minute précédant la réception du dernier message passé
+                 à updateWithMessage par l'aeronef, on supprime de l'ensemble des etats observables celui
+                 qui lui correspond. Sinon, aucun des aéronefs suivants de la file n'est expiré */
+                if ((Math.abs(state.lastMessageTimeStampNs() - lastTimeStampNs)
+                        <= Units.convertTo(MINUTE, NANOSECONDS))) {
+                    break;
+                }
+                state.remove();
+                enqueue(state);
+                accumulators.remove();
             }
         }
     }
+
+    /**
+     * Retourne le nombre d'aéronefs dont l'état est gardé, c.-à-d. dont un message a été reçu récemment.
+     *
+     * @return le nombre d'aéronefs suivis, y compris ceux dont la position est inconnue.
+     */
+    public int trackedAircraftCount() {
+        synchronized (pendingStates) {
+            return table.size();
+        }
+    }
+
+    /**
+     * Retourne la taille (estimée) de la mémoire occupée par les trajectoires des aéronefs dont la position est
+     * connue. Doit être appelée sur le fil JavaFX.
+     *
+     * @return le nombre d'octets occupés par les trajectoires.
+     */
+    public long trajectoryMemoryBytes() {
+        long memoryBytes = 0;
+        for (ObservableAircraftState state : statesSet) {
+            memoryBytes += state.trajectoryMemoryBytes();
+        }
+        return memoryBytes;
+    }
+
+    /**
+     * Visiteur qui transmet les attributs d'un message analysé à l'accumulateur de l'aéronef qui l'a envoyé.
+     */
+    private final class StateUpdater implements MessageVisitor {
+        @Override
+        public void visitIdentification(long timeStampNs, IcaoAddress icaoAddress, int category,
+                                        CallSign callSign) {
+            accumulatorFor(timeStampNs, icaoAddress).visitIdentification(timeStampNs, icaoAddress, category, callSign);
+            stateUpdated(icaoAddress);
+        }
+
+        @Override
+        public void visitAirbornePosition(long timeStampNs, IcaoAddress icaoAddress, double altitude, int parity,
+                                          double x, double y) {
+            accumulatorFor(timeStampNs, icaoAddress).visitAirbornePosition(timeStampNs, icaoAddress, altitude, parity,
+                    x, y);
+            stateUpdated(icaoAddress);
+        }
+
+        @Override
+        public void visitAirborneVelocity(long timeStampNs, IcaoAddress icaoAddress, double speed,
+                                          double trackOrHeading) {
+            accumulatorFor(timeStampNs, icaoAddress).visitAirborneVelocity(timeStampNs, icaoAddress, speed,
+                    trackOrHeading);
+            stateUpdated(icaoAddress);
+        }
+    }
 }
@@ -10,6 +10,7 @@ import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.ReadOnlyDoubleProperty;
 import javafx.beans.property.ReadOnlyObjectProperty;
 import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.value.ObservableValue;
 import javafx.collections.ObservableSet;
 import javafx.collections.SetChangeListener;
 import javafx.scene.control.TableColumn;
@@ -203,10 +204,10 @@ public final class AircraftTableController {
      */
     private <S> TableColumn<S, String> createTextColumn(String title,
                                                         Function<TableColumn.CellDataFeatures<S, String>,
-                                                                String> propertyExtractor,
+                                                                ObservableValue<String>> propertyExtractor,
                                                         double width) {
         TableColumn<S, String> column = new TableColumn<>(title);
-        column.setCellValueFactory(cellData -> new ReadOnlyObjectWrapper<>(propertyExtractor.apply(cellData)));
+        column.setCellValueFactory(propertyExtractor::apply);
         column.setPrefWidth(width);
         column.setResizable(false);
         return column;
@@ -355,11 +356,11 @@ public final class AircraftTableController {
      *
      * @param features Les fonctionnalités des données de la cellule de la colonne
      * @param fetcher  La fonction à appliquer pour extraire les données
-     * @return La donnée extraite sous forme de chaîne de caractères
+     * @return La donnée extraite sous forme de chaîne de caractères (constante)
      */
-    private String fetchDirectly(TableColumn.CellDataFeatures<ObservableAircraftState, String> features,
-                                 Function<ObservableAircraftState, String> fetcher) {
-        return fetcher.apply(features.getValue());
+    private ObservableValue<String> fetchDirectly(TableColumn.CellDataFeatures<ObservableAircraftState, String> features,
+                                                  Function<ObservableAircraftState, String> fetcher) {
+        return new ReadOnlyObjectWrapper<>(fetcher.apply(features.getValue()));
     }
 
     // Les méthodes suivantes utilisent fetchDirectly pour extraire différentes données
@@ -370,7 +371,7 @@ public final class AircraftTableController {
      * @param features Les fonctionnalités des données de la cellule de la colonne.
      * @return L'adresse ICAO de l'aéronef.
      */
-    private String getIcaoString(TableColumn.CellDataFeatures<ObservableAircraftState, String> features) {
+    private ObservableValue<String> getIcaoString(TableColumn.CellDataFeatures<ObservableAircraftState, String> features) {
         return fetchDirectly(features, oas -> oas.getIcaoAddress().string());
     }
 
@@ -380,7 +381,7 @@ public final class AircraftTableController {
      * @param features Les fonctionnalités des données de la cellule de la colonne.
      * @return L'indicatif d'appel de l'aéronef.
      */
-    private String getCallSignString(TableColumn.CellDataFeatures<ObservableAircraftState, String> features) {
+    private ObservableValue<String> getCallSignString(TableColumn.CellDataFeatures<ObservableAircraftState, String> features) {
         return fetchDirectly(features, oas -> oas.callSignProperty().map(CallSign::string).getValue());
     }
 
@@ -390,13 +391,13 @@ public final class AircraftTableController {
      *
      * @param features Les fonctionnalités des données de la cellule de la colonne
      * @param fetcher  La fonction à appliquer pour extraire les données
-     * @return La donnée extraite sous forme de chaîne de caractères, ou une chaîne vide si l'AircraftData est null
+     * @return La donnée extraite sous forme de chaîne de caractères, ou une chaîne vide si l'AircraftData est null.
+     * Elle est mise à jour lorsque les données de l'aéronef arrivent de la base de données.
      */
-    private String fetchAircraftData(TableColumn.CellDataFeatures<ObservableAircraftState, String> features,
-                                     Function<AircraftData, String> fetcher) {
-        return Objects.nonNull(features.getValue().getAircraftData())
-                ? fetcher.apply(features.getValue().getAircraftData())
-                : "";
+    private ObservableValue<String> fetchAircraftData(TableColumn.CellDataFeatures<ObservableAircraftState,
+            String> features,
+                                                      Function<AircraftData, String> fetcher) {
+        return features.getValue().aircraftDataProperty().map(fetcher).orElse("");
     }
     // Les méthodes suivantes utilisent fetchAircraftData pour extraire différentes données
 
@@ -406,7 +407,7 @@ public final class AircraftTableController {
      * @param features Les fonctionnalités des données de la cellule de la colonne.
      * @return L'immatriculation de l'aéronef.
      */
-    private String getRegistrationString(TableColumn.CellDataFeatures<ObservableAircraftState, String> features) {
+    private ObservableValue<String> getRegistrationString(TableColumn.CellDataFeatures<ObservableAircraftState, String> features) {
         return fetchAircraftData(features, ad -> ad.registration().string());
     }
 
@@ -417,7 +418,7 @@ public final class AircraftTableController {
      * @param features Les fonctionnalités des données de la cellule de la colonne.
      * @return Le modèle de l'aéronef.
      */
-    private String getModelString(TableColumn.CellDataFeatures<ObservableAircraftState, String> features) {
+    private ObservableValue<String> getModelString(TableColumn.CellDataFeatures<ObservableAircraftState, String> features) {
         return fetchAircraftData(features, AircraftData::model);
     }
 
@@ -427,7 +428,7 @@ public final class AircraftTableController {
      * @param features Les fonctionnalités des données de la cellule de la colonne.
      * @return Le type de l'aéronef.
      */
-    private String getTypeString(TableColumn.CellDataFeatures<ObservableAircraftState, String> features) {
+    private ObservableValue<String> getTypeString(TableColumn.CellDataFeatures<ObservableAircraftState, String> features) {
         return fetchAircraftData(features, ad -> ad.typeDesignator().string());
     }
 
@@ -437,7 +438,7 @@ public final class AircraftTableController {
      * @param features Les fonctionnalités des données de la cellule de la colonne.
      * @return La description de l'aéronef.
      */
-    private String getDescriptionString(TableColumn.CellDataFeatures<ObservableAircraftState, String> features) {
+    private ObservableValue<String> getDescriptionString(TableColumn.CellDataFeatures<ObservableAircraftState, String> features) {
         return fetchAircraftData(features, ad -> ad.description().string());
     }
 }
\ No newline at end of file
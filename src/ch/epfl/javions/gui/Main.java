@@ -1,12 +1,18 @@
 package ch.epfl.javions.gui;
 
-import ch.epfl.javions.ByteString;
+import ch.epfl.javions.GeoPos;
+import ch.epfl.javions.Preconditions;
 import ch.epfl.javions.Units;
-import ch.epfl.javions.adsb.Message;
-import ch.epfl.javions.adsb.MessageParser;
+import ch.epfl.javions.adsb.AircraftStateAccumulator;
+import ch.epfl.javions.adsb.FrameSink;
+import ch.epfl.javions.adsb.MessageCompactor;
 import ch.epfl.javions.adsb.RawMessage;
+import ch.epfl.javions.adsb.RawMessageMerger;
+import ch.epfl.javions.adsb.RawMessageRing;
 import ch.epfl.javions.aircraft.AircraftDatabase;
 import ch.epfl.javions.demodulation.AdsbDemodulator;
+import ch.epfl.javions.demodulation.PipelinedPowerSource;
+import ch.epfl.javions.demodulation.PowerWindow;
 import javafx.animation.AnimationTimer;
 import javafx.application.Application;
 import javafx.beans.binding.Bindings;
@@ -23,9 +29,12 @@ import java.io.*;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 import static ch.epfl.javions.Units.Time.MILLISECONDS;
 import static ch.epfl.javions.Units.Time.NANOSECONDS;
@@ -46,6 +55,26 @@ public final class Main extends Application {
     private static final int INITIAL_ZOOM = 8;
     private static final int MIN_HEIGHT = 600;
     private static final int MIN_WIDTH = 800;
+    private static final String RECEIVER_PARAMETER = "receiver"; // --receiver=<latitude>,<longitude> (en degrés)
+    // --receiver-range=<n> : portée du récepteur, en milles nautiques (inférieure à 180)
+    private static final String RECEIVER_RANGE_PARAMETER = "receiver-range";
+    private static final String PREWARM_PARAMETER = "prewarm"; // --prewarm=true : décompression anticipée de la base
+    // --overflow=block|drop-oldest|drop-newest : politique de débordement de la file des messages
+    private static final String OVERFLOW_PARAMETER = "overflow";
+    // --compact=false : désactivation du compactage des messages d'identification et de vitesse de chaque lot
+    private static final String COMPACT_PARAMETER = "compact";
+    // --trajectory=<n> : nombre maximal de positions (simplifiées) de la trajectoire de chaque aéronef
+    private static final String TRAJECTORY_PARAMETER = "trajectory";
+    private static final int MESSAGE_RING_CAPACITY = 1 << 14; // La capacité de la file des messages (384 Kio)
+    private static final int DRAIN_BATCH_SIZE = 1 << 10; // Le nombre maximal de messages retirés à la fois
+    private static final long OCCUPANCY_REPORT_PERIOD_NS = (long) Units.convertTo(10, NANOSECONDS); // 10 secondes
+    private static final long PURGE_PERIOD_NS = (long) Units.convertTo(1, NANOSECONDS); // 1 seconde
+    private static final long TRAJECTORY_REPORT_PERIOD_NS = (long) Units.convertTo(60, NANOSECONDS); // 1 minute
+    /* La durée du début de chaque enregistrement utilisée pour estimer les décalages des horloges des récepteurs
+    (10 minutes), bien plus longue que l'écart entre les débuts de deux enregistrements simultanés */
+    private static final long CALIBRATION_HORIZON_NS = (long) Units.convertTo(600, NANOSECONDS);
+    // La durée maximale de la publication des états à chaque image (le quart d'une image à 60 Hz)
+    private static final long PUBLISH_BUDGET_NS = (long) Units.convert(4, MILLISECONDS, NANOSECONDS);
 
     /**
      * Point d'entrée principal de l'application.
@@ -89,6 +118,9 @@ public final class Main extends Application {
         --------------------------------------------------------------------------------------------------------------------
         */
         AircraftDatabase database = createAircraftDatabase();
+        if (Boolean.parseBoolean(getParameters().getNamed().get(PREWARM_PARAMETER))) {
+            prewarm(database);
+        }
 
 
         /*
@@ -96,7 +128,11 @@ public final class Main extends Application {
           -- Création des instances de AircraftController, AircraftTableController, StatusLineController.
         --------------------------------------------------------------------------------------------------------------------
         */
-        AircraftStateManager aircraftStateManager = new AircraftStateManager(database);
+        AircraftStateManager aircraftStateManager = new AircraftStateManager(database,
+                receiverPosition(getParameters().getNamed().get(RECEIVER_PARAMETER)),
+                receiverRange(getParameters().getNamed().get(RECEIVER_RANGE_PARAMETER)),
+                Integer.parseInt(getParameters().getNamed().getOrDefault(TRAJECTORY_PARAMETER,
+                        String.valueOf(ObservableAircraftState.DEFAULT_MAX_TRAJECTORY_LENGTH)).strip()));
         ObjectProperty<ObservableAircraftState> observableAircraftStateProperty = new SimpleObjectProperty<>();
 
         AircraftController aircraftController = new AircraftController(mapParameters,
@@ -134,39 +170,60 @@ public final class Main extends Application {
         primaryStage.setScene(new Scene(splitPane));
         primaryStage.show();
 
-        // Création d'une file d'attente de messages partagée
-        Queue<RawMessage> messageQueue = new ConcurrentLinkedQueue<>();
+        // Création d'une file d'attente de messages partagée, bornée et préallouée
+        RawMessageRing messageRing = new RawMessageRing(MESSAGE_RING_CAPACITY,
+                overflowPolicy(getParameters().getNamed().get(OVERFLOW_PARAMETER)));
 
-        // Obtention des arguments de la ligne de commande
-        List<String> params = getParameters().getRaw();
+        // Obtention des arguments de la ligne de commande (sans les paramètres nommés, comme --receiver=...)
+        List<String> params = getParameters().getUnnamed();
 
-        if (!params.isEmpty()) {
-            String fileName = params.get(0);
-            addMessagesFromFileToQueue(messageQueue, fileName);
+        if (params.size() == 1) {
+            addMessagesFromFile(params.get(0), System.nanoTime(), 0, messageRing::offer, () -> {
+            });
+        } else if (params.size() > 1) {
+            /* Plusieurs récepteurs : leurs messages sont fusionnés (sans doublons, et dans l'ordre) avant d'être
+            placés dans la file */
+            RawMessageMerger merger = new RawMessageMerger(params.size(), messageRing::offer);
+            Thread calibrationThread = new Thread(() -> addMergedMessagesFromFiles(params, merger),
+                    "javions-calibration");
+            calibrationThread.setDaemon(true);
+            calibrationThread.start();
         }
         InputStream messageSource = System.in;
         // Lecture à partir de System.in si aucun argument n'est fourni
         if (params.isEmpty()) {
-            // Lancement du thread de lecture des messages
+            /* Lancement du thread de démodulation : la lecture des échantillons et le calcul de la puissance
+            se font sur les deux fils dédiés de la source de puissance */
             Thread messageThread = new Thread(() -> {
                 // Création du démodulateur ADS-B
                 AdsbDemodulator demodulator;
+                PipelinedPowerSource powerSource = new PipelinedPowerSource(messageSource, PowerWindow.BATCH_SIZE);
                 try {
-                    demodulator = new AdsbDemodulator(messageSource);
+                    demodulator = new AdsbDemodulator(powerSource);
                 } catch (IOException e) {
                     System.err.println("Erreur lors de la création du démodulateur: " + e.getMessage());
+                    powerSource.close();
                     return;
                 }
                 // Lecture des messages ADS-B
                 try {
                     RawMessage message;
+                    long lastReportTime = System.nanoTime();
                     while ((message = demodulator.nextMessage()) != null) {
-                        messageQueue.add(message);
+                        messageRing.offer(message);
+
+                        // Affichage périodique de l'occupation des étages, pour repérer celui qui limite le débit
+                        if (System.nanoTime() - lastReportTime >= OCCUPANCY_REPORT_PERIOD_NS) {
+                            printOccupancy(powerSource, demodulator);
+                            lastReportTime = System.nanoTime();
+                        }
                     }
                 } catch (IOException e) {
                     System.err.println("Erreur lors de la lecture des messages ADS-B: " + e.getMessage());
+                } finally {
+                    powerSource.close();
                 }
-            });
+            }, "javions-demodulator");
             messageThread.setDaemon(true);
             messageThread.start();
         }
@@ -174,22 +231,223 @@ public final class Main extends Application {
 
         /*
         --------------------------------------------------------------------------------------------------------------------
-          -- Animation des aéronefs.
+          -- Traitement des messages et animation des aéronefs.
         --------------------------------------------------------------------------------------------------------------------
         */
-        animationTimerCreator(aircraftStateManager, statusLineController, messageQueue);
+        AtomicLong messageCount = new AtomicLong();
+        startStateEngine(aircraftStateManager, messageRing, messageCount,
+                Boolean.parseBoolean(getParameters().getNamed().getOrDefault(COMPACT_PARAMETER, "true")));
+        animationTimerCreator(aircraftStateManager, statusLineController, messageCount);
     }
 
 
     /**
-     * Ajoute les messages lus à partir d'un fichier à une file de messages.
-     * Les messages sont ajoutés de manière asynchrone dans un thread séparé.
+     * Décompresse à l'avance, en parallèle et en arrière-plan, les fichiers de la base de données, et affiche sur la
+     * sortie d'erreur la durée de la décompression.
      *
-     * @param messageQueue la file de messages dans laquelle ajouter les messages lus.
-     * @param fileName     le nom du fichier contenant les messages à lire.
+     * @param database la base de données des aéronefs.
      */
-    private void addMessagesFromFileToQueue(Queue<RawMessage> messageQueue, String fileName) {
+    private static void prewarm(AircraftDatabase database) {
         long startTime = System.nanoTime();
+        database.prewarm(ForkJoinPool.commonPool()).whenComplete((ignored, e) -> {
+            if (e != null) {
+                System.err.println("Erreur lors de la décompression de la base de données: " + e.getMessage());
+            } else {
+                System.err.printf("Base de données décompressée en %.0f ms%n",
+                        Units.convert(System.nanoTime() - startTime, NANOSECONDS, MILLISECONDS));
+            }
+        });
+    }
+
+
+    /**
+     * Retourne la politique de débordement de la file des messages décrite par la valeur donnée du paramètre
+     * --overflow.
+     *
+     * @param parameter "block", "drop-oldest" ou "drop-newest", ou null.
+     * @return la politique de débordement, DROP_OLDEST si le paramètre est absent (les messages les plus récents
+     * sont les plus utiles à l'affichage).
+     * @throws IllegalArgumentException si le paramètre n'est pas une politique de débordement valide.
+     */
+    private static RawMessageRing.OverflowPolicy overflowPolicy(String parameter) {
+        return parameter == null
+                ? RawMessageRing.OverflowPolicy.DROP_OLDEST
+                : RawMessageRing.OverflowPolicy.valueOf(parameter.strip().replace('-', '_').toUpperCase(Locale.ROOT));
+    }
+
+
+    /**
+     * Retourne la position du récepteur décrite par la valeur donnée du paramètre --receiver.
+     *
+     * @param parameter la latitude et la longitude du récepteur, en degrés, séparées par une virgule, ou null.
+     * @return la position du récepteur, ou null si le paramètre est absent.
+     * @throws IllegalArgumentException si le paramètre n'est pas une position valide.
+     */
+    private static GeoPos receiverPosition(String parameter) {
+        if (parameter == null) {
+            return null;
+        }
+        String[] coordinates = parameter.split(",");
+        Preconditions.checkArgument(coordinates.length == 2);
+        double latitude = Double.parseDouble(coordinates[0].strip());
+        double longitude = Double.parseDouble(coordinates[1].strip());
+        return new GeoPos((int) Math.rint(Units.convert(longitude, Units.Angle.DEGREE, Units.Angle.T32)),
+                (int) Math.rint(Units.convert(latitude, Units.Angle.DEGREE, Units.Angle.T32)));
+    }
+
+
+    /**
+     * Retourne la portée du récepteur décrite par la valeur donnée du paramètre --receiver-range.
+     *
+     * @param parameter la portée du récepteur, en milles nautiques, ou null.
+     * @return la portée du récepteur, en mètres (la portée par défaut si le paramètre est absent).
+     * @throws NumberFormatException si le paramètre n'est pas un nombre.
+     */
+    private static double receiverRange(String parameter) {
+        if (parameter == null) {
+            return AircraftStateAccumulator.DEFAULT_RECEIVER_RANGE;
+        }
+        return Units.convertFrom(Double.parseDouble(parameter.strip()), Units.Length.NAUTICAL_MILE);
+    }
+
+
+    /**
+     * Affiche, sur la sortie d'erreur, le taux d'occupation de chaque étage de la démodulation, le nombre
+     * de tampons en attente entre eux et le débit du démodulateur.
+     *
+     * @param powerSource la source de puissance dont on affiche l'occupation.
+     * @param demodulator le démodulateur dont on affiche le débit.
+     */
+    private static void printOccupancy(PipelinedPowerSource powerSource, AdsbDemodulator demodulator) {
+        System.err.printf("Occupation : lecture %.0f %%, puissance %.0f %%, démodulation %.0f %%"
+                        + " (en attente : %d tampons d'octets, %d lots de puissance)"
+                        + ", débit %.1f M échantillons/s%n",
+                100 * powerSource.readerOccupancy(),
+                100 * powerSource.powerOccupancy(),
+                100 * powerSource.demodulatorOccupancy(),
+                powerSource.pendingSampleBatches(),
+                powerSource.pendingPowerBatches(),
+                demodulator.samplesPerSecond() / 1e6);
+    }
+
+
+    /**
+     * Affiche, sur la sortie d'erreur, le nombre de doublons entre chaque paire de récepteurs et le décalage estimé
+     * de leurs horloges.
+     *
+     * @param merger    le fusionneur des messages des récepteurs.
+     * @param fileNames les noms des fichiers de messages des récepteurs.
+     */
+    private static void printDuplicates(RawMessageMerger merger, List<String> fileNames) {
+        for (int source = 0; source < merger.sourceCount(); source++) {
+            System.err.printf("%s : %d messages, décalage de l'horloge %.3f ms%n",
+                    fileNames.get(source),
+                    merger.messageCount(source),
+                    Units.convert(merger.clockOffsetNs(source), NANOSECONDS, MILLISECONDS));
+        }
+        for (int source1 = 0; source1 < merger.sourceCount(); source1++) {
+            for (int source2 = source1 + 1; source2 < merger.sourceCount(); source2++) {
+                System.err.printf("Doublons %s / %s : %d (%.1f %%)%n",
+                        fileNames.get(source1),
+                        fileNames.get(source2),
+                        merger.duplicateCount(source1, source2),
+                        100 * merger.duplicateRatio(source1, source2));
+            }
+        }
+    }
+
+
+    /**
+     * Estime les décalages des horloges des récepteurs dont les fichiers de messages sont donnés, d'après le début
+     * de leurs enregistrements, puis lit les messages de chaque fichier au rythme de leurs horodatages corrigés
+     * (exprimés dans l'horloge de la référence), et les transmet au fusionneur donné. Chaque enregistrement est
+     * ainsi rejoué à partir de son véritable début, même si les enregistrements n'ont pas commencé en même temps.
+     *
+     * @param fileNames les noms des fichiers de messages des récepteurs.
+     * @param merger    le fusionneur des messages des récepteurs.
+     */
+    private void addMergedMessagesFromFiles(List<String> fileNames, RawMessageMerger merger) {
+        List<List<RawMessage>> firstMessages = new ArrayList<>(fileNames.size());
+        for (String fileName : fileNames) {
+            firstMessages.add(readFirstMessages(fileName, CALIBRATION_HORIZON_NS));
+        }
+        merger.calibrate(firstMessages);
+
+        // L'origine commune : le premier message de tous les enregistrements, dans l'horloge de la référence
+        long originNs = Long.MAX_VALUE;
+        for (int source = 0; source < fileNames.size(); source++) {
+            List<RawMessage> messages = firstMessages.get(source);
+            if (!messages.isEmpty()) {
+                originNs = Math.min(originNs, messages.get(0).timeStampNs() - merger.clockOffsetNs(source));
+            }
+            System.err.printf("%s : décalage de l'horloge %.3f ms (%s)%n",
+                    fileNames.get(source),
+                    Units.convert(merger.clockOffsetNs(source), NANOSECONDS, MILLISECONDS),
+                    merger.clockOffsetIsLocked(source) ? "trames communes" : "estimé au premier message");
+        }
+        originNs = (originNs == Long.MAX_VALUE) ? 0 : originNs;
+
+        long startTime = System.nanoTime();
+        for (int source = 0; source < fileNames.size(); source++) {
+            int messageSource = source;
+            addMessagesFromFile(fileNames.get(source), startTime, originNs + merger.clockOffsetNs(source),
+                    m -> merger.offer(messageSource, m), () -> {
+                        merger.flush();
+                        printDuplicates(merger, fileNames);
+                    });
+        }
+    }
+
+
+    /**
+     * Lit les messages du début du fichier donné, jusqu'à la durée donnée après le premier (sans attendre).
+     *
+     * @param fileName  le nom du fichier contenant les messages à lire.
+     * @param horizonNs la durée, en nanosecondes, après le premier message, au-delà de laquelle la lecture s'arrête.
+     * @return les messages lus, dans l'ordre du fichier (ceux lus avant une éventuelle erreur de lecture).
+     */
+    private static List<RawMessage> readFirstMessages(String fileName, long horizonNs) {
+        List<RawMessage> messages = new ArrayList<>();
+        try (DataInputStream s = new DataInputStream(
+                new BufferedInputStream(
+                        new FileInputStream(fileName)))) {
+            byte[] bytes = new byte[RawMessage.LENGTH];
+            while (true) {
+                long timeStampNs = s.readLong();
+                int bytesRead = s.readNBytes(bytes, 0, bytes.length);
+                assert bytesRead == RawMessage.LENGTH;
+                if (timeStampNs > 0) {
+                    if (!messages.isEmpty() && timeStampNs - messages.get(0).timeStampNs() > horizonNs) {
+                        break;
+                    }
+                    messages.add(new RawMessage(timeStampNs, bytes));
+                }
+            }
+        } catch (EOFException ignored) {
+        } catch (IOException e) {
+            System.err.println("Erreur lors de la lecture des messages de " + fileName + ": " + e.getMessage());
+        }
+        return messages;
+    }
+
+
+    /**
+     * Lit les messages d'un fichier, au rythme de leurs horodatages, et les transmet au consommateur donné.
+     * Les messages sont lus de manière asynchrone dans un thread séparé.
+     *
+     * @param fileName    le nom du fichier contenant les messages à lire.
+     * @param startTime   l'instant (donné par System.nanoTime) qui correspond à l'horodatage timeShiftNs.
+     * @param timeShiftNs l'horodatage, en nanosecondes, du fichier qui correspond à l'instant startTime : un
+     *                    message est transmis lorsque la durée écoulée depuis startTime atteint son horodatage moins
+     *                    timeShiftNs.
+     * @param messageSink le consommateur des messages lus (p. ex. l'ajout à la file des messages).
+     * @param onEnd       l'action effectuée lorsque tous les messages du fichier ont été lus.
+     */
+    private void addMessagesFromFile(String fileName,
+                                     long startTime,
+                                     long timeShiftNs,
+                                     Consumer<RawMessage> messageSink,
+                                     Runnable onEnd) {
         new Thread(() -> {
             try (DataInputStream s = new DataInputStream(
                     new BufferedInputStream(
@@ -199,9 +457,9 @@ public final class Main extends Application {
                     long timeStampNs = s.readLong();
                     int bytesRead = s.readNBytes(bytes, 0, bytes.length);
                     assert bytesRead == RawMessage.LENGTH;
-                    ByteString message = new ByteString(bytes);
                     if (timeStampNs > 0) {
-                        long waitTime = timeStampNs - (System.nanoTime() - startTime); // Calcule le temps d'attente
+                        // Calcule le temps d'attente
+                        long waitTime = timeStampNs - timeShiftNs - (System.nanoTime() - startTime);
                         if (waitTime > 0) { // Attend seulement si le temps d'attente est positif
                             try {
                                 // Convertit le temps d'attente de nanosecondes à millisecondes
@@ -210,60 +468,118 @@ public final class Main extends Application {
                                 throw new Error(e);
                             }
                         }
-                        messageQueue.add(new RawMessage(timeStampNs, message)); // Ajout du message à la queue
+                        messageSink.accept(new RawMessage(timeStampNs, bytes)); // Transmission du message
                     }
                 }
             } catch (EOFException ignored) {
             } catch (IOException e) {
                 e.printStackTrace();
             }
+            onEnd.run();
         }).start();
     }
 
 
     /**
-     * Crée un objet AnimationTimer pour gérer l'animation des états des aéronefs.
+     * Démarre le fil de traitement des messages, qui retire les messages bruts de la file (par lots), les décode et
+     * met à jour les états (simples) des aéronefs, et qui appelle purge chaque seconde. Aucun de ces traitements
+     * n'est fait sur le fil JavaFX. Les messages abandonnés par la file, s'il y en a, sont signalés à chaque purge,
+     * ainsi que les messages remplacés par le compactage.
+     *
+     * @param aircraftStateManager L'objet AircraftStateManager qui gère les états des aéronefs.
+     * @param messageRing          La file d'attente des messages bruts à traiter.
+     * @param messageCount         Le compteur des messages valides reçus, incrémenté par le fil : ceux qui ont été
+     *                             décodés, et ceux que le compactage a remplacés (qui auraient été décodés).
+     * @param compact              vrai si les messages d'identification et de vitesse de chaque lot doivent être
+     *                             compactés (voir MessageCompactor).
+     */
+    private static void startStateEngine(AircraftStateManager aircraftStateManager,
+                                         RawMessageRing messageRing,
+                                         AtomicLong messageCount,
+                                         boolean compact) {
+        // Décodage d'un message et mise à jour de l'état, sans allouer ni message brut, ni message analysé
+        FrameSink messageHandler = (timeStampNs, high, low) -> {
+            if (aircraftStateManager.updateWithFrame(timeStampNs, high, low)) {
+                messageCount.incrementAndGet();
+            }
+        };
+        // Compactage de chaque lot retiré de la file, avant son traitement
+        MessageCompactor compactor = compact ? new MessageCompactor(DRAIN_BATCH_SIZE, messageHandler) : null;
+        FrameSink batchHandler = compact ? compactor : messageHandler;
+
+        Thread engineThread = new Thread(() -> {
+            long lastPurgeTime = System.nanoTime();
+            long droppedCount = 0;
+            long coalescedCount = 0;
+            long countedCoalescedCount = 0; // Le nombre de messages remplacés déjà ajoutés au compteur
+            try {
+                while (true) {
+                    // Attente des prochains messages, au plus jusqu'à la prochaine purge
+                    messageRing.drainTo(batchHandler, DRAIN_BATCH_SIZE, PURGE_PERIOD_NS);
+                    if (compact) {
+                        compactor.flush();
+                        // Seuls des messages valides sont remplacés : ils sont comptés comme s'ils avaient été décodés
+                        messageCount.addAndGet(compactor.coalescedCount() - countedCoalescedCount);
+                        countedCoalescedCount = compactor.coalescedCount();
+                    }
+                    // Appel a purge chaque seconde.
+                    if (System.nanoTime() - lastPurgeTime >= PURGE_PERIOD_NS) {
+                        aircraftStateManager.purge();
+                        lastPurgeTime = System.nanoTime();
+
+                        long newDroppedCount = messageRing.droppedOldestCount() + messageRing.droppedNewestCount();
+                        if (newDroppedCount != droppedCount) {
+                            System.err.printf("Messages abandonnés (file pleine) : %d plus anciens, %d plus récents%n",
+                                    messageRing.droppedOldestCount(),
+                                    messageRing.droppedNewestCount());
+                            droppedCount = newDroppedCount;
+                        }
+                        if (compact && compactor.coalescedCount() != coalescedCount) {
+                            coalescedCount = compactor.coalescedCount();
+                            System.err.printf("Messages remplacés par le compactage : %d (%.1f %%)%n",
+                                    coalescedCount,
+                                    100 * compactor.coalescedRatio());
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "javions-state-engine");
+        engineThread.setDaemon(true);
+        engineThread.start();
+    }
+
+
+    /**
+     * Crée un objet AnimationTimer pour gérer l'animation des états des aéronefs : à chaque image, il publie les
+     * modifications des états faites par le fil de traitement des messages (dans la limite d'un budget fixe), et
+     * met à jour le nombre de messages reçus. Chaque minute, il affiche la mémoire occupée par les trajectoires.
      *
      * @param aircraftStateManager L'objet AircraftStateManager qui gère les états des aéronefs.
      * @param statusLineController L'objet StatusLineController qui contrôle la ligne de statut.
-     * @param messageQueue         La file d'attente des messages bruts à traiter.
+     * @param messageCount         Le compteur des messages valides reçus par le fil de traitement des messages.
      */
     private void animationTimerCreator(AircraftStateManager aircraftStateManager,
                                        StatusLineController statusLineController,
-                                       Queue<RawMessage> messageQueue) {
-
-        /* On utilise un tableau de long pour le temps initial parce qu'en Java, les variables locales utilisées
-        dans une expression lambda (comme la méthode handle ici) doivent être finales ou effectivement finales,
-        c'est-à-dire qu'elles ne peuvent pas être modifiées une fois assignées.
-        En utilisant un tableau, on contourne cette restriction puisque la référence du tableau est finale,
-        mais les éléments à l'intérieur du tableau (comme initialTime[0]) peuvent être modifiés librement. */
-
-        final long[] initialTime = {System.nanoTime()}; // Le temps initial
-
+                                       AtomicLong messageCount) {
         new AnimationTimer() {
+            private long lastTrajectoryReportTime = System.nanoTime();
+
             @Override
             public void handle(long now) {
-                try {
-                    while (!messageQueue.isEmpty()) {
-                        RawMessage rawMessage = messageQueue.poll(); // Récupère le prochain message de la queue
-                        if (rawMessage != null) {
-                            // Décodage du message
-                            Message msg = MessageParser.parse(rawMessage);
-                            if (msg != null) {
-                                // Incrémentation du compteur de messages dans le contrôleur de la ligne de statut
-                                statusLineController.messageCountProperty().setValue(statusLineController.
-                                        messageCountProperty().get() + 1);
-                                aircraftStateManager.updateWithMessage(msg);
-                            }
-                        }
-                    }
-                    // Appel a purge chaque seconde.
-                    if ((now - initialTime[0]) >= Units.convertTo(1, NANOSECONDS)) {
-                        aircraftStateManager.purge();
-                        initialTime[0] = now; // On "reset" le temps initial.
-                    }
-                } catch (IOException e) {
-                    throw new UncheckedIOException(e);
+                aircraftStateManager.publish(PUBLISH_BUDGET_NS);
+                // Mise à jour du compteur de messages dans le contrôleur de la ligne de statut
+                statusLineController.messageCountProperty().set(messageCount.get());
+
+                if (now - lastTrajectoryReportTime >= TRAJECTORY_REPORT_PERIOD_NS) {
+                    lastTrajectoryReportTime = now;
+                    int aircraftCount = aircraftStateManager.states().size();
+                    long memoryBytes = aircraftStateManager.trajectoryMemoryBytes();
+                    System.err.printf("Trajectoires : %d Kio pour %d aéronefs (%d octets par aéronef)%n",
+                            memoryBytes >> 10,
+                            aircraftCount,
+                            aircraftCount == 0 ? 0 : memoryBytes / aircraftCount);
                 }
             }
         }.start();
@@ -271,13 +587,17 @@ public final class Main extends Application {
 
 
     /**
-     * Crée une base de données d'aéronefs.
+     * Crée une base de données d'aéronefs, à partir de la version compilée de l'archive (aircraft.bin, produite par
+     * AircraftDatabaseCompiler) si elle existe, sinon à partir de l'archive elle-même.
      *
      * @return la base de données d'aéronefs créée.
      * @throws URISyntaxException si une erreur de syntaxe URI se produit lors de la création du chemin.
      */
     private AircraftDatabase createAircraftDatabase() throws URISyntaxException {
-        URL url = getClass().getResource("/aircraft.zip");
+        URL url = getClass().getResource("/aircraft.bin");
+        if (url == null) {
+            url = getClass().getResource("/aircraft.zip");
+        }
         assert url != null;
         Path path = Path.of(url.toURI());
         return new AircraftDatabase(path.toString());
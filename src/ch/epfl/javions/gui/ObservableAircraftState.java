@@ -18,9 +18,14 @@ import java.util.Objects;
  * @author Nicolas Khamis (355598)
  */
 public final class ObservableAircraftState implements AircraftStateSetter {
+    /**
+     * Le nombre maximal de positions de la trajectoire d'un aéronef (une fois simplifiée) par défaut.
+     */
+    public static final int DEFAULT_MAX_TRAJECTORY_LENGTH = 1 << 12;
+    private static final double TRAJECTORY_TOLERANCE = 10; // En mètres
+    private static final double TRAJECTORY_ALTITUDE_TOLERANCE = 15; // En mètres
 
-
-    private final AircraftData aircraftData;
+    private final ObjectProperty<AircraftData> aircraftData;
     private final DoubleProperty altitude;
     private final DoubleProperty trackOrHeading;
     private final DoubleProperty velocity;
@@ -30,23 +35,40 @@ public final class ObservableAircraftState implements AircraftStateSetter {
     private final ObjectProperty<CallSign> callSign;
     private final ObjectProperty<GeoPos> position;
 
-    // La liste observable et modifiable de trajectoires
-    private final ObservableList<AirbornePos> modifiableTrajectory;
+    // La trajectoire de l'aéronef, stockée dans des tableaux de types primitifs et simplifiée au fil de l'eau
+    private final Trajectory modifiableTrajectory;
 
     // La vue obversable et non modifiable sur la liste modifiableTrajectory
     private final ObservableList<AirbornePos> observableTrajectory;
 
     private long savedTimeStampNs; // Attribut qui mémorise l'horodotage du dernier message
+    private GeoPos lastTrajectoryPosition; // La dernière position ajoutée à la trajectoire
+    private double lastTrajectoryAltitude; // L'altitude de la dernière position de la trajectoire
 
     /**
      * Crée une instance de ObservableAircraftState.
      *
      * @param icaoAddress  l'adresse OACI de l'aéronef dont l'état sera représenté par cette instance.
-     * @param aircraftData les caractéristiques fixes de l'aéronef provenant de la base de données mictronics.
+     * @param aircraftData les caractéristiques fixes de l'aéronef provenant de la base de données mictronics, ou null
+     *                     si elles ne sont pas (encore) connues.
      */
     public ObservableAircraftState(IcaoAddress icaoAddress, AircraftData aircraftData) {
+        this(icaoAddress, aircraftData, DEFAULT_MAX_TRAJECTORY_LENGTH);
+    }
+
+    /**
+     * Crée une instance de ObservableAircraftState dont la trajectoire a la longueur maximale donnée : lorsqu'elle
+     * est atteinte, le quart le plus ancien de la trajectoire est oublié.
+     *
+     * @param icaoAddress         l'adresse OACI de l'aéronef dont l'état sera représenté par cette instance.
+     * @param aircraftData        les caractéristiques fixes de l'aéronef provenant de la base de données
+     *                            mictronics, ou null si elles ne sont pas (encore) connues.
+     * @param maxTrajectoryLength le nombre maximal de positions de la trajectoire.
+     * @throws IllegalArgumentException si la longueur maximale est inférieure à 4.
+     */
+    public ObservableAircraftState(IcaoAddress icaoAddress, AircraftData aircraftData, int maxTrajectoryLength) {
         this.icaoAddress = icaoAddress;
-        this.aircraftData = aircraftData;
+        this.aircraftData = new SimpleObjectProperty<>(aircraftData);
 
         lastMessageTimeStampNs = new SimpleLongProperty();
         category = new SimpleIntegerProperty();
@@ -58,7 +80,8 @@ public final class ObservableAircraftState implements AircraftStateSetter {
         velocity = new SimpleDoubleProperty(Double.NaN);
         trackOrHeading = new SimpleDoubleProperty();
 
-        modifiableTrajectory = FXCollections.observableArrayList();
+        modifiableTrajectory = new Trajectory(maxTrajectoryLength, TRAJECTORY_TOLERANCE,
+                TRAJECTORY_ALTITUDE_TOLERANCE);
         observableTrajectory = FXCollections.unmodifiableObservableList(modifiableTrajectory);
 
         updateTrajectory();
@@ -74,11 +97,31 @@ public final class ObservableAircraftState implements AircraftStateSetter {
     }
 
     /**
-     * Getter public de l'attribut aircraftData.
+     * Getter public de la valeur contenue dans la propriété aircraftData.
      *
-     * @return les caractéristiques fixes de l'aéronef.
+     * @return les caractéristiques fixes de l'aéronef, ou null si elles ne sont pas (encore) connues.
      */
     public AircraftData getAircraftData() {
+        return aircraftData.get();
+    }
+
+    /**
+     * Setter public de l'attribut aircraftData, appelé lorsque la recherche de l'aéronef dans la base de données
+     * (faite en arrière-plan) se termine. Les caractéristiques étant immuables, l'état passe en une seule fois
+     * de « inconnues » à « connues ».
+     *
+     * @param newAircraftData les caractéristiques fixes de l'aéronef, ou null si elles sont inconnues.
+     */
+    public void setAircraftData(AircraftData newAircraftData) {
+        aircraftData.set(newAircraftData);
+    }
+
+    /**
+     * Méthode d'accès à la propriété aircraftData en lecture seule.
+     *
+     * @return la propriété aircraftData en lecture seule.
+     */
+    public ReadOnlyObjectProperty<AircraftData> aircraftDataProperty() {
         return aircraftData;
     }
 
@@ -284,12 +327,12 @@ public final class ObservableAircraftState implements AircraftStateSetter {
     }
 
     /**
-     * Getter de l'avant dernier élément de la liste modifiableTrajectory.
+     * Retourne la taille (estimée) de la mémoire occupée par la trajectoire.
      *
-     * @return l'avant dernière position de l'aéronef.
+     * @return le nombre d'octets occupés par la trajectoire.
      */
-    private AirbornePos getLastPosition() {
-        return modifiableTrajectory.get(modifiableTrajectory.size() - 1);
+    public long trajectoryMemoryBytes() {
+        return modifiableTrajectory.memoryBytes();
     }
 
     /**
@@ -300,30 +343,38 @@ public final class ObservableAircraftState implements AircraftStateSetter {
         if (modifiableTrajectory.isEmpty()) {
             // Si la position est connue
             if (Objects.nonNull(getPosition())) {
-                modifiableTrajectory.add(new AirbornePos(getPosition(), getAltitude()));
-                savedTimeStampNs = getLastMessageTimeStampNs();
+                addToTrajectory();
             }
         }
         // Nouvelle position recue
-        else if (getPosition() != getLastPosition().position()) {
+        else if (getPosition() != lastTrajectoryPosition) {
             // Si l'altitude est connue
             if (!Double.isNaN(getAltitude())) {
-                modifiableTrajectory.add(new AirbornePos(getPosition(), getAltitude()));
-                savedTimeStampNs = getLastMessageTimeStampNs();
+                addToTrajectory();
             }
         }
         // Nouvelle altitude recue
-        else if (getAltitude() != getLastPosition().altitude()) {
+        else if (getAltitude() != lastTrajectoryAltitude) {
             if (savedTimeStampNs == getLastMessageTimeStampNs()) {
                 // Si la position est connue
                 if (Objects.nonNull(getPosition())) {
-                    modifiableTrajectory.set(modifiableTrajectory.size() - 1,
-                            new AirbornePos(getPosition(), getAltitude()));
+                    modifiableTrajectory.setLast(getPosition(), getAltitude());
+                    lastTrajectoryAltitude = getAltitude();
                 }
             }
         }
     }
 
+    /**
+     * Ajoute la position et l'altitude actuelles à la trajectoire (qui la simplifie au besoin).
+     */
+    private void addToTrajectory() {
+        modifiableTrajectory.add(getPosition(), getAltitude());
+        lastTrajectoryPosition = getPosition();
+        lastTrajectoryAltitude = getAltitude();
+        savedTimeStampNs = getLastMessageTimeStampNs();
+    }
+
     /**
      * Enregistrement qui représente une paire de position à la surface de la Terre et une altitude.
      *
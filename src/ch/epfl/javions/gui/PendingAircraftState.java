@@ -0,0 +1,210 @@
+package ch.epfl.javions.gui;
+
+import ch.epfl.javions.GeoPos;
+import ch.epfl.javions.adsb.AircraftStateSetter;
+import ch.epfl.javions.adsb.CallSign;
+import javafx.collections.ObservableSet;
+
+import java.util.Objects;
+
+/**
+ * Classe qui représente l'état (simple, non observable) d'un aéronef, modifié par le fil de traitement des
+ * messages, et publié périodiquement dans son état observable par le fil JavaFX.
+ * <p>
+ * L'état mémorise les attributs modifiés depuis sa dernière publication. Lors d'une publication, ceux-ci sont
+ * d'abord copiés (sous le verrou du gestionnaire des états, par swap) puis appliqués à l'état observable (hors du
+ * verrou, par publish) : chaque propriété de l'état observable change donc au plus une fois par publication, quel
+ * que soit le nombre de messages reçus entre temps.
+ *
+ * @author Brian Jean Claud El Banna (356437)
+ * @author Nicolas Khamis (355598)
+ */
+final class PendingAircraftState implements AircraftStateSetter {
+    // Les bits des attributs modifiés
+    private static final int TIME_STAMP = 1;
+    private static final int CATEGORY = 1 << 1;
+    private static final int CALL_SIGN = 1 << 2;
+    private static final int POSITION = 1 << 3;
+    private static final int ALTITUDE = 1 << 4;
+    private static final int VELOCITY = 1 << 5;
+    private static final int TRACK_OR_HEADING = 1 << 6;
+
+    private final ObservableAircraftState observableState;
+
+    /*
+    --------------------------------------------------------------------------------------------------------------------
+      -- Attributs modifiés par le fil de traitement des messages
+    --------------------------------------------------------------------------------------------------------------------
+    */
+    private long lastMessageTimeStampNs;
+    private int category;
+    private CallSign callSign;
+    private GeoPos position;
+    private double altitude = Double.NaN;
+    private double velocity = Double.NaN;
+    private double trackOrHeading;
+    private int changes; // Les bits des attributs modifiés depuis la dernière copie
+    private boolean pending; // Vrai si l'état est dans la file des états à publier
+    private boolean removed; // Vrai si l'aéronef a été oublié par le gestionnaire
+
+    /*
+    --------------------------------------------------------------------------------------------------------------------
+      -- Copie des attributs, appliquée à l'état observable par le fil JavaFX
+    --------------------------------------------------------------------------------------------------------------------
+    */
+    private long publishedTimeStampNs;
+    private int publishedCategory;
+    private CallSign publishedCallSign;
+    private GeoPos publishedPosition;
+    private double publishedAltitude;
+    private double publishedVelocity;
+    private double publishedTrackOrHeading;
+    private int publishedChanges;
+    private boolean publishedRemoved;
+
+    /**
+     * Constructeur de PendingAircraftState.
+     *
+     * @param observableState l'état observable dans lequel l'état est publié.
+     * @throws NullPointerException si l'état observable est null.
+     */
+    PendingAircraftState(ObservableAircraftState observableState) {
+        this.observableState = Objects.requireNonNull(observableState);
+    }
+
+    /**
+     * Retourne l'état observable dans lequel l'état est publié.
+     *
+     * @return l'état observable.
+     */
+    ObservableAircraftState observableState() {
+        return observableState;
+    }
+
+    /**
+     * Retourne l'horodatage du dernier message reçu de l'aéronef (qui n'est peut-être pas encore publié).
+     *
+     * @return l'horodatage du dernier message reçu, en nanosecondes.
+     */
+    long lastMessageTimeStampNs() {
+        return lastMessageTimeStampNs;
+    }
+
+    @Override
+    public void setLastMessageTimeStampNs(long timeStampNs) {
+        lastMessageTimeStampNs = timeStampNs;
+        changes |= TIME_STAMP;
+    }
+
+    @Override
+    public void setCategory(int category) {
+        this.category = category;
+        changes |= CATEGORY;
+    }
+
+    @Override
+    public void setCallSign(CallSign callSign) {
+        this.callSign = callSign;
+        changes |= CALL_SIGN;
+    }
+
+    @Override
+    public void setPosition(GeoPos position) {
+        this.position = position;
+        changes |= POSITION;
+    }
+
+    @Override
+    public void setAltitude(double altitude) {
+        this.altitude = altitude;
+        changes |= ALTITUDE;
+    }
+
+    @Override
+    public void setVelocity(double velocity) {
+        this.velocity = velocity;
+        changes |= VELOCITY;
+    }
+
+    @Override
+    public void setTrackOrHeading(double trackOrHeading) {
+        this.trackOrHeading = trackOrHeading;
+        changes |= TRACK_OR_HEADING;
+    }
+
+    /**
+     * Marque l'aéronef comme oublié : sa prochaine publication retire son état observable de l'ensemble des états.
+     */
+    void remove() {
+        removed = true;
+    }
+
+    /**
+     * Marque l'état comme placé dans la file des états à publier.
+     *
+     * @return vrai si et seulement si l'état n'y était pas déjà.
+     */
+    boolean markPending() {
+        boolean wasPending = pending;
+        pending = true;
+        return !wasPending;
+    }
+
+    /**
+     * Copie les attributs modifiés depuis la dernière copie, pour qu'ils soient publiés. Doit être appelée sous
+     * le verrou du gestionnaire des états, avant publish.
+     */
+    void swap() {
+        publishedTimeStampNs = lastMessageTimeStampNs;
+        publishedCategory = category;
+        publishedCallSign = callSign;
+        publishedPosition = position;
+        publishedAltitude = altitude;
+        publishedVelocity = velocity;
+        publishedTrackOrHeading = trackOrHeading;
+        publishedChanges = changes;
+        publishedRemoved = removed;
+        changes = 0;
+        pending = false;
+    }
+
+    /**
+     * Applique à l'état observable les attributs copiés par swap, dans l'ordre où un message les modifie, puis met
+     * à jour la trajectoire et l'appartenance de l'état à l'ensemble donné. Doit être appelée sur le fil JavaFX.
+     *
+     * @param states l'ensemble des états des aéronefs dont la position est connue.
+     */
+    void publish(ObservableSet<ObservableAircraftState> states) {
+        if (publishedRemoved) {
+            states.remove(observableState);
+            return;
+        }
+        if ((publishedChanges & TIME_STAMP) != 0) {
+            observableState.setLastMessageTimeStampNs(publishedTimeStampNs);
+        }
+        if ((publishedChanges & CATEGORY) != 0) {
+            observableState.setCategory(publishedCategory);
+        }
+        if ((publishedChanges & CALL_SIGN) != 0) {
+            observableState.setCallSign(publishedCallSign);
+        }
+        if ((publishedChanges & ALTITUDE) != 0) {
+            observableState.setAltitude(publishedAltitude);
+        }
+        if ((publishedChanges & POSITION) != 0) {
+            observableState.setPosition(publishedPosition);
+        }
+        if ((publishedChanges & VELOCITY) != 0) {
+            observableState.setVelocity(publishedVelocity);
+        }
+        if ((publishedChanges & TRACK_OR_HEADING) != 0) {
+            observableState.setTrackOrHeading(publishedTrackOrHeading);
+        }
+
+        // Ajout des états des aéronefs dont la position est connue à l'ensemble des états
+        if (Objects.nonNull(observableState.getPosition())) {
+            states.add(observableState);
+        }
+        observableState.updateTrajectory();
+    }
+}
@@ -0,0 +1,229 @@
+package ch.epfl.javions.gui;
+
+import ch.epfl.javions.GeoPos;
+import ch.epfl.javions.Preconditions;
+import ch.epfl.javions.Units;
+import javafx.collections.ObservableListBase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Classe qui représente la trajectoire d'un aéronef, c.-à-d. la liste observable de ses positions successives
+ * (et de son altitude en chacune d'elles).
+ * <p>
+ * Les positions sont stockées dans des tableaux de types primitifs, qui grandissent au besoin : la longitude et la
+ * latitude (en T32) dans des int, l'altitude dans un float, soit 12 octets par position. Les enregistrements
+ * AirbornePos ne sont construits que lorsqu'on lit la liste (pour dessiner la trajectoire de l'aéronef sélectionné).
+ * <p>
+ * La trajectoire est simplifiée au fil de l'eau, dans l'esprit de l'algorithme de Douglas-Peucker : sa dernière
+ * position est remplacée par la nouvelle si elle, et toutes les positions qu'elle a remplacées depuis l'avant-dernière,
+ * sont à moins de la tolérance donnée du segment qui relie l'avant-dernière position à la nouvelle (en distance,
+ * comme en altitude, dont dépend la couleur de la trajectoire). Les vols en ligne droite et en palier n'occupent donc
+ * que quelques positions, et la forme visible de la trajectoire est conservée. Enfin, la longueur de la trajectoire
+ * est bornée : lorsqu'elle est atteinte, le quart le plus ancien de la trajectoire est oublié.
+ *
+ * @author Brian Jean Claud El Banna (356437)
+ * @author Nicolas Khamis (355598)
+ */
+final class Trajectory extends ObservableListBase<ObservableAircraftState.AirbornePos> {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int WINDOW_CAPACITY = 16; // Le nombre maximal de positions remplacées depuis l'avant-dernière
+    private static final double EARTH_RADIUS = 6_371 * Units.Length.KILOMETER;
+    private static final int POSITION_BYTES = 2 * Integer.BYTES + Float.BYTES;
+    private static final int ARRAY_HEADER_BYTES = 16; // La taille (estimée) de l'en-tête d'un tableau
+
+    private final int maxLength;
+    private final double toleranceT32; // La tolérance en distance, en T32 (à l'équateur)
+    private final double altitudeTolerance;
+
+    // Les positions de la trajectoire
+    private int[] longitudesT32 = new int[INITIAL_CAPACITY];
+    private int[] latitudesT32 = new int[INITIAL_CAPACITY];
+    private float[] altitudes = new float[INITIAL_CAPACITY];
+    private int size;
+
+    // Les positions remplacées depuis l'avant-dernière position de la trajectoire
+    private final int[] windowLongitudesT32 = new int[WINDOW_CAPACITY];
+    private final int[] windowLatitudesT32 = new int[WINDOW_CAPACITY];
+    private final float[] windowAltitudes = new float[WINDOW_CAPACITY];
+    private int windowSize;
+
+    /**
+     * Constructeur de Trajectory qui retourne une trajectoire vide.
+     *
+     * @param maxLength         le nombre maximal de positions de la trajectoire.
+     * @param tolerance         la distance (en mètres) en dessous de laquelle une position est jugée alignée.
+     * @param altitudeTolerance la différence d'altitude (en mètres) en dessous de laquelle une position est jugée
+     *                          alignée (0 pour ne jamais simplifier un changement d'altitude).
+     * @throws IllegalArgumentException si la longueur maximale est inférieure à 4, ou si l'une des tolérances est
+     *                                  négative.
+     */
+    Trajectory(int maxLength, double tolerance, double altitudeTolerance) {
+        boolean maxLengthIsValid = maxLength >= 4;
+        boolean tolerancesAreValid = tolerance >= 0 && altitudeTolerance >= 0;
+        Preconditions.checkArgument(maxLengthIsValid);
+        Preconditions.checkArgument(tolerancesAreValid);
+        this.maxLength = maxLength;
+        this.toleranceT32 = Units.convertTo(tolerance / EARTH_RADIUS, Units.Angle.T32);
+        this.altitudeTolerance = altitudeTolerance;
+    }
+
+    @Override
+    public ObservableAircraftState.AirbornePos get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return airbornePos(index);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Retourne la taille (estimée) de la mémoire occupée par les tableaux de la trajectoire.
+     *
+     * @return le nombre d'octets occupés par la trajectoire.
+     */
+    long memoryBytes() {
+        return 6L * ARRAY_HEADER_BYTES + (long) (longitudesT32.length + WINDOW_CAPACITY) * POSITION_BYTES;
+    }
+
+    /**
+     * Ajoute la position et l'altitude données à la fin de la trajectoire, en remplaçant la dernière position si
+     * elle est alignée avec l'avant-dernière et la nouvelle.
+     *
+     * @param position la nouvelle position de l'aéronef.
+     * @param altitude l'altitude de l'aéronef à cette position.
+     */
+    void add(GeoPos position, double altitude) {
+        int longitudeT32 = position.longitudeT32();
+        int latitudeT32 = position.latitudeT32();
+
+        if (size >= 2 && windowSize < WINDOW_CAPACITY && isAligned(longitudeT32, latitudeT32, (float) altitude)) {
+            // La dernière position est remplacée, et gardée dans la fenêtre des positions remplacées
+            int last = size - 1;
+            windowLongitudesT32[windowSize] = longitudesT32[last];
+            windowLatitudesT32[windowSize] = latitudesT32[last];
+            windowAltitudes[windowSize] = altitudes[last];
+            windowSize += 1;
+            setLast(longitudeT32, latitudeT32, altitude);
+            return;
+        }
+
+        if (size == maxLength) {
+            forgetOldestQuarter();
+        }
+        if (size == longitudesT32.length) {
+            int capacity = Math.min(maxLength, 2 * size);
+            longitudesT32 = Arrays.copyOf(longitudesT32, capacity);
+            latitudesT32 = Arrays.copyOf(latitudesT32, capacity);
+            altitudes = Arrays.copyOf(altitudes, capacity);
+        }
+        longitudesT32[size] = longitudeT32;
+        latitudesT32[size] = latitudeT32;
+        altitudes[size] = (float) altitude;
+        size += 1;
+        windowSize = 0; // L'ancienne dernière position devient l'avant-dernière
+
+        beginChange();
+        nextAdd(size - 1, size);
+        endChange();
+    }
+
+    /**
+     * Remplace la dernière position de la trajectoire (qui ne doit pas être vide) par la position et l'altitude
+     * données.
+     *
+     * @param position la nouvelle position de l'aéronef.
+     * @param altitude l'altitude de l'aéronef à cette position.
+     */
+    void setLast(GeoPos position, double altitude) {
+        setLast(position.longitudeT32(), position.latitudeT32(), altitude);
+    }
+
+    private void setLast(int longitudeT32, int latitudeT32, double altitude) {
+        int last = size - 1;
+        ObservableAircraftState.AirbornePos replaced = airbornePos(last);
+        longitudesT32[last] = longitudeT32;
+        latitudesT32[last] = latitudeT32;
+        altitudes[last] = (float) altitude;
+
+        beginChange();
+        nextSet(last, replaced);
+        endChange();
+    }
+
+    /**
+     * Oublie le quart le plus ancien de la trajectoire (ce qui rend le coût d'un ajout constant en moyenne).
+     */
+    private void forgetOldestQuarter() {
+        int removedCount = size / 4;
+        List<ObservableAircraftState.AirbornePos> removed = new ArrayList<>(removedCount);
+        for (int i = 0; i < removedCount; i++) {
+            removed.add(airbornePos(i));
+        }
+        System.arraycopy(longitudesT32, removedCount, longitudesT32, 0, size - removedCount);
+        System.arraycopy(latitudesT32, removedCount, latitudesT32, 0, size - removedCount);
+        System.arraycopy(altitudes, removedCount, altitudes, 0, size - removedCount);
+        size -= removedCount;
+
+        beginChange();
+        nextRemove(0, removed);
+        endChange();
+    }
+
+    /**
+     * Retourne vrai si et seulement si la dernière position et celles qu'elle a remplacées sont à moins de la
+     * tolérance du segment reliant l'avant-dernière position à la position donnée.
+     */
+    private boolean isAligned(int longitudeT32, int latitudeT32, float altitude) {
+        int anchor = size - 2;
+        int last = size - 1;
+        // Les longitudes sont réduites par le cosinus de la latitude, pour que les distances soient isotropes
+        double longitudeScale = Math.cos(Units.convertFrom(latitudesT32[anchor], Units.Angle.T32));
+        if (!isNear(anchor, longitudeT32, latitudeT32, altitude, longitudeScale,
+                longitudesT32[last], latitudesT32[last], altitudes[last])) {
+            return false;
+        }
+        for (int i = 0; i < windowSize; i++) {
+            if (!isNear(anchor, longitudeT32, latitudeT32, altitude, longitudeScale,
+                    windowLongitudesT32[i], windowLatitudesT32[i], windowAltitudes[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Retourne vrai si et seulement si le point donné est à moins de la tolérance du segment reliant la position
+     * d'index donné de la trajectoire à la position donnée, en distance comme en altitude (interpolée le long du
+     * segment).
+     */
+    private boolean isNear(int anchor, int endLongitudeT32, int endLatitudeT32, float endAltitude,
+                           double longitudeScale, int longitudeT32, int latitudeT32, float altitude) {
+        // La soustraction de deux longitudes en T32 tient compte du passage de l'antiméridien
+        double segmentX = (endLongitudeT32 - longitudesT32[anchor]) * longitudeScale;
+        double segmentY = endLatitudeT32 - latitudesT32[anchor];
+        double pointX = (longitudeT32 - longitudesT32[anchor]) * longitudeScale;
+        double pointY = latitudeT32 - latitudesT32[anchor];
+
+        // Projection du point sur le segment
+        double segmentLength2 = segmentX * segmentX + segmentY * segmentY;
+        double t = segmentLength2 == 0
+                ? 0
+                : Math.max(0, Math.min(1, (pointX * segmentX + pointY * segmentY) / segmentLength2));
+        double distance = Math.hypot(pointX - t * segmentX, pointY - t * segmentY);
+        double interpolatedAltitude = altitudes[anchor] + t * (endAltitude - altitudes[anchor]);
+
+        return distance <= toleranceT32 && Math.abs(altitude - interpolatedAltitude) <= altitudeTolerance;
+    }
+
+    private ObservableAircraftState.AirbornePos airbornePos(int index) {
+        return new ObservableAircraftState.AirbornePos(new GeoPos(longitudesT32[index], latitudesT32[index]),
+                altitudes[index]);
+    }
+}
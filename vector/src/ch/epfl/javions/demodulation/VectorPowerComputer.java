@@ -0,0 +1,199 @@
+package ch.epfl.javions.demodulation;
+
+import ch.epfl.javions.Preconditions;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Objects;
+
+/**
+ * Classe qui représente un calculateur de puissance utilisant l'API vectorielle (module jdk.incubator.vector)
+ * pour séparer les échantillons I et Q, puis calculer les différences I/Q et les échantillons de puissance,
+ * de toute une largeur de vecteur à la fois.
+ * Il produit exactement les mêmes lots que PowerComputer.
+ * <p>
+ * Cette classe est compilée à part (racine vector/src, avec l'option --add-modules jdk.incubator.vector), pour
+ * que le reste du projet se compile sans le module. PowerWindow la charge, par son fournisseur Provider, au moyen
+ * d'un ServiceLoader, et seulement si le module est disponible ; il se rabat sinon sur FusedPowerComputer.
+ *
+ * @author Brian Jean Claud El Banna (356437)
+ * @author Nicolas Khamis (355598)
+ */
+public final class VectorPowerComputer implements PowerSource {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+    private static final int HISTORY = 3; // Le nombre d'échantillons précédents nécessaires au filtre
+    private static final int BIAIS = 2048; // La valeur du biais
+    private static final int SHIFTED_BIAIS = BIAIS << Short.SIZE; // Le biais, dans les 16 bits de poids fort
+    private static final int SAMPLE_PAIR_BYTES = 2 * Short.BYTES; // Un échantillon I et un échantillon Q
+    private final int batchSize;
+    private final InputStream stream; // Le flot des données (null si les échantillons sont projetés en mémoire)
+    private final MappedSamplesFile samplesFile; // Le fichier projeté (null si les échantillons viennent d'un flot)
+    private final byte[] byteTable; // Le tableau d'octets lus depuis le flot
+    private final ByteBuffer byteBuffer; // Vue little-endian sur le tableau byteTable
+
+    // Les échantillons I et Q du lot, précédés des 3 derniers échantillons du lot précédent
+    private final int[] iSamples;
+    private final int[] qSamples;
+
+    /**
+     * Constructeur de la classe VectorPowerComputer qui retourne un calculateur de puissance utilisant
+     * le flot d'entrée donné pour obtenir les octets de la radio AirSpy et produisant
+     * des échantillons de puissance par lots de taille donnée.
+     *
+     * @param stream    flot des données.
+     * @param batchSize taille des échantillons.
+     * @throws IllegalArgumentException si la taille des lots n'est pas un multiple de 8 strictement positif.
+     * @throws NullPointerException     si le flot est nul.
+     */
+    public VectorPowerComputer(InputStream stream, int batchSize) {
+        this(batchSize, Objects.requireNonNull(stream), null);
+    }
+
+    /**
+     * Constructeur de la classe VectorPowerComputer qui retourne un calculateur de puissance lisant les octets
+     * de la radio AirSpy directement depuis le fichier projeté en mémoire donné.
+     *
+     * @param samplesFile fichier d'échantillons projeté en mémoire.
+     * @param batchSize   taille des échantillons.
+     * @throws IllegalArgumentException si la taille des lots n'est pas un multiple de 8 strictement positif.
+     * @throws NullPointerException     si le fichier est nul.
+     */
+    public VectorPowerComputer(MappedSamplesFile samplesFile, int batchSize) {
+        this(batchSize, null, Objects.requireNonNull(samplesFile));
+    }
+
+    /**
+     * Constructeur privé commun.
+     *
+     * @param batchSize   taille des échantillons.
+     * @param stream      flot des données, ou null.
+     * @param samplesFile fichier d'échantillons projeté en mémoire, ou null.
+     */
+    private VectorPowerComputer(int batchSize, InputStream stream, MappedSamplesFile samplesFile) {
+        boolean batchSizeIsAMultipleOf8 = (batchSize % 8 == 0);
+        boolean batchSizeIsStriclyPositive = (batchSize > 0);
+        Preconditions.checkArgument(batchSizeIsAMultipleOf8
+                && batchSizeIsStriclyPositive);
+
+        this.batchSize = batchSize;
+        this.stream = stream;
+        this.samplesFile = samplesFile;
+        this.byteTable = (stream != null) ? new byte[batchSize * SAMPLE_PAIR_BYTES] : null;
+        this.byteBuffer = (stream != null) ? ByteBuffer.wrap(byteTable).order(ByteOrder.LITTLE_ENDIAN) : null;
+        this.iSamples = new int[HISTORY + batchSize];
+        this.qSamples = new int[HISTORY + batchSize];
+    }
+
+    @Override
+    public int batchSize() {
+        return batchSize;
+    }
+
+    @Override
+    public int readBatch(int[] batch, int offset) throws IOException {
+        Objects.checkFromIndexSize(offset, batchSize, batch.length);
+
+        ByteBuffer bytes;
+        if (samplesFile != null) {
+            bytes = samplesFile.nextBytes(batchSize * SAMPLE_PAIR_BYTES);
+        } else {
+            int totalBytes = stream.readNBytes(byteTable, 0, byteTable.length);
+            bytes = byteBuffer.clear().limit(totalBytes);
+        }
+        return computePowers(bytes, iSamples, qSamples, batch, offset);
+    }
+
+    /**
+     * Méthode qui calcule les échantillons de puissance correspondant aux paires d'échantillons I/Q contenues
+     * dans les octets donnés, une largeur de vecteur à la fois.
+     *
+     * @param bytes    octets little-endian contenant les paires d'échantillons I/Q (12 bits, biaisés).
+     * @param iSamples tableau de travail des échantillons I, dont les 3 premiers éléments sont les derniers
+     *                 échantillons I du lot précédent.
+     * @param qSamples tableau de travail des échantillons Q, organisé comme iSamples.
+     * @param batch    tableau dans lequel on place les échantillons de puissance.
+     * @param offset   l'index du tableau auquel on place le premier échantillon de puissance.
+     * @return le nombre d'échantillons de puissance placés dans le tableau.
+     */
+    private static int computePowers(ByteBuffer bytes, int[] iSamples, int[] qSamples, int[] batch, int offset) {
+        int count = bytes.limit() / SAMPLE_PAIR_BYTES; // Le nombre de paires I/Q complètes
+
+    /*
+    --------------------------------------------------------------------------------------------------------------------
+      -- Séparation vectorielle des échantillons I et Q : une paire little-endian, lue comme un entier, contient
+         l'échantillon I dans ses 16 bits de poids faible et l'échantillon Q dans ses 16 bits de poids fort.
+         Soustraire le biais décalé de 16 bits puis décaler arithmétiquement de 16 bits vers la droite reproduit
+         exactement le transtypage en short de SamplesDecoder (l'échantillon I est d'abord placé en poids fort)
+    --------------------------------------------------------------------------------------------------------------------
+    */
+        int n = 0;
+        int upperBound = SPECIES.loopBound(count);
+        for (; n < upperBound; n += SPECIES.length()) {
+            IntVector pairs = IntVector.fromByteBuffer(SPECIES, bytes, n * SAMPLE_PAIR_BYTES, ByteOrder.LITTLE_ENDIAN);
+            pairs.lanewise(VectorOperators.LSHL, Short.SIZE)
+                    .sub(SHIFTED_BIAIS)
+                    .lanewise(VectorOperators.ASHR, Short.SIZE)
+                    .intoArray(iSamples, HISTORY + n);
+            pairs.sub(SHIFTED_BIAIS)
+                    .lanewise(VectorOperators.ASHR, Short.SIZE)
+                    .intoArray(qSamples, HISTORY + n);
+        }
+
+        // Les dernières paires, qui ne remplissent pas un vecteur entier
+        for (; n < count; n++) {
+            int byteIndex = n * SAMPLE_PAIR_BYTES;
+            iSamples[HISTORY + n] = (short) (bytes.getShort(byteIndex) - BIAIS);
+            qSamples[HISTORY + n] = (short) (bytes.getShort(byteIndex + Short.BYTES) - BIAIS);
+        }
+
+    /*
+    --------------------------------------------------------------------------------------------------------------------
+      -- Calcul vectoriel de (I[n] - I[n-1] + I[n-2] - I[n-3])² + (Q[n] - Q[n-1] + Q[n-2] - Q[n-3])²
+    --------------------------------------------------------------------------------------------------------------------
+    */
+        for (n = 0; n < upperBound; n += SPECIES.length()) {
+            IntVector i = IntVector.fromArray(SPECIES, iSamples, n + 3)
+                    .sub(IntVector.fromArray(SPECIES, iSamples, n + 2))
+                    .add(IntVector.fromArray(SPECIES, iSamples, n + 1))
+                    .sub(IntVector.fromArray(SPECIES, iSamples, n));
+            IntVector q = IntVector.fromArray(SPECIES, qSamples, n + 3)
+                    .sub(IntVector.fromArray(SPECIES, qSamples, n + 2))
+                    .add(IntVector.fromArray(SPECIES, qSamples, n + 1))
+                    .sub(IntVector.fromArray(SPECIES, qSamples, n));
+            i.mul(i).add(q.mul(q)).intoArray(batch, offset + n);
+        }
+
+        // Les derniers échantillons, qui ne remplissent pas un vecteur entier
+        for (; n < count; n++) {
+            int i = iSamples[n + 3] - iSamples[n + 2] + iSamples[n + 1] - iSamples[n];
+            int q = qSamples[n + 3] - qSamples[n + 2] + qSamples[n + 1] - qSamples[n];
+            batch[offset + n] = i * i + q * q;
+        }
+
+        // Les 3 derniers échantillons deviennent l'historique du prochain lot
+        System.arraycopy(iSamples, count, iSamples, 0, HISTORY);
+        System.arraycopy(qSamples, count, qSamples, 0, HISTORY);
+        return count;
+    }
+
+    /**
+     * Fournisseur des calculateurs de puissance vectoriels, déclaré dans
+     * META-INF/services/ch.epfl.javions.demodulation.PowerSourceProvider.
+     */
+    public static final class Provider implements PowerSourceProvider {
+        @Override
+        public PowerSource of(InputStream stream, int batchSize) {
+            return new VectorPowerComputer(stream, batchSize);
+        }
+
+        @Override
+        public PowerSource of(MappedSamplesFile samplesFile, int batchSize) {
+            return new VectorPowerComputer(samplesFile, batchSize);
+        }
+    }
+}